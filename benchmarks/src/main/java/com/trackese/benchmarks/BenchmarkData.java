@@ -0,0 +1,56 @@
+package com.trackese.benchmarks;
+
+import com.trackese.models.Student;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic rosters and attendance for the benchmarks.
+ */
+final class BenchmarkData {
+    static final int FIRST_STUDENT_ID = 231100000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create consecutive dates in yyyy-MM-dd format.
+     *
+     * @param count Number of dates
+     * @return The dates, in chronological order
+     */
+    static List<String> dates(int count) {
+        List<String> dates = new ArrayList<>(count);
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < count; i++) {
+            dates.add(date.plusDays(i).toString());
+        }
+        return dates;
+    }
+
+    /**
+     * Create students with realistic attendance: mostly present, some absent, a few unmarked.
+     *
+     * @param count Number of students
+     * @param dates The dates to mark
+     * @return The students
+     */
+    static List<Student> students(int count, List<String> dates) {
+        Random random = new Random(42);
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Student student = new Student(String.valueOf(FIRST_STUDENT_ID + i));
+            for (String date : dates) {
+                int roll = random.nextInt(100);
+                if (roll < 95) {
+                    student.addAttendanceRecord(date, roll < 85);
+                }
+            }
+            students.add(student);
+        }
+        return students;
+    }
+}
@@ -0,0 +1,82 @@
+package com.trackese.benchmarks;
+
+import com.trackese.models.BatchSection;
+import com.trackese.models.Student;
+import com.trackese.utils.CSVHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the CSV storage paths behind section switches and every mark.
+ * Saves include the fsync of each write, so results depend on the disk they run on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CSVHandlerBenchmark {
+    private static final int ADDED_STUDENTS = 100;
+
+    @Param({"50", "500", "5000"})
+    public int rosterSize;
+
+    @Param({"30", "180"})
+    public int dateCount;
+
+    private BatchSection batchSection;
+    private List<Student> students;
+    private List<String> dates;
+    private int nextStudent = 0;
+    private boolean nextPresent = false;
+
+    @Setup(Level.Trial)
+    public void createSection() {
+        batchSection = new BatchSection("Bench" + rosterSize, "D" + dateCount);
+        dates = BenchmarkData.dates(dateCount);
+        students = BenchmarkData.students(rosterSize, dates);
+        CSVHandler.saveStudentsToCSV(batchSection, students, dates);
+    }
+
+    /**
+     * Restores the roster before each call that adds students, so every call adds the same number.
+     */
+    @State(Scope.Thread)
+    public static class RosterReset {
+        @Setup(Level.Invocation)
+        public void restoreRoster(CSVHandlerBenchmark section) {
+            CSVHandler.saveStudentsToCSV(section.batchSection, section.students, section.dates);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> loadStudentsFromCSV() {
+        return CSVHandler.loadStudentsFromCSV(batchSection);
+    }
+
+    @Benchmark
+    public void saveStudentsToCSV() {
+        CSVHandler.saveStudentsToCSV(batchSection, students, dates);
+    }
+
+    @Benchmark
+    public void updateAttendance() {
+        // Walk the roster on the last date, flipping the value on each pass
+        CSVHandler.updateAttendance(batchSection, dates.get(dateCount - 1),
+                students.get(nextStudent).getId(), nextPresent);
+        nextStudent = (nextStudent + 1) % rosterSize;
+        if (nextStudent == 0) {
+            nextPresent = !nextPresent;
+        }
+    }
+
+    @Benchmark
+    public void addStudentBatch(RosterReset reset) {
+        int start = BenchmarkData.FIRST_STUDENT_ID + rosterSize;
+        CSVHandler.addStudentBatch(batchSection, String.valueOf(start), String.valueOf(start + ADDED_STUDENTS - 1));
+    }
+}
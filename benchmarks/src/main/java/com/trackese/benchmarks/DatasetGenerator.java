@@ -0,0 +1,191 @@
+package com.trackese.benchmarks;
+
+import com.trackese.models.BatchSection;
+import com.trackese.models.Student;
+import com.trackese.utils.CSVHandler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a realistic attendance_data directory and batch_sections.dat registry
+ * in the working directory, for load tests outside production.
+ * <p>
+ * Sections are numbered batch by batch (e.g. 50 A-D, 51 A-D), each with its own
+ * range of student IDs in which some IDs are missing, as with dropped enrolments.
+ * Classes are held on weekdays. Every student has their own absence rate, so a few
+ * chronic absentees stand out as they do in real sections.
+ */
+public class DatasetGenerator {
+    private int sections = 12;
+    private int sectionsPerBatch = 4;
+    private int firstBatch = 50;
+    private int minStudents = 40;
+    private int maxStudents = 120;
+    private int dateCount = 75; // One semester of weekday classes
+    private LocalDate startDate = LocalDate.of(2025, 1, 6);
+    private long firstId = 231100000;
+    private long idStep = 1000; // Distance between the first IDs of two sections
+    private double gapRate = 0.03; // Share of IDs missing from a section's range
+    private double sparsity = 0.04; // Share of cells left unmarked
+    private double absenceRate = 0.12; // Mean share of absences among marked cells
+    private long seed = 42;
+
+    /**
+     * Generate the dataset into the working directory.
+     *
+     * @return The generated sections
+     * @throws IOException If the registry cannot be written
+     */
+    public List<BatchSection> generate() throws IOException {
+        Random random = new Random(seed);
+        List<String> dates = weekdays(startDate, dateCount);
+        List<BatchSection> batchSections = new ArrayList<>();
+
+        for (int s = 0; s < sections; s++) {
+            String batchName = String.valueOf(firstBatch + s / sectionsPerBatch);
+            String sectionName = String.valueOf((char) ('A' + s % sectionsPerBatch));
+            BatchSection batchSection = new BatchSection(batchName, sectionName);
+            batchSections.add(batchSection);
+
+            int studentCount = minStudents + random.nextInt(maxStudents - minStudents + 1);
+            List<Student> students = new ArrayList<>(studentCount);
+            long id = firstId + s * idStep;
+            while (students.size() < studentCount) {
+                if (random.nextDouble() >= gapRate) {
+                    students.add(createStudent(String.valueOf(id), dates, random));
+                }
+                id++;
+            }
+
+            CSVHandler.saveStudentsToCSV(batchSection, students, dates);
+            System.out.println("Generated " + batchSection.getFullName() + ": " + studentCount + " students, "
+                    + dates.size() + " dates");
+        }
+
+        // Same format as BatchSectionManager, which writes the list with Java serialization
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("batch_sections.dat"))) {
+            out.writeObject(batchSections);
+        }
+        return batchSections;
+    }
+
+    private Student createStudent(String id, List<String> dates, Random random) {
+        // Skewed per-student absence rate with the configured mean
+        double studentAbsence = Math.min(1.0, -Math.log(1 - random.nextDouble()) * absenceRate);
+        Student student = new Student(id);
+        for (String date : dates) {
+            if (random.nextDouble() >= sparsity) {
+                student.addAttendanceRecord(date, random.nextDouble() >= studentAbsence);
+            }
+        }
+        return student;
+    }
+
+    private static List<String> weekdays(LocalDate start, int count) {
+        List<String> dates = new ArrayList<>(count);
+        for (LocalDate date = start; dates.size() < count; date = date.plusDays(1)) {
+            if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                dates.add(date.toString());
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Generate a dataset from the command line, into the working directory.
+     * Usage: DatasetGenerator [--sections n] [--per-batch n] [--first-batch n] [--students min[-max]]
+     * [--dates n] [--start yyyy-MM-dd] [--first-id id] [--id-step n] [--gap-rate r]
+     * [--sparsity r] [--absence r] [--seed n] [--force]
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        DatasetGenerator generator = new DatasetGenerator();
+        boolean force = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--sections":
+                        generator.sections = Integer.parseInt(args[++i]);
+                        break;
+                    case "--per-batch":
+                        generator.sectionsPerBatch = Integer.parseInt(args[++i]);
+                        break;
+                    case "--first-batch":
+                        generator.firstBatch = Integer.parseInt(args[++i]);
+                        break;
+                    case "--students":
+                        String[] range = args[++i].split("-");
+                        generator.minStudents = Integer.parseInt(range[0]);
+                        generator.maxStudents = Integer.parseInt(range[range.length - 1]);
+                        break;
+                    case "--dates":
+                        generator.dateCount = Integer.parseInt(args[++i]);
+                        break;
+                    case "--start":
+                        generator.startDate = LocalDate.parse(args[++i]);
+                        break;
+                    case "--first-id":
+                        generator.firstId = Long.parseLong(args[++i]);
+                        break;
+                    case "--id-step":
+                        generator.idStep = Long.parseLong(args[++i]);
+                        break;
+                    case "--gap-rate":
+                        generator.gapRate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--sparsity":
+                        generator.sparsity = Double.parseDouble(args[++i]);
+                        break;
+                    case "--absence":
+                        generator.absenceRate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--seed":
+                        generator.seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--force":
+                        force = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (generator.sectionsPerBatch < 1 || generator.sectionsPerBatch > 26
+                    || generator.minStudents < 1 || generator.maxStudents < generator.minStudents
+                    || generator.gapRate >= 1) {
+                throw new IllegalArgumentException("Invalid option value");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: DatasetGenerator [--sections n] [--per-batch n] [--first-batch n] "
+                    + "[--students min[-max]] [--dates n] [--start yyyy-MM-dd] [--first-id id] [--id-step n] "
+                    + "[--gap-rate r] [--sparsity r] [--absence r] [--seed n] [--force]");
+            System.exit(1);
+        }
+
+        // Never overwrite real data by accident
+        if (new File("batch_sections.dat").exists() && !force) {
+            System.err.println("batch_sections.dat already exists in " + new File("").getAbsolutePath()
+                    + "; use --force to overwrite it");
+            System.exit(1);
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<BatchSection> batchSections = generator.generate();
+            System.out.printf("Generated %d sections in %.1f s%n", batchSections.size(),
+                    (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
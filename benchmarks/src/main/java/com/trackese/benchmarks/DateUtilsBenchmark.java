@@ -0,0 +1,44 @@
+package com.trackese.benchmarks;
+
+import com.trackese.utils.DateUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the date conversions done for every table header and date filter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateUtilsBenchmark {
+    private String[] dates;
+    private String[] displayDates;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void createDates() {
+        List<String> dateList = BenchmarkData.dates(365);
+        dates = dateList.toArray(new String[0]);
+        displayDates = new String[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            displayDates[i] = DateUtils.formatDateForDisplay(dates[i]);
+        }
+    }
+
+    @Benchmark
+    public String formatDateForDisplay() {
+        next = (next + 1) % dates.length;
+        return DateUtils.formatDateForDisplay(dates[next]);
+    }
+
+    @Benchmark
+    public String parseDisplayDate() {
+        next = (next + 1) % displayDates.length;
+        return DateUtils.parseDisplayDate(displayDates[next]);
+    }
+}
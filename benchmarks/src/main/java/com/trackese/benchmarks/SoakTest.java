@@ -0,0 +1,355 @@
+package com.trackese.benchmarks;
+
+import com.trackese.models.AttendanceChange;
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.models.Student;
+import com.trackese.server.LatencyRecorder;
+import com.trackese.utils.AttendanceIndex;
+import com.trackese.utils.BatchSectionManager;
+import com.trackese.utils.CSVHandler;
+import com.trackese.utils.SectionStore;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Headless soak test over the sections in the working directory, e.g. a dataset
+ * made by {@link DatasetGenerator}. Worker threads drive the same calls as the panels:
+ * <ul>
+ * <li>markers mark one student at a time like the attendance panel, and now and then
+ * mark the remaining students of a date at once</li>
+ * <li>editors change a few past cells and save them against the version they loaded,
+ * like the history panel</li>
+ * <li>readers load a section's snapshot into students and an attendance index like the
+ * history panel, and now and then parse the CSV file like exports and reports</li>
+ * </ul>
+ * Every interval it prints throughput, latency percentiles of that interval and heap
+ * usage after the last garbage collection, so leaks show as steady growth over hours.
+ */
+public class SoakTest {
+    private static final int RECORDER_CAPACITY = 1 << 16;
+    private static final int BULK_MARK_EVERY = 50;
+    private static final int COLD_READ_EVERY = 10;
+    private static final int MAX_EDITS = 20;
+
+    /**
+     * Counters and latencies of one kind of operation.
+     */
+    private static class Operation {
+        private final String name;
+        private final AtomicReference<LatencyRecorder> interval =
+                new AtomicReference<>(new LatencyRecorder(RECORDER_CAPACITY));
+        private final AtomicLong total = new AtomicLong();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void record(long startNanos) {
+            interval.get().record(System.nanoTime() - startNanos);
+            total.incrementAndGet();
+        }
+
+        /**
+         * Start a new interval and return the recorder of the one that ended.
+         */
+        LatencyRecorder rollInterval() {
+            return interval.getAndSet(new LatencyRecorder(RECORDER_CAPACITY));
+        }
+    }
+
+    private final List<BatchSection> batchSections;
+    private final String markDate;
+    private final long thinkMillis;
+    private final Operation marks = new Operation("mark");
+    private final Operation bulkMarks = new Operation("bulk");
+    private final Operation edits = new Operation("edit");
+    private final Operation reloads = new Operation("reload");
+    private final Operation coldReads = new Operation("parse");
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Create a soak test.
+     *
+     * @param batchSections The sections to work on
+     * @param markDate      The date markers mark, in yyyy-MM-dd format
+     * @param thinkMillis   Pause of each worker between operations
+     */
+    public SoakTest(List<BatchSection> batchSections, String markDate, long thinkMillis) {
+        this.batchSections = batchSections;
+        this.markDate = markDate;
+        this.thinkMillis = thinkMillis;
+    }
+
+    private BatchSection randomSection() {
+        return batchSections.get(ThreadLocalRandom.current().nextInt(batchSections.size()));
+    }
+
+    private void markLoop() {
+        Random random = ThreadLocalRandom.current();
+        for (long n = 1; running; n++) {
+            BatchSection batchSection = randomSection();
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+            if (snapshot.getStudentCount() == 0) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            if (n % BULK_MARK_EVERY == 0) {
+                // "Mark Remaining Present" for everyone not marked on the date
+                Map<String, Boolean> remaining = new LinkedHashMap<>();
+                for (String studentId : snapshot.getStudentIds()) {
+                    if (snapshot.getAttendance(studentId, markDate) == null) {
+                        remaining.put(studentId, true);
+                    }
+                }
+                if (!remaining.isEmpty()) {
+                    CSVHandler.markAttendance(batchSection, markDate, remaining);
+                    bulkMarks.record(start);
+                }
+            } else {
+                String studentId = snapshot.getStudentId(random.nextInt(snapshot.getStudentCount()));
+                CSVHandler.updateAttendance(batchSection, markDate, studentId, random.nextInt(10) != 0);
+                marks.record(start);
+            }
+            think();
+        }
+    }
+
+    private void editLoop() {
+        Random random = ThreadLocalRandom.current();
+        while (running) {
+            BatchSection batchSection = randomSection();
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+            if (snapshot.getStudentCount() == 0 || snapshot.getDateCount() == 0) {
+                continue;
+            }
+
+            // Flip a few cells of one past date against the loaded version
+            long start = System.nanoTime();
+            String date = snapshot.getDate(random.nextInt(snapshot.getDateCount()));
+            List<AttendanceChange> changes = new ArrayList<>();
+            for (int i = 1 + random.nextInt(MAX_EDITS); i > 0; i--) {
+                String studentId = snapshot.getStudentId(random.nextInt(snapshot.getStudentCount()));
+                Boolean previousValue = snapshot.getAttendance(studentId, date);
+                boolean isPresent = previousValue == null ? random.nextBoolean() : !previousValue;
+                changes.add(new AttendanceChange(studentId, date, isPresent, previousValue));
+            }
+            conflicts.addAndGet(CSVHandler.saveEdits(batchSection, snapshot.getVersion(), changes).size());
+            edits.record(start);
+            think();
+        }
+    }
+
+    private void readLoop() {
+        for (long n = 1; running; n++) {
+            BatchSection batchSection = randomSection();
+            long start = System.nanoTime();
+            if (n % COLD_READ_EVERY == 0) {
+                CSVHandler.loadStudentsFromCSV(batchSection);
+                coldReads.record(start);
+            } else {
+                SectionSnapshot snapshot = SectionStore.get(batchSection);
+                List<Student> students = snapshot.toStudents();
+                AttendanceIndex.build(students, snapshot.getDates());
+                reloads.record(start);
+            }
+            think();
+        }
+    }
+
+    private void think() {
+        if (thinkMillis > 0) {
+            try {
+                Thread.sleep(thinkMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    private Thread startWorker(Runnable loop, String name) {
+        Thread thread = new Thread(() -> {
+            while (running) {
+                try {
+                    loop.run();
+                } catch (RuntimeException e) {
+                    // Count and keep going; a soak test must survive single failures
+                    errors.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Heap in use after the last garbage collection, which grows only with live data.
+     */
+    private static long heapAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Run the workers and report until the duration is over.
+     *
+     * @param markers        Number of marking threads
+     * @param editors        Number of history editing threads
+     * @param readers        Number of reloading threads
+     * @param durationMillis How long to run
+     * @param reportMillis   Interval between reports
+     * @param report         Receives one CSV row per operation and interval, or null
+     * @throws InterruptedException If interrupted while running
+     */
+    public void run(int markers, int editors, int readers, long durationMillis, long reportMillis,
+                    PrintWriter report) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < markers; i++) {
+            workers.add(startWorker(this::markLoop, "soak-marker-" + i));
+        }
+        for (int i = 0; i < editors; i++) {
+            workers.add(startWorker(this::editLoop, "soak-editor-" + i));
+        }
+        for (int i = 0; i < readers; i++) {
+            workers.add(startWorker(this::readLoop, "soak-reader-" + i));
+        }
+
+        Operation[] operations = {marks, bulkMarks, edits, reloads, coldReads};
+        if (report != null) {
+            report.println("elapsed_s,operation,count,ops_per_s,p50_ms,p99_ms,max_ms,heap_after_gc_mb");
+        }
+        long startMillis = System.currentTimeMillis();
+        long baselineHeap = -1;
+        long lastReport = startMillis;
+        while (System.currentTimeMillis() - startMillis < durationMillis) {
+            Thread.sleep(Math.min(reportMillis, durationMillis - (System.currentTimeMillis() - startMillis)));
+            long now = System.currentTimeMillis();
+            double seconds = Math.max(now - lastReport, 1) / 1000.0;
+            lastReport = now;
+
+            long heap = heapAfterGc();
+            if (baselineHeap < 0 && heap > 0) {
+                baselineHeap = heap; // First collection after warm-up
+            }
+            long elapsed = (now - startMillis) / 1000;
+            StringBuilder line = new StringBuilder(String.format("[%5ds]", elapsed));
+            for (Operation operation : operations) {
+                LatencyRecorder latencies = operation.rollInterval();
+                long count = latencies.getCount();
+                double p50 = latencies.getPercentileMillis(50);
+                double p99 = latencies.getPercentileMillis(99);
+                double max = latencies.getPercentileMillis(100);
+                if (count > 0) {
+                    line.append(String.format(" %s=%.0f/s p50=%.1f p99=%.1f max=%.1f ms |",
+                            operation.name, count / seconds, p50, p99, max));
+                }
+                if (report != null) {
+                    report.printf(Locale.ROOT, "%d,%s,%d,%.1f,%.3f,%.3f,%.3f,%.1f%n", elapsed, operation.name,
+                            count, count / seconds, p50, p99, max, heap / 1048576.0);
+                }
+            }
+            line.append(String.format(" conflicts=%d errors=%d heap=%.1f MB (%+.1f MB)", conflicts.get(), errors.get(),
+                    heap / 1048576.0, baselineHeap < 0 ? 0 : (heap - baselineHeap) / 1048576.0));
+            System.out.println(line);
+            if (report != null) {
+                report.flush();
+            }
+        }
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.printf("Done: marks=%d bulk=%d edits=%d reloads=%d parses=%d conflicts=%d errors=%d%n",
+                marks.total.get(), bulkMarks.total.get(), edits.total.get(), reloads.total.get(),
+                coldReads.total.get(), conflicts.get(), errors.get());
+    }
+
+    /**
+     * Run a soak test from the command line over the sections in the working directory.
+     * Usage: SoakTest [--markers n] [--editors n] [--readers n] [--duration minutes]
+     * [--report seconds] [--think millis] [--date yyyy-MM-dd] [--out file.csv]
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int markers = 4;
+        int editors = 2;
+        int readers = 4;
+        double durationMinutes = 10;
+        int reportSeconds = 10;
+        long thinkMillis = 0;
+        String markDate = LocalDate.now().toString();
+        String out = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--markers":
+                        markers = Integer.parseInt(args[++i]);
+                        break;
+                    case "--editors":
+                        editors = Integer.parseInt(args[++i]);
+                        break;
+                    case "--readers":
+                        readers = Integer.parseInt(args[++i]);
+                        break;
+                    case "--duration":
+                        durationMinutes = Double.parseDouble(args[++i]);
+                        break;
+                    case "--report":
+                        reportSeconds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--think":
+                        thinkMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--date":
+                        markDate = LocalDate.parse(args[++i]).toString();
+                        break;
+                    case "--out":
+                        out = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: SoakTest [--markers n] [--editors n] [--readers n] [--duration minutes] "
+                    + "[--report seconds] [--think millis] [--date yyyy-MM-dd] [--out file.csv]");
+            System.exit(1);
+        }
+
+        List<BatchSection> batchSections = new ArrayList<>(BatchSectionManager.getAllBatchSections());
+        System.out.println("Soak test over " + batchSections.size() + " sections: " + markers + " markers, "
+                + editors + " editors, " + readers + " readers for " + durationMinutes + " minutes");
+        SoakTest soakTest = new SoakTest(batchSections, markDate, thinkMillis);
+        try (PrintWriter report = out == null ? null : new PrintWriter(new FileWriter(out))) {
+            soakTest.run(markers, editors, readers, (long) (durationMinutes * 60_000), reportSeconds * 1000L, report);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
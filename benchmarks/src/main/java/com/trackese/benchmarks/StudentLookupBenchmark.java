@@ -0,0 +1,75 @@
+package com.trackese.benchmarks;
+
+import com.trackese.models.SectionSnapshot;
+import com.trackese.models.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of looking up students and their marks in the attendance model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StudentLookupBenchmark {
+    private static final int LOOKUPS = 1024; // Power of two
+
+    @Param({"50", "500", "5000"})
+    public int rosterSize;
+
+    @Param({"30", "180"})
+    public int dateCount;
+
+    private List<Student> students;
+    private SectionSnapshot snapshot;
+    private String[] studentIds = new String[LOOKUPS];
+    private String[] dates = new String[LOOKUPS];
+    private int[] rows = new int[LOOKUPS];
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void createRoster() {
+        List<String> dateList = BenchmarkData.dates(dateCount);
+        students = BenchmarkData.students(rosterSize, dateList);
+        snapshot = SectionSnapshot.of(students, dateList, 0);
+
+        Random random = new Random(7);
+        for (int i = 0; i < LOOKUPS; i++) {
+            rows[i] = random.nextInt(rosterSize);
+            studentIds[i] = students.get(rows[i]).getId();
+            dates[i] = dateList.get(random.nextInt(dateCount));
+        }
+    }
+
+    /**
+     * Find a student by ID by scanning the roster.
+     */
+    @Benchmark
+    public Student findStudentById() {
+        String studentId = studentIds[next++ & (LOOKUPS - 1)];
+        for (Student student : students) {
+            if (student.getId().equals(studentId)) {
+                return student;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Boolean getAttendanceForDate() {
+        int i = next++ & (LOOKUPS - 1);
+        return students.get(rows[i]).getAttendanceForDate(dates[i]);
+    }
+
+    @Benchmark
+    public Boolean snapshotGetAttendance() {
+        int i = next++ & (LOOKUPS - 1);
+        return snapshot.getAttendance(studentIds[i], dates[i]);
+    }
+}
@@ -5,7 +5,9 @@ echo Compiling the application...
 if not exist bin mkdir bin
 
 :: Compile all Java files
-javac -d bin src\main\java\com\trackese\models\*.java src\main\java\com\trackese\utils\*.java src\main\java\com\trackese\ui\*.java
+:: The Flight Recorder events in src\jfr\java need Java 11 and are only built by Gradle;
+:: without them the application runs the same and records no events
+javac -d bin src\main\java\com\trackese\metrics\*.java src\main\java\com\trackese\models\*.java src\main\java\com\trackese\utils\*.java src\main\java\com\trackese\ui\*.java src\main\java\com\trackese\server\*.java src\main\java\com\trackese\ingest\*.java
 
 :: Check if compilation was successful
 if %errorlevel% neq 0 (
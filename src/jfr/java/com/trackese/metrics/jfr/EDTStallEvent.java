@@ -0,0 +1,37 @@
+package com.trackese.metrics.jfr;
+
+import com.trackese.metrics.Tracing;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a time the event dispatch thread was blocked.
+ * The event is recorded by the watchdog thread, so its own stack trace is left
+ * out; the stack samples of the blocked thread are attached instead.
+ */
+@Name("com.trackese.EDTStall")
+@Label("EDT Stall")
+@Description("Event dispatch thread blocked longer than the stall threshold")
+@Category({"Trackese", "UI"})
+@StackTrace(false)
+public class EDTStallEvent extends jdk.jfr.Event implements Tracing.StallSpan {
+    @Label("Sample Count")
+    int sampleCount;
+
+    @Label("Stack Samples")
+    @Description("Stacks of the event dispatch thread sampled during the stall, most frequent first")
+    String stackSamples;
+
+    @Override
+    public void finish(boolean stalled, int sampleCount, String stackSamples) {
+        end();
+        if (stalled && shouldCommit()) {
+            this.sampleCount = sampleCount;
+            this.stackSamples = stackSamples;
+            commit();
+        }
+    }
+}
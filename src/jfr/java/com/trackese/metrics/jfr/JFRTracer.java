@@ -0,0 +1,34 @@
+package com.trackese.metrics.jfr;
+
+import com.trackese.metrics.Tracing;
+
+/**
+ * Creates Flight Recorder events for {@link Tracing}. Loaded by name, so the
+ * application itself does not depend on the jdk.jfr module.
+ */
+public class JFRTracer implements Tracing.Tracer {
+    @Override
+    public Tracing.Span beginSectionIO(String operation, String section) {
+        SectionIOEvent event = new SectionIOEvent();
+        event.operation = operation;
+        event.section = section;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Tracing.Span beginUIRebuild(String operation, String section) {
+        UIRebuildEvent event = new UIRebuildEvent();
+        event.operation = operation;
+        event.section = section;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Tracing.StallSpan beginStall() {
+        EDTStallEvent event = new EDTStallEvent();
+        event.begin();
+        return event;
+    }
+}
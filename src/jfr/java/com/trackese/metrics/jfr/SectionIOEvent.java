@@ -0,0 +1,40 @@
+package com.trackese.metrics.jfr;
+
+import com.trackese.metrics.Tracing;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one load or save of a section's CSV file.
+ */
+@Name("com.trackese.SectionIO")
+@Label("Section I/O")
+@Description("Load or save of a section's CSV file")
+@Category({"Trackese", "Storage"})
+public class SectionIOEvent extends jdk.jfr.Event implements Tracing.Span {
+    @Label("Operation")
+    String operation;
+
+    @Label("Section")
+    String section;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    long rows;
+
+    @Override
+    public void finish(long bytes, long rows) {
+        end();
+        if (shouldCommit()) {
+            this.bytes = bytes;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.trackese.metrics.jfr;
+
+import com.trackese.metrics.Tracing;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one rebuild of a panel's model or components,
+ * such as the history table or the attendance cards.
+ */
+@Name("com.trackese.UIRebuild")
+@Label("UI Rebuild")
+@Description("Rebuild of a panel's model or components")
+@Category({"Trackese", "UI"})
+public class UIRebuildEvent extends jdk.jfr.Event implements Tracing.Span {
+    @Label("Operation")
+    String operation;
+
+    @Label("Section")
+    String section;
+
+    @Label("Rows")
+    long rows;
+
+    @Override
+    public void finish(long bytes, long rows) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows;
+            commit();
+        }
+    }
+}
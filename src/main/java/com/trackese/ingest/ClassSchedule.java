@@ -0,0 +1,116 @@
+package com.trackese.ingest;
+
+import com.trackese.models.BatchSection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Weekly class schedule that maps a scan's room and time to a batch section.
+ * The schedule file has one class per line:
+ *
+ * <pre>
+ * room,day,start,end,batch,section
+ * A101,MONDAY,09:00,10:30,58,C
+ * </pre>
+ *
+ * Scans up to the grace period before a class starts count towards that class.
+ */
+public class ClassSchedule {
+    /**
+     * One scheduled class.
+     */
+    private static class Slot {
+        private final LocalTime start;
+        private final LocalTime end;
+        private final BatchSection batchSection;
+
+        Slot(LocalTime start, LocalTime end, BatchSection batchSection) {
+            this.start = start;
+            this.end = end;
+            this.batchSection = batchSection;
+        }
+    }
+
+    private final Map<String, List<Slot>> slots = new HashMap<>(); // "room|DAY" -> classes
+    private final int graceMinutes;
+
+    public ClassSchedule(int graceMinutes) {
+        this.graceMinutes = graceMinutes;
+    }
+
+    /**
+     * Load a schedule file.
+     *
+     * @param file         The schedule file
+     * @param graceMinutes Minutes before a class starts from which scans count
+     * @return The schedule
+     * @throws IOException If the file cannot be read or has an invalid line
+     */
+    public static ClassSchedule load(File file, int graceMinutes) throws IOException {
+        ClassSchedule schedule = new ClassSchedule(graceMinutes);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.toLowerCase().startsWith("room,")) {
+                    continue;
+                }
+                String[] data = line.split(",");
+                if (data.length != 6) {
+                    throw new IOException("Invalid schedule line " + lineNumber + ": " + line);
+                }
+                try {
+                    schedule.addClass(data[0].trim(), DayOfWeek.valueOf(data[1].trim().toUpperCase()),
+                            LocalTime.parse(data[2].trim()), LocalTime.parse(data[3].trim()),
+                            new BatchSection(data[4].trim(), data[5].trim()));
+                } catch (RuntimeException e) {
+                    throw new IOException("Invalid schedule line " + lineNumber + ": " + line, e);
+                }
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Add a weekly class.
+     *
+     * @param room         The room of the scanner
+     * @param day          The day of the week
+     * @param start        Start time
+     * @param end          End time
+     * @param batchSection The batch section taking the class
+     */
+    public void addClass(String room, DayOfWeek day, LocalTime start, LocalTime end, BatchSection batchSection) {
+        slots.computeIfAbsent(room + "|" + day, key -> new ArrayList<>()).add(new Slot(start, end, batchSection));
+    }
+
+    /**
+     * Find the class a scan belongs to.
+     *
+     * @param room      The room of the scanner
+     * @param timestamp The scan time
+     * @return The batch section, or null if no class is scheduled then
+     */
+    public BatchSection lookup(String room, LocalDateTime timestamp) {
+        List<Slot> daySlots = slots.get(room + "|" + timestamp.getDayOfWeek());
+        if (daySlots == null) {
+            return null;
+        }
+        LocalTime time = timestamp.toLocalTime();
+        for (Slot slot : daySlots) {
+            if (!time.isBefore(slot.start.minusMinutes(graceMinutes)) && time.isBefore(slot.end)) {
+                return slot.batchSection;
+            }
+        }
+        return null;
+    }
+}
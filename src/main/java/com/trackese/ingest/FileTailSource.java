@@ -0,0 +1,80 @@
+package com.trackese.ingest;
+
+import java.io.*;
+
+/**
+ * Reads scanner log lines from a file and follows it as the scanner appends.
+ * A file that shrinks is treated as rotated and read again from the start.
+ */
+public class FileTailSource implements Runnable {
+    private static final long POLL_MILLIS = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final ScanIngestor ingestor;
+    private final boolean fromStart;
+    private final boolean follow;
+
+    /**
+     * Create a source for one log file.
+     *
+     * @param file      The log file
+     * @param ingestor  The ingestor to feed
+     * @param fromStart Read lines already in the file instead of starting at its end
+     * @param follow    Keep waiting for new lines instead of stopping at the end of the file
+     */
+    public FileTailSource(File file, ScanIngestor ingestor, boolean fromStart, boolean follow) {
+        this.file = file;
+        this.ingestor = ingestor;
+        this.fromStart = fromStart;
+        this.follow = follow;
+    }
+
+    @Override
+    public void run() {
+        long position = fromStart ? 0 : file.length();
+        ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            while (true) {
+                long length = file.length();
+                if (length < position) {
+                    position = 0; // Rotated or truncated
+                    partialLine.reset();
+                }
+
+                if (length > position) {
+                    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                        in.seek(position);
+                        int read;
+                        while ((read = in.read(buffer)) > 0) {
+                            position += read;
+                            int lineStart = 0;
+                            for (int i = 0; i < read; i++) {
+                                if (buffer[i] == '\n') {
+                                    partialLine.write(buffer, lineStart, i - lineStart);
+                                    ingestor.submitLine(partialLine.toString("UTF-8"));
+                                    partialLine.reset();
+                                    lineStart = i + 1;
+                                }
+                            }
+                            partialLine.write(buffer, lineStart, read - lineStart);
+                        }
+                    }
+                } else if (!follow) {
+                    if (partialLine.size() > 0) {
+                        ingestor.submitLine(partialLine.toString("UTF-8"));
+                    }
+                    return;
+                } else {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
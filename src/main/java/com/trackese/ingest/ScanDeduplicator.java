@@ -0,0 +1,60 @@
+package com.trackese.ingest;
+
+import com.trackese.models.BatchSection;
+
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Drops repeated scans of the same student for the same class within a time window.
+ * Not thread-safe; the ingest applier is its only user.
+ */
+public class ScanDeduplicator {
+    private final long windowSeconds;
+    private final Map<String, Long> lastSeen = new HashMap<>();
+    private long newestSecond = Long.MIN_VALUE;
+
+    public ScanDeduplicator(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * Check a scan and remember it.
+     *
+     * @param batchSection The class the scan belongs to
+     * @param scan         The scan
+     * @return True if the same student was already scanned for this class within the window
+     */
+    public boolean isDuplicate(BatchSection batchSection, ScanEvent scan) {
+        long second = scan.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        String key = batchSection.getFileName() + "|" + scan.getTimestamp().toLocalDate() + "|" + scan.getStudentId();
+        Long previous = lastSeen.get(key);
+        if (previous != null && Math.abs(second - previous) < windowSeconds) {
+            return true;
+        }
+        lastSeen.put(key, second);
+
+        if (second > newestSecond) {
+            newestSecond = second;
+        }
+        return false;
+    }
+
+    /**
+     * Forget scans that can no longer cause duplicates.
+     */
+    public void evictExpired() {
+        Iterator<Long> iterator = lastSeen.values().iterator();
+        while (iterator.hasNext()) {
+            if (newestSecond - iterator.next() >= windowSeconds) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return lastSeen.size();
+    }
+}
@@ -0,0 +1,60 @@
+package com.trackese.ingest;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One badge or QR scan read from a scanner log.
+ */
+public class ScanEvent {
+    private final LocalDateTime timestamp;
+    private final String room;
+    private final String studentId;
+
+    public ScanEvent(LocalDateTime timestamp, String room, String studentId) {
+        this.timestamp = timestamp;
+        this.room = room;
+        this.studentId = studentId;
+    }
+
+    /**
+     * Parse one scanner log line of the form "timestamp,room,studentId",
+     * where the timestamp is ISO-8601 local time (2024-01-15T09:02:13).
+     *
+     * @param line The log line
+     * @return The scan, or null if the line is not a valid scan
+     */
+    public static ScanEvent parse(String line) {
+        String[] data = line.split(",");
+        if (data.length != 3) {
+            return null;
+        }
+        String room = data[1].trim();
+        String studentId = data[2].trim();
+        if (room.isEmpty() || studentId.isEmpty()) {
+            return null;
+        }
+        try {
+            return new ScanEvent(LocalDateTime.parse(data[0].trim()), room, studentId);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + "," + room + "," + studentId;
+    }
+}
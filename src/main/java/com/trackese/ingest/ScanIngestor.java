@@ -0,0 +1,288 @@
+package com.trackese.ingest;
+
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.utils.CSVHandler;
+import com.trackese.utils.SectionStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingest pipeline for card-reader and QR scan logs.
+ * Sources parse scanner lines into a bounded queue, blocking when it is full.
+ * A single applier thread drains everything queued, maps each scan to a batch
+ * section and date with the class schedule, drops duplicates within the window
+ * and marks the remaining students present with one bulk write per section.
+ * During a burst, the scans that arrive while one write runs are applied together
+ * by the next, so the number of writes stays low however fast scanners send.
+ */
+public class ScanIngestor {
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_BATCH = 20_000;
+    private static final long POLL_MILLIS = 250;
+    private static final long STATS_INTERVAL_MILLIS = 10_000;
+    private static final int DEFAULT_WINDOW_SECONDS = 300;
+    private static final int DEFAULT_GRACE_MINUTES = 15;
+    private static final String DEFAULT_SCHEDULE_FILE = "class_schedule.csv";
+
+    private final ClassSchedule schedule;
+    private final ScanDeduplicator deduplicator;
+    private final BlockingQueue<ScanEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong unscheduled = new AtomicLong();
+    private final AtomicLong unknown = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private volatile boolean running = false;
+    private Thread applier;
+    private long startNanos;
+
+    /**
+     * Create an ingestor.
+     *
+     * @param schedule      The class schedule
+     * @param windowSeconds Repeated scans of a student for the same class within this window are dropped
+     */
+    public ScanIngestor(ClassSchedule schedule, long windowSeconds) {
+        this.schedule = schedule;
+        this.deduplicator = new ScanDeduplicator(windowSeconds);
+    }
+
+    public synchronized void start() {
+        if (applier != null) {
+            return;
+        }
+        running = true;
+        startNanos = System.nanoTime();
+        applier = new Thread(this::applyLoop, "scan-ingest-applier");
+        applier.start();
+    }
+
+    /**
+     * Stop after applying every scan already queued.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = applier;
+            applier = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queue one scanner log line, waiting while the queue is full.
+     *
+     * @param line The log line
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void submitLine(String line) throws InterruptedException {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        ScanEvent scan = ScanEvent.parse(line);
+        if (scan == null) {
+            invalid.incrementAndGet();
+            return;
+        }
+        received.incrementAndGet();
+        queue.put(scan);
+    }
+
+    /**
+     * Wait until every scan queued so far has been applied.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void awaitIdle() throws InterruptedException {
+        while (processed.get() < received.get()) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void applyLoop() {
+        List<ScanEvent> batch = new ArrayList<>();
+        long lastEviction = System.currentTimeMillis();
+        while (running || !queue.isEmpty()) {
+            try {
+                ScanEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    applyBatch(batch);
+                    processed.addAndGet(batch.size());
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                processed.addAndGet(batch.size());
+                batch.clear();
+            }
+
+            if (System.currentTimeMillis() - lastEviction > STATS_INTERVAL_MILLIS) {
+                deduplicator.evictExpired();
+                lastEviction = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void applyBatch(List<ScanEvent> batch) {
+        // Section -> date -> student ID -> present
+        Map<BatchSection, Map<String, Map<String, Boolean>>> marks = new LinkedHashMap<>();
+        Map<BatchSection, SectionSnapshot> rosters = new HashMap<>(); // One snapshot per section and batch
+        for (ScanEvent scan : batch) {
+            BatchSection batchSection = schedule.lookup(scan.getRoom(), scan.getTimestamp());
+            if (batchSection == null) {
+                unscheduled.incrementAndGet();
+            } else if (deduplicator.isDuplicate(batchSection, scan)) {
+                duplicates.incrementAndGet();
+            } else if (!rosters.computeIfAbsent(batchSection, SectionStore::get).hasStudent(scan.getStudentId())) {
+                unknown.incrementAndGet();
+            } else {
+                marks.computeIfAbsent(batchSection, bs -> new TreeMap<>())
+                        .computeIfAbsent(scan.getTimestamp().toLocalDate().toString(), date -> new LinkedHashMap<>())
+                        .put(scan.getStudentId(), true);
+            }
+        }
+
+        for (Map.Entry<BatchSection, Map<String, Map<String, Boolean>>> sectionMarks : marks.entrySet()) {
+            try {
+                applied.addAndGet(CSVHandler.markAttendance(sectionMarks.getKey(), sectionMarks.getValue()));
+                writes.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                // A student was removed from the roster meanwhile
+                System.err.println("Could not apply scans for " + sectionMarks.getKey() + ": " + e.getMessage());
+            } catch (UncheckedIOException e) {
+                System.err.println("Could not save scans for " + sectionMarks.getKey() + ": " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Format the ingest counters and throughput since start.
+     *
+     * @return One line of statistics
+     */
+    public String formatStats() {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+        return String.format("scans=%d rate=%.0f/s applied=%d duplicates=%d unscheduled=%d unknown=%d invalid=%d writes=%d",
+                received.get(), processed.get() / seconds, applied.get(), duplicates.get(),
+                unscheduled.get(), unknown.get(), invalid.get(), writes.get());
+    }
+
+    /**
+     * Run the ingest pipeline from the command line.
+     * Usage: ScanIngestor [--schedule file] [--window seconds] [--grace minutes]
+     * [--file log]... [--replay log]... [--port port]
+     * <p>
+     * --file tails a log from its end, --replay reads a log from the start and
+     * exits with the measured throughput once every replayed log is applied.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        String scheduleFile = DEFAULT_SCHEDULE_FILE;
+        int windowSeconds = DEFAULT_WINDOW_SECONDS;
+        int graceMinutes = DEFAULT_GRACE_MINUTES;
+        List<String> tailFiles = new ArrayList<>();
+        List<String> replayFiles = new ArrayList<>();
+        int port = -1;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--schedule":
+                        scheduleFile = args[++i];
+                        break;
+                    case "--window":
+                        windowSeconds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--grace":
+                        graceMinutes = Integer.parseInt(args[++i]);
+                        break;
+                    case "--file":
+                        tailFiles.add(args[++i]);
+                        break;
+                    case "--replay":
+                        replayFiles.add(args[++i]);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: ScanIngestor [--schedule file] [--window seconds] [--grace minutes] "
+                    + "[--file log]... [--replay log]... [--port port]");
+            System.exit(1);
+        }
+
+        try {
+            ClassSchedule schedule = ClassSchedule.load(new File(scheduleFile), graceMinutes);
+            ScanIngestor ingestor = new ScanIngestor(schedule, windowSeconds);
+            ingestor.start();
+
+            List<Thread> replays = new ArrayList<>();
+            for (String file : replayFiles) {
+                replays.add(startDaemon(new FileTailSource(new File(file), ingestor, true, false), "scan-replay"));
+            }
+            for (String file : tailFiles) {
+                startDaemon(new FileTailSource(new File(file), ingestor, false, true), "scan-tail");
+            }
+            if (port >= 0) {
+                startDaemon(new SocketScanSource(port, ingestor), "scan-socket");
+            }
+
+            if (tailFiles.isEmpty() && port < 0) {
+                for (Thread replay : replays) {
+                    replay.join();
+                }
+                ingestor.awaitIdle();
+                ingestor.stop();
+                System.out.println(ingestor.formatStats());
+                return;
+            }
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                ingestor.stop();
+                System.out.println(ingestor.formatStats());
+            }));
+            while (true) {
+                Thread.sleep(STATS_INTERVAL_MILLIS);
+                System.out.println(ingestor.formatStats());
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static Thread startDaemon(Runnable source, String name) {
+        Thread thread = new Thread(source, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,52 @@
+package com.trackese.ingest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Accepts scanner connections on a local TCP port; each connection sends one
+ * log line per scan.
+ */
+public class SocketScanSource implements Runnable {
+    private final int port;
+    private final ScanIngestor ingestor;
+
+    public SocketScanSource(int port, ScanIngestor ingestor) {
+        this.port = port;
+        this.ingestor = ingestor;
+    }
+
+    @Override
+    public void run() {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("Accepting scanner connections on port " + serverSocket.getLocalPort());
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> readScans(socket), "scan-socket-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void readScans(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ingestor.submitLine(line);
+            }
+        } catch (IOException e) {
+            // Scanner disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.trackese.metrics;
+
+/**
+ * JMX view of the hits and misses of a cache.
+ */
+public interface CacheStatsMBean {
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    void reset();
+}
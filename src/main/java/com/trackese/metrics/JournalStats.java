@@ -0,0 +1,29 @@
+package com.trackese.metrics;
+
+import com.trackese.utils.ChangeJournal;
+
+import java.io.File;
+
+/**
+ * Size of the change journal, read from disk whenever it is asked for.
+ */
+public class JournalStats implements JournalStatsMBean {
+    @Override
+    public long getLastSequence() {
+        return ChangeJournal.getLastSequence();
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return ChangeJournal.getSegments().size();
+    }
+
+    @Override
+    public long getJournalBytes() {
+        long bytes = 0;
+        for (File segment : ChangeJournal.getSegments()) {
+            bytes += segment.length();
+        }
+        return bytes;
+    }
+}
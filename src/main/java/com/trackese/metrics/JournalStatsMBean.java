@@ -0,0 +1,12 @@
+package com.trackese.metrics;
+
+/**
+ * JMX view of the change journal's size.
+ */
+public interface JournalStatsMBean {
+    long getLastSequence();
+
+    int getSegmentCount();
+
+    long getJournalBytes();
+}
@@ -0,0 +1,246 @@
+package com.trackese.metrics;
+
+import com.trackese.models.BatchSection;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the application's timers, counters and cache statistics.
+ * Every statistic is kept once overall and once per section, and is published as
+ * a JMX MBean under the "com.trackese" domain the first time it is used, so it can
+ * be watched with jconsole or VisualVM. Setting the system property
+ * trackese.metrics.file additionally appends all statistics to that file every
+ * trackese.metrics.interval seconds (default 60).
+ */
+public class Metrics {
+    public static final String DOMAIN = "com.trackese";
+    private static final String ALL_SECTIONS = "all";
+
+    // Looked up by name and section on every call, so no object name is built after the first use
+    private static final Map<String, Map<Object, OperationStats>> operationIndex = new ConcurrentHashMap<>();
+    private static final Map<String, Map<Object, CacheStats>> cacheIndex = new ConcurrentHashMap<>();
+
+    // The same statistics by object name, for the dump
+    private static final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private static final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumpExecutor;
+
+    static {
+        register(DOMAIN + ":type=Journal,name=changes", new JournalStats());
+        register(DOMAIN + ":type=Memory,name=sections", new SectionMemoryStats());
+    }
+
+    /**
+     * Record one completed operation, overall and for its section.
+     *
+     * @param name         Operation name, e.g. "csv.save"
+     * @param batchSection The section, or null if the operation is not about one section
+     * @param startNanos   Value of System.nanoTime() when the operation started
+     * @param bytes        Bytes read or written, or 0
+     * @param rows         Rows parsed or written, or 0
+     */
+    public static void record(String name, BatchSection batchSection, long startNanos, long bytes, long rows) {
+        long nanos = System.nanoTime() - startNanos;
+        operation(name, null).record(nanos, bytes, rows);
+        if (batchSection != null) {
+            operation(name, batchSection).record(nanos, bytes, rows);
+        }
+    }
+
+    /**
+     * Record an operation that failed.
+     *
+     * @param name         Operation name
+     * @param batchSection The section, or null
+     */
+    public static void recordError(String name, BatchSection batchSection) {
+        operation(name, null).recordError();
+        if (batchSection != null) {
+            operation(name, batchSection).recordError();
+        }
+    }
+
+    /**
+     * Record a lookup in a cache, overall and for its section.
+     *
+     * @param name         Cache name, e.g. "section.snapshot"
+     * @param batchSection The section, or null
+     * @param hit          Whether the cached value could be used
+     */
+    public static void recordCache(String name, BatchSection batchSection, boolean hit) {
+        count(cache(name, null), hit);
+        if (batchSection != null) {
+            count(cache(name, batchSection), hit);
+        }
+    }
+
+    private static void count(CacheStats stats, boolean hit) {
+        if (hit) {
+            stats.hit();
+        } else {
+            stats.miss();
+        }
+    }
+
+    /**
+     * Get the statistics of an operation, creating and registering them on first use.
+     *
+     * @param name         Operation name
+     * @param batchSection The section, or null for the overall statistics
+     * @return The statistics
+     */
+    public static OperationStats operation(String name, BatchSection batchSection) {
+        Map<Object, OperationStats> byName = operationIndex.get(name);
+        if (byName == null) {
+            byName = operationIndex.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+        }
+        Object key = batchSection == null ? ALL_SECTIONS : batchSection;
+        OperationStats stats = byName.get(key);
+        if (stats == null) {
+            stats = byName.computeIfAbsent(key, k -> {
+                OperationStats created = new OperationStats();
+                String objectName = objectName("Operation", name, batchSection);
+                operations.put(objectName, created);
+                register(objectName, created);
+                return created;
+            });
+        }
+        return stats;
+    }
+
+    /**
+     * Get the statistics of a cache, creating and registering them on first use.
+     *
+     * @param name         Cache name
+     * @param batchSection The section, or null for the overall statistics
+     * @return The statistics
+     */
+    public static CacheStats cache(String name, BatchSection batchSection) {
+        Map<Object, CacheStats> byName = cacheIndex.get(name);
+        if (byName == null) {
+            byName = cacheIndex.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+        }
+        Object key = batchSection == null ? ALL_SECTIONS : batchSection;
+        CacheStats stats = byName.get(key);
+        if (stats == null) {
+            stats = byName.computeIfAbsent(key, k -> {
+                CacheStats created = new CacheStats();
+                String objectName = objectName("Cache", name, batchSection);
+                caches.put(objectName, created);
+                register(objectName, created);
+                return created;
+            });
+        }
+        return stats;
+    }
+
+    private static String objectName(String type, String name, BatchSection batchSection) {
+        String section = batchSection == null ? ALL_SECTIONS
+                : batchSection.getBatchName() + "_" + batchSection.getSection();
+        // Characters that would need quoting in an ObjectName value
+        return DOMAIN + ":type=" + type + ",name=" + name + ",section=" + section.replaceAll("[\\s,=:\"*?]", "_");
+    }
+
+    private static void register(String objectName, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException | RuntimeException e) {
+            // Metrics must never break the operation being measured
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Start the periodic metrics dump if the trackese.metrics.file system property is set.
+     */
+    public static synchronized void startDumpFromSystemProperties() {
+        String file = System.getProperty("trackese.metrics.file");
+        if (file == null || file.isEmpty() || dumpExecutor != null) {
+            return;
+        }
+        long interval = Long.getLong("trackese.metrics.interval", 60);
+        startDump(new File(file), interval);
+    }
+
+    /**
+     * Append all statistics to a file at a fixed interval, and once more at exit.
+     *
+     * @param file            The file to append to
+     * @param intervalSeconds Seconds between dumps
+     */
+    public static synchronized void startDump(File file, long intervalSeconds) {
+        if (dumpExecutor != null) {
+            return;
+        }
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleAtFixedRate(() -> dump(file), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(file)));
+    }
+
+    /**
+     * Append all statistics to a file as CSV, one row per statistic.
+     *
+     * @param file The file to append to
+     */
+    public static synchronized void dump(File file) {
+        boolean writeHeader = !file.exists() || file.length() == 0;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            if (writeHeader) {
+                writer.println("Timestamp,Type,Name,Section,Count,Errors,Mean ms,P50 ms,P90 ms,P99 ms,Max ms,"
+                        + "Bytes,Rows,Hits,Misses,Hit Rate");
+            }
+            long now = System.currentTimeMillis();
+
+            // Sorted so the rows of one statistic line up between dumps
+            for (Map.Entry<String, OperationStats> entry : new TreeMap<>(operations).entrySet()) {
+                OperationStats stats = entry.getValue();
+                writer.printf(Locale.ROOT, "%d,%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,,,%n", now, describe(entry.getKey()),
+                        stats.getCount(), stats.getErrorCount(), stats.getMeanMillis(), stats.getP50Millis(),
+                        stats.getP90Millis(), stats.getP99Millis(), stats.getMaxMillis(), stats.getBytes(),
+                        stats.getRows());
+            }
+            for (Map.Entry<String, CacheStats> entry : new TreeMap<>(caches).entrySet()) {
+                CacheStats stats = entry.getValue();
+                writer.printf(Locale.ROOT, "%d,%s,,,,,,,,,,%d,%d,%.4f%n", now, describe(entry.getKey()),
+                        stats.getHits(), stats.getMisses(), stats.getHitRate());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Turn an object name into the Type,Name,Section columns of the dump.
+     */
+    private static String describe(String objectName) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            return name.getKeyProperty("type") + "," + name.getKeyProperty("name") + ","
+                    + name.getKeyProperty("section");
+        } catch (JMException e) {
+            return objectName + ",,";
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.trackese.metrics;
+
+/**
+ * JMX view of the timings of one operation, e.g. CSV saves of one section.
+ */
+public interface OperationStatsMBean {
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    long getBytes();
+
+    long getRows();
+
+    void reset();
+}
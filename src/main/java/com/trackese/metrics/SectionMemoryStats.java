@@ -0,0 +1,34 @@
+package com.trackese.metrics;
+
+import com.trackese.utils.SectionStore;
+
+/**
+ * Estimated size of the section snapshot cache, read whenever it is asked for.
+ * The budget can be changed at run time, e.g. from jconsole.
+ */
+public class SectionMemoryStats implements SectionMemoryStatsMBean {
+    @Override
+    public int getCachedSectionCount() {
+        return SectionStore.getMemoryUsage().size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return SectionStore.getRetainedBytes();
+    }
+
+    @Override
+    public long getBudgetBytes() {
+        return SectionStore.getBudgetBytes();
+    }
+
+    @Override
+    public void setBudgetBytes(long budgetBytes) {
+        SectionStore.setBudgetBytes(budgetBytes);
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return SectionStore.getEvictionCount();
+    }
+}
@@ -0,0 +1,16 @@
+package com.trackese.metrics;
+
+/**
+ * JMX view of the heap used by cached section snapshots.
+ */
+public interface SectionMemoryStatsMBean {
+    int getCachedSectionCount();
+
+    long getRetainedBytes();
+
+    long getBudgetBytes();
+
+    void setBudgetBytes(long budgetBytes);
+
+    long getEvictionCount();
+}
@@ -0,0 +1,112 @@
+package com.trackese.metrics;
+
+import com.trackese.models.BatchSection;
+
+/**
+ * JDK Flight Recorder events for section I/O, panel rebuilds and event dispatch
+ * thread stalls. The events themselves need the Java 11 jdk.jfr API and are
+ * compiled separately (src/jfr/java); on a JVM without Flight Recorder, or when
+ * they are not on the class path, every span is a shared no-op.
+ * <p>
+ * Start a recording with e.g. {@code -XX:StartFlightRecording=filename=trackese.jfr}
+ * and open it in JDK Mission Control, or list the events with
+ * {@code jfr print --categories Trackese trackese.jfr}.
+ */
+public class Tracing {
+    /**
+     * One traced operation, begun when it was created.
+     */
+    public interface Span {
+        /**
+         * End the operation and record it if the recording wants it.
+         *
+         * @param bytes Bytes read or written, or 0
+         * @param rows  Rows parsed, written or built, or 0
+         */
+        void finish(long bytes, long rows);
+    }
+
+    /**
+     * One wait for the event dispatch thread, begun when the probe was posted.
+     */
+    public interface StallSpan {
+        /**
+         * End the wait; it is only recorded as a stall if the thread was blocked.
+         *
+         * @param stalled      Whether the wait exceeded the stall threshold
+         * @param sampleCount  Number of stack samples taken during the stall
+         * @param stackSamples The stack samples, formatted
+         */
+        void finish(boolean stalled, int sampleCount, String stackSamples);
+    }
+
+    /**
+     * Creates the spans; implemented by the Flight Recorder events.
+     */
+    public interface Tracer {
+        Span beginSectionIO(String operation, String section);
+
+        Span beginUIRebuild(String operation, String section);
+
+        StallSpan beginStall();
+    }
+
+    private static final Span NO_SPAN = (bytes, rows) -> {
+    };
+    private static final StallSpan NO_STALL_SPAN = (stalled, sampleCount, stackSamples) -> {
+    };
+    private static final Tracer tracer = loadTracer();
+
+    private static Tracer loadTracer() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Tracer) Class.forName("com.trackese.metrics.jfr.JFRTracer").newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null; // Flight Recorder not available on this JVM or class path
+        }
+    }
+
+    /**
+     * Begin a section load or save.
+     *
+     * @param operation    Operation name, e.g. "csv.save"
+     * @param batchSection The section
+     * @return The span to finish when the operation is done
+     */
+    public static Span beginSectionIO(String operation, BatchSection batchSection) {
+        return tracer == null ? NO_SPAN : tracer.beginSectionIO(operation, sectionName(batchSection));
+    }
+
+    /**
+     * Begin rebuilding a panel's model or components.
+     *
+     * @param operation    Operation name, e.g. "ui.history.table"
+     * @param batchSection The section shown, or null
+     * @return The span to finish when the rebuild is done
+     */
+    public static Span beginUIRebuild(String operation, BatchSection batchSection) {
+        return tracer == null ? NO_SPAN : tracer.beginUIRebuild(operation, sectionName(batchSection));
+    }
+
+    /**
+     * Begin waiting for the event dispatch thread.
+     *
+     * @return The span to finish when the thread has answered
+     */
+    public static StallSpan beginStall() {
+        return tracer == null ? NO_STALL_SPAN : tracer.beginStall();
+    }
+
+    /**
+     * Check whether spans are recorded at all.
+     *
+     * @return Whether Flight Recorder events are available
+     */
+    public static boolean isAvailable() {
+        return tracer != null;
+    }
+
+    private static String sectionName(BatchSection batchSection) {
+        return batchSection == null ? null : batchSection.getFullName();
+    }
+}
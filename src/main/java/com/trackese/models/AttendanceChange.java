@@ -0,0 +1,48 @@
+package com.trackese.models;
+
+/**
+ * Model class representing a change to one attendance cell.
+ */
+public class AttendanceChange {
+    private final String studentId;
+    private final String date;
+    private final Boolean isPresent; // Null clears the mark
+    private final Boolean previousValue; // Value the change was made against, null if unmarked
+
+    public AttendanceChange(String studentId, String date, Boolean isPresent) {
+        this(studentId, date, isPresent, null);
+    }
+
+    public AttendanceChange(String studentId, String date, Boolean isPresent, Boolean previousValue) {
+        this.studentId = studentId;
+        this.date = date;
+        this.isPresent = isPresent;
+        this.previousValue = previousValue;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public Boolean getIsPresent() {
+        return isPresent;
+    }
+
+    public Boolean getPreviousValue() {
+        return previousValue;
+    }
+
+    @Override
+    public String toString() {
+        return "AttendanceChange{" +
+                "studentId='" + studentId + '\'' +
+                ", date='" + date + '\'' +
+                ", isPresent=" + isPresent +
+                ", previousValue=" + previousValue +
+                '}';
+    }
+}
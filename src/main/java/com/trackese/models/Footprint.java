@@ -0,0 +1,116 @@
+package com.trackese.models;
+
+import java.util.BitSet;
+
+/**
+ * Rough heap sizes of the objects the models and caches are built from, for a 64-bit JVM
+ * with compressed references: 12-byte object headers, 16-byte array headers,
+ * 4-byte references and 8-byte alignment.
+ */
+public final class Footprint {
+    public static final int OBJECT_HEADER = 12;
+    public static final int ARRAY_HEADER = 16;
+    public static final int REFERENCE = 4;
+
+    private static final int HASH_MAP = 48;
+    private static final int HASH_MAP_NODE = 32;
+    private static final int LINKED_HASH_MAP = 56;
+    private static final int LINKED_HASH_MAP_NODE = 40;
+    private static final int TREE_MAP = 48;
+    private static final int TREE_MAP_ENTRY = 40;
+    private static final int ARRAY_LIST = 24;
+    private static final int BIT_SET = 24;
+    private static final int BOXED_INTEGER = 16;
+    // Strings store one byte per Latin-1 character from Java 9 on, two before
+    private static final int BYTES_PER_CHAR = System.getProperty("java.specification.version").startsWith("1.") ? 2 : 1;
+
+    private Footprint() {
+    }
+
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Size of a plain object.
+     *
+     * @param fieldBytes Total size of its fields
+     * @return Size in bytes
+     */
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    public static long string(String value) {
+        return 24 + align(ARRAY_HEADER + (long) value.length() * BYTES_PER_CHAR);
+    }
+
+    public static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    public static long byteArray(int length) {
+        return align(ARRAY_HEADER + length);
+    }
+
+    public static long intArray(int length) {
+        return align(ARRAY_HEADER + 4L * length);
+    }
+
+    /**
+     * Size of an ArrayList with room for its elements, but not the elements.
+     */
+    public static long arrayList(int size) {
+        return ARRAY_LIST + referenceArray(size);
+    }
+
+    /**
+     * Size of a HashMap with its table and nodes, but not its keys and values.
+     */
+    public static long hashMap(int size) {
+        return HASH_MAP + hashTable(size) + (long) size * HASH_MAP_NODE;
+    }
+
+    /**
+     * Size of a LinkedHashMap with its table and nodes, but not its keys and values.
+     */
+    public static long linkedHashMap(int size) {
+        return LINKED_HASH_MAP + hashTable(size) + (long) size * LINKED_HASH_MAP_NODE;
+    }
+
+    /**
+     * Size of a TreeMap with its entries, but not its keys and values.
+     */
+    public static long treeMap(int size) {
+        return TREE_MAP + (long) size * TREE_MAP_ENTRY;
+    }
+
+    /**
+     * Size of a BitSet and its words.
+     */
+    public static long bitSet(BitSet bits) {
+        return BIT_SET + align(ARRAY_HEADER + bits.size() / 8);
+    }
+
+    /**
+     * Size of the Integer objects boxing 0 to count - 1; small values are cached by the JVM.
+     */
+    public static long boxedIndexes(int count) {
+        return Math.max(0, count - 128) * (long) BOXED_INTEGER;
+    }
+
+    /**
+     * Size of the Integer object boxing a value; small values are cached by the JVM.
+     */
+    public static long boxedInteger(int value) {
+        return value >= -128 && value <= 127 ? 0 : BOXED_INTEGER;
+    }
+
+    private static long hashTable(int size) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < size) {
+            capacity <<= 1;
+        }
+        return referenceArray(size == 0 ? 0 : capacity);
+    }
+}
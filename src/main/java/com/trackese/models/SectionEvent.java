@@ -0,0 +1,81 @@
+package com.trackese.models;
+
+/**
+ * Model class representing one saved change to a section.
+ */
+public class SectionEvent {
+    /**
+     * Kind of change.
+     */
+    public enum Type {
+        ROSTER_CHANGED, // Students were added or the whole section was replaced
+        DATE_ADDED,     // A new date column was created
+        CELL_MARKED     // One attendance cell changed
+    }
+
+    private final Type type;
+    private final BatchSection batchSection;
+    private final String studentId; // CELL_MARKED only
+    private final String date;      // DATE_ADDED and CELL_MARKED
+    private final Boolean isPresent; // CELL_MARKED only; null clears the mark
+    private final long previousVersion; // Snapshot version the save was made on
+    private final long version;         // Snapshot version the save produced
+
+    private SectionEvent(Type type, BatchSection batchSection, String studentId, String date, Boolean isPresent,
+                         long previousVersion, long version) {
+        this.type = type;
+        this.batchSection = batchSection;
+        this.studentId = studentId;
+        this.date = date;
+        this.isPresent = isPresent;
+        this.previousVersion = previousVersion;
+        this.version = version;
+    }
+
+    public static SectionEvent rosterChanged(BatchSection batchSection, long previousVersion, long version) {
+        return new SectionEvent(Type.ROSTER_CHANGED, batchSection, null, null, null, previousVersion, version);
+    }
+
+    public static SectionEvent dateAdded(BatchSection batchSection, String date, long previousVersion, long version) {
+        return new SectionEvent(Type.DATE_ADDED, batchSection, null, date, null, previousVersion, version);
+    }
+
+    public static SectionEvent cellMarked(BatchSection batchSection, String studentId, String date, Boolean isPresent,
+                                          long previousVersion, long version) {
+        return new SectionEvent(Type.CELL_MARKED, batchSection, studentId, date, isPresent, previousVersion, version);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public BatchSection getBatchSection() {
+        return batchSection;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public Boolean getIsPresent() {
+        return isPresent;
+    }
+
+    public long getPreviousVersion() {
+        return previousVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + batchSection + (studentId == null ? "" : " " + studentId)
+                + (date == null ? "" : " " + date) + (type == Type.CELL_MARKED ? " " + isPresent : "");
+    }
+}
@@ -0,0 +1,63 @@
+package com.trackese.models;
+
+import java.util.Map;
+
+/**
+ * Model class representing the estimated heap use of one cached section: its
+ * snapshot and the entries of the caches derived from it.
+ */
+public class SectionMemoryUsage {
+    private final BatchSection batchSection;
+    private final int studentCount;
+    private final int dateCount;
+    private final long estimatedBytes; // Snapshot only, 0 if it was dropped
+    private final Map<String, Long> derivedBytes; // Derived cache name -> bytes
+    private final long lastUsedMillis;
+
+    public SectionMemoryUsage(BatchSection batchSection, int studentCount, int dateCount,
+                              long estimatedBytes, Map<String, Long> derivedBytes, long lastUsedMillis) {
+        this.batchSection = batchSection;
+        this.studentCount = studentCount;
+        this.dateCount = dateCount;
+        this.estimatedBytes = estimatedBytes;
+        this.derivedBytes = derivedBytes;
+        this.lastUsedMillis = lastUsedMillis;
+    }
+
+    public BatchSection getBatchSection() {
+        return batchSection;
+    }
+
+    public int getStudentCount() {
+        return studentCount;
+    }
+
+    public int getDateCount() {
+        return dateCount;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public Map<String, Long> getDerivedBytes() {
+        return derivedBytes;
+    }
+
+    /**
+     * Get the estimated size of the snapshot and all derived entries.
+     *
+     * @return Estimated size in bytes
+     */
+    public long getTotalBytes() {
+        long total = estimatedBytes;
+        for (long bytes : derivedBytes.values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    public long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+}
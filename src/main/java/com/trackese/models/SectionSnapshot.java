@@ -0,0 +1,299 @@
+package com.trackese.models;
+
+import java.util.*;
+
+/**
+ * Immutable version of one section's attendance.
+ * Attendance is stored column by column, one byte per student for each date.
+ * Marking produces a new snapshot that copies only the columns it changes and
+ * shares the roster and every other column with the previous version, so readers
+ * can keep using an old snapshot while marking continues.
+ */
+public final class SectionSnapshot {
+    public static final byte UNMARKED = 0;
+    public static final byte PRESENT = 1;
+    public static final byte ABSENT = 2;
+
+    private static final SectionSnapshot EMPTY = new SectionSnapshot(new String[0],
+            Collections.emptyMap(), new String[0], new byte[0][], 0);
+
+    private final String[] studentIds;
+    private final Map<String, Integer> positions; // Student ID -> row, shared while the roster is unchanged
+    private final String[] dates; // Sorted
+    private final byte[][] columns; // columns[date][student]
+    private final long version;
+
+    private SectionSnapshot(String[] studentIds, Map<String, Integer> positions, String[] dates,
+                            byte[][] columns, long version) {
+        this.studentIds = studentIds;
+        this.positions = positions;
+        this.dates = dates;
+        this.columns = columns;
+        this.version = version;
+    }
+
+    public static SectionSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build a snapshot from loaded students.
+     *
+     * @param students The students, in roster order
+     * @param dates    The dates, in chronological order
+     * @param version  Version stamp of the data
+     * @return The snapshot
+     */
+    public static SectionSnapshot of(List<Student> students, List<String> dates, long version) {
+        String[] studentIds = new String[students.size()];
+        for (int i = 0; i < studentIds.length; i++) {
+            studentIds[i] = students.get(i).getId();
+        }
+
+        byte[][] columns = new byte[dates.size()][];
+        for (int d = 0; d < columns.length; d++) {
+            String date = dates.get(d);
+            byte[] column = new byte[studentIds.length];
+            for (int i = 0; i < column.length; i++) {
+                column[i] = toStatus(students.get(i).getAttendanceForDate(date));
+            }
+            columns[d] = column;
+        }
+        return new SectionSnapshot(studentIds, indexPositions(studentIds), dates.toArray(new String[0]),
+                columns, version);
+    }
+
+    /**
+     * Get a snapshot with marks applied. Columns without marks are shared.
+     *
+     * @param marksByDate Date to student ID to present/absent
+     * @return The new snapshot, or this one if nothing changed
+     * @throws IllegalArgumentException If a student is not on the roster
+     */
+    public SectionSnapshot withMarks(Map<String, Map<String, Boolean>> marksByDate) {
+        String[] nextDates = dates;
+        byte[][] nextColumns = columns;
+        boolean changed = false;
+
+        for (Map.Entry<String, Map<String, Boolean>> dateMarks : marksByDate.entrySet()) {
+            int dateIndex = Arrays.binarySearch(nextDates, dateMarks.getKey());
+            byte[] column = dateIndex >= 0 ? nextColumns[dateIndex] : null;
+            byte[] copy = null;
+
+            for (Map.Entry<String, Boolean> mark : dateMarks.getValue().entrySet()) {
+                Integer position = positions.get(mark.getKey());
+                if (position == null) {
+                    throw new IllegalArgumentException("Unknown student ID: " + mark.getKey());
+                }
+                byte status = toStatus(mark.getValue());
+                byte current = column == null ? UNMARKED : column[position];
+                if (status != current) {
+                    if (copy == null) {
+                        copy = column == null ? new byte[studentIds.length] : column.clone();
+                    }
+                    copy[position] = status;
+                }
+            }
+
+            if (copy != null) {
+                if (!changed) {
+                    nextColumns = nextColumns.clone(); // Copy the column pointers once
+                    changed = true;
+                }
+                if (dateIndex >= 0) {
+                    nextColumns[dateIndex] = copy;
+                } else {
+                    // New date: insert a column in chronological order
+                    int insertAt = -dateIndex - 1;
+                    String[] grownDates = new String[nextDates.length + 1];
+                    byte[][] grownColumns = new byte[nextColumns.length + 1][];
+                    System.arraycopy(nextDates, 0, grownDates, 0, insertAt);
+                    System.arraycopy(nextColumns, 0, grownColumns, 0, insertAt);
+                    grownDates[insertAt] = dateMarks.getKey();
+                    grownColumns[insertAt] = copy;
+                    System.arraycopy(nextDates, insertAt, grownDates, insertAt + 1, nextDates.length - insertAt);
+                    System.arraycopy(nextColumns, insertAt, grownColumns, insertAt + 1, nextColumns.length - insertAt);
+                    nextDates = grownDates;
+                    nextColumns = grownColumns;
+                }
+            }
+        }
+        return changed ? new SectionSnapshot(studentIds, positions, nextDates, nextColumns, version) : this;
+    }
+
+    /**
+     * Get a snapshot with students added to the end of the roster.
+     *
+     * @param newStudentIds IDs to add; IDs already on the roster are skipped
+     * @return The new snapshot, or this one if nothing changed
+     */
+    public SectionSnapshot withStudents(List<String> newStudentIds) {
+        List<String> added = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String studentId : newStudentIds) {
+            if (!positions.containsKey(studentId) && seen.add(studentId)) {
+                added.add(studentId);
+            }
+        }
+        if (added.isEmpty()) {
+            return this;
+        }
+
+        String[] nextIds = Arrays.copyOf(studentIds, studentIds.length + added.size());
+        for (int i = 0; i < added.size(); i++) {
+            nextIds[studentIds.length + i] = added.get(i);
+        }
+        byte[][] nextColumns = new byte[columns.length][];
+        for (int d = 0; d < columns.length; d++) {
+            nextColumns[d] = Arrays.copyOf(columns[d], nextIds.length);
+        }
+        return new SectionSnapshot(nextIds, indexPositions(nextIds), dates, nextColumns, version);
+    }
+
+    /**
+     * Get this snapshot with another version stamp. All data is shared.
+     *
+     * @param version The version stamp
+     * @return The snapshot
+     */
+    public SectionSnapshot withVersion(long version) {
+        return version == this.version ? this : new SectionSnapshot(studentIds, positions, dates, columns, version);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getStudentCount() {
+        return studentIds.length;
+    }
+
+    public int getDateCount() {
+        return dates.length;
+    }
+
+    public String getStudentId(int studentIndex) {
+        return studentIds[studentIndex];
+    }
+
+    public String getDate(int dateIndex) {
+        return dates[dateIndex];
+    }
+
+    public List<String> getStudentIds() {
+        return Collections.unmodifiableList(Arrays.asList(studentIds));
+    }
+
+    public List<String> getDates() {
+        return Collections.unmodifiableList(Arrays.asList(dates));
+    }
+
+    /**
+     * Get the status of one cell.
+     *
+     * @param studentIndex Row of the student
+     * @param dateIndex    Index of the date
+     * @return {@link #UNMARKED}, {@link #PRESENT} or {@link #ABSENT}
+     */
+    public byte getStatus(int studentIndex, int dateIndex) {
+        return columns[dateIndex][studentIndex];
+    }
+
+    /**
+     * Get the attendance of a student on a date.
+     *
+     * @param studentId The student ID
+     * @param date      The date
+     * @return True if present, false if absent, null if unmarked or unknown
+     */
+    public Boolean getAttendance(String studentId, String date) {
+        Integer position = positions.get(studentId);
+        int dateIndex = Arrays.binarySearch(dates, date);
+        if (position == null || dateIndex < 0) {
+            return null;
+        }
+        byte status = columns[dateIndex][position];
+        return status == UNMARKED ? null : status == PRESENT;
+    }
+
+    public boolean hasStudent(String studentId) {
+        return positions.containsKey(studentId);
+    }
+
+    public boolean hasDate(String date) {
+        return Arrays.binarySearch(dates, date) >= 0;
+    }
+
+    /**
+     * Check whether another snapshot has the same students in the same order.
+     *
+     * @param other The other snapshot
+     * @return True if the rosters are equal
+     */
+    public boolean hasSameRoster(SectionSnapshot other) {
+        return positions == other.positions || Arrays.equals(studentIds, other.studentIds);
+    }
+
+    /**
+     * Estimate the heap retained by this snapshot, including the roster index.
+     * Columns shared with other snapshots are counted in full.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateBytes() {
+        long bytes = Footprint.align(Footprint.OBJECT_HEADER + 4 * Footprint.REFERENCE + 8);
+        bytes += Footprint.referenceArray(studentIds.length);
+        for (String studentId : studentIds) {
+            bytes += Footprint.string(studentId);
+        }
+        // Unmodifiable wrapper around the HashMap
+        bytes += 16 + Footprint.hashMap(positions.size()) + Footprint.boxedIndexes(positions.size());
+        bytes += Footprint.referenceArray(dates.length);
+        for (String date : dates) {
+            bytes += Footprint.string(date);
+        }
+        bytes += Footprint.referenceArray(columns.length);
+        for (byte[] column : columns) {
+            bytes += Footprint.byteArray(column.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Copy the snapshot into mutable students for code that edits them.
+     *
+     * @return New student objects, in roster order
+     */
+    public List<Student> toStudents() {
+        List<Student> students = new ArrayList<>(studentIds.length);
+        for (int i = 0; i < studentIds.length; i++) {
+            Student student = new Student(studentIds[i]);
+            for (int d = 0; d < dates.length; d++) {
+                byte status = columns[d][i];
+                if (status != UNMARKED) {
+                    student.addAttendanceRecord(dates[d], status == PRESENT);
+                }
+            }
+            students.add(student);
+        }
+        return students;
+    }
+
+    /**
+     * Get the status code of an attendance value.
+     *
+     * @param isPresent True if present, false if absent, null if unmarked
+     * @return {@link #UNMARKED}, {@link #PRESENT} or {@link #ABSENT}
+     */
+    public static byte toStatus(Boolean isPresent) {
+        return isPresent == null ? UNMARKED : (isPresent ? PRESENT : ABSENT);
+    }
+
+    private static Map<String, Integer> indexPositions(String[] studentIds) {
+        Map<String, Integer> positions = new HashMap<>(studentIds.length * 2);
+        for (int i = 0; i < studentIds.length; i++) {
+            positions.putIfAbsent(studentIds[i], i);
+        }
+        return Collections.unmodifiableMap(positions);
+    }
+}
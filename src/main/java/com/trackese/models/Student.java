@@ -1,6 +1,7 @@
 package com.trackese.models;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,6 +40,35 @@ public class Student {
         return attendanceRecords.getOrDefault(date, null);
     }
     
+    /**
+     * Estimate the heap retained by this student and its attendance map.
+     * Date strings are not counted, since they are shared with the section's date list.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateBytes() {
+        return Footprint.align(Footprint.OBJECT_HEADER + 2 * Footprint.REFERENCE)
+                + (id == null ? 0 : Footprint.string(id))
+                + Footprint.hashMap(attendanceRecords == null ? 0 : attendanceRecords.size());
+    }
+
+    /**
+     * Estimate the heap retained by a list of students.
+     *
+     * @param students The students, may be null
+     * @return Estimated size in bytes
+     */
+    public static long estimateBytes(List<Student> students) {
+        if (students == null) {
+            return 0;
+        }
+        long bytes = Footprint.align(Footprint.OBJECT_HEADER + 8) + Footprint.referenceArray(students.size());
+        for (Student student : students) {
+            bytes += student.estimateBytes();
+        }
+        return bytes;
+    }
+    
     @Override
     public String toString() {
         return "Student{" +
@@ -0,0 +1,246 @@
+package com.trackese.server;
+
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.utils.AttendanceListener;
+import com.trackese.utils.CSVHandler;
+import com.trackese.utils.SectionStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Publishes attendance marks to live subscribers with per-section running totals.
+ * The marking path only offers an event to an unbounded hand-off queue; a single
+ * dispatcher thread keeps the totals and fans events out to bounded per-subscriber
+ * queues. When a subscriber falls behind, its individual events are dropped and
+ * coalesced into one totals update per section and date, so a slow client never
+ * stalls marking or other subscribers.
+ */
+public class AttendanceEventHub implements AttendanceListener {
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 256;
+    private static final long HEARTBEAT_MILLIS = 15_000;
+
+    /**
+     * One raw change as received from the marking path.
+     */
+    private static class Change {
+        private final BatchSection batchSection;
+        private final String studentId;
+        private final String date;
+        private final Boolean isPresent;
+
+        Change(BatchSection batchSection, String studentId, String date, Boolean isPresent) {
+            this.batchSection = batchSection;
+            this.studentId = studentId;
+            this.date = date;
+            this.isPresent = isPresent;
+        }
+    }
+
+    /**
+     * Running totals for one section and date.
+     */
+    private static class DateTotals {
+        private final Map<String, Boolean> marks = new HashMap<>();
+        private int present;
+        private int absent;
+
+        void apply(String studentId, Boolean isPresent) {
+            Boolean previous = isPresent == null ? marks.remove(studentId) : marks.put(studentId, isPresent);
+            present += (Boolean.TRUE.equals(isPresent) ? 1 : 0) - (Boolean.TRUE.equals(previous) ? 1 : 0);
+            absent += (Boolean.FALSE.equals(isPresent) ? 1 : 0) - (Boolean.FALSE.equals(previous) ? 1 : 0);
+        }
+    }
+
+    /**
+     * The latest totals event of one section and date.
+     */
+    private static class TotalsEvent {
+        private final BatchSection batchSection;
+        private final String event;
+
+        TotalsEvent(BatchSection batchSection, String event) {
+            this.batchSection = batchSection;
+            this.event = event;
+        }
+    }
+
+    /**
+     * A connected client with its own bounded queue and coalescing state.
+     */
+    public class Subscriber {
+        private final BatchSection filter;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_CAPACITY);
+        private final Set<String> coalesced = ConcurrentHashMap.newKeySet(); // Totals keys to resend
+        private final List<String> pendingEvents = new ArrayList<>();
+        private volatile boolean open = true;
+
+        Subscriber(BatchSection filter) {
+            this.filter = filter;
+        }
+
+        boolean accepts(BatchSection batchSection) {
+            return filter == null || filter.equals(batchSection);
+        }
+
+        void offer(String totalsKey, String event) {
+            if (!queue.offer(event)) {
+                // Too slow: drop the event and send the latest totals instead
+                coalesced.add(totalsKey);
+            }
+        }
+
+        /**
+         * Write events to the client until it disconnects or the hub stops.
+         *
+         * @param out The response stream
+         * @throws IOException If the client disconnects
+         */
+        public void stream(OutputStream out) throws IOException {
+            try {
+                while (open) {
+                    String event = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (event != null) {
+                        write(out, event);
+                        queue.drainTo(pendingEvents);
+                        for (String pendingEvent : pendingEvents) {
+                            write(out, pendingEvent);
+                        }
+                        pendingEvents.clear();
+                    } else {
+                        write(out, ": heartbeat\n\n");
+                    }
+
+                    if (!coalesced.isEmpty()) {
+                        for (String totalsKey : new ArrayList<>(coalesced)) {
+                            coalesced.remove(totalsKey);
+                            TotalsEvent totalsEvent = latestTotals.get(totalsKey);
+                            if (totalsEvent != null && accepts(totalsEvent.batchSection)) {
+                                write(out, totalsEvent.event);
+                            }
+                        }
+                    }
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                unsubscribe(this);
+            }
+        }
+
+        private void write(OutputStream out, String event) throws IOException {
+            out.write(event.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<BatchSection, Map<String, DateTotals>> totals = new HashMap<>(); // Dispatcher thread only
+    private final Map<String, TotalsEvent> latestTotals = new ConcurrentHashMap<>(); // Totals key -> SSE event
+    private Thread dispatcher;
+
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        dispatcher = new Thread(this::dispatch, "attendance-event-hub");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        CSVHandler.addAttendanceListener(this);
+    }
+
+    public synchronized void stop() {
+        CSVHandler.removeAttendanceListener(this);
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher = null;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.open = false;
+        }
+    }
+
+    @Override
+    public void attendanceChanged(BatchSection batchSection, String studentId, String date, Boolean isPresent) {
+        // Never blocks the marking path
+        changes.offer(new Change(batchSection, studentId, date, isPresent));
+    }
+
+    /**
+     * Register a new subscriber and queue the current totals of its sections for it.
+     *
+     * @param filter Only receive events of this section, or null for all sections
+     * @return The subscriber
+     */
+    public Subscriber subscribe(BatchSection filter) {
+        Subscriber subscriber = new Subscriber(filter);
+        subscribers.add(subscriber);
+        for (Map.Entry<String, TotalsEvent> entry : latestTotals.entrySet()) {
+            if (subscriber.accepts(entry.getValue().batchSection)) {
+                subscriber.coalesced.add(entry.getKey());
+            }
+        }
+        return subscriber;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.open = false;
+        subscribers.remove(subscriber);
+    }
+
+    private void dispatch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Change change = changes.take();
+                DateTotals dateTotals = getTotals(change.batchSection, change.date);
+                dateTotals.apply(change.studentId, change.isPresent);
+
+                String totalsKey = change.batchSection.getFileName() + "|" + change.date;
+                String sectionFields = "\"batch\":" + AttendanceServer.quote(change.batchSection.getBatchName())
+                        + ",\"section\":" + AttendanceServer.quote(change.batchSection.getSection())
+                        + ",\"date\":\"" + change.date + "\""
+                        + ",\"present\":" + dateTotals.present + ",\"absent\":" + dateTotals.absent;
+                latestTotals.put(totalsKey, new TotalsEvent(change.batchSection,
+                        "event: totals\ndata: {" + sectionFields + "}\n\n"));
+
+                String status = change.isPresent == null ? "" : (change.isPresent ? "Present" : "Absent");
+                String markEvent = "event: mark\ndata: {" + sectionFields
+                        + ",\"studentId\":" + AttendanceServer.quote(change.studentId)
+                        + ",\"status\":\"" + status + "\"}\n\n";
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.accepts(change.batchSection)) {
+                        subscriber.offer(totalsKey, markEvent);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the totals of a section and date, seeding them from the section snapshot on first use.
+     * Marks that were already saved are seeded too; applying their events again is harmless.
+     */
+    private DateTotals getTotals(BatchSection batchSection, String date) {
+        Map<String, DateTotals> sectionTotals = totals.computeIfAbsent(batchSection, bs -> new HashMap<>());
+        DateTotals dateTotals = sectionTotals.get(date);
+        if (dateTotals == null) {
+            dateTotals = new DateTotals();
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+            for (String studentId : snapshot.getStudentIds()) {
+                Boolean isPresent = snapshot.getAttendance(studentId, date);
+                if (isPresent != null) {
+                    dateTotals.apply(studentId, isPresent);
+                }
+            }
+            sectionTotals.put(date, dateTotals);
+        }
+        return dateTotals;
+    }
+}
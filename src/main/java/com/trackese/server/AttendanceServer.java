@@ -0,0 +1,363 @@
+package com.trackese.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.utils.BatchSectionManager;
+import com.trackese.utils.DateUtils;
+import com.trackese.utils.SectionStore;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless HTTP API for marking attendance from many devices on the local network.
+ *
+ * <pre>
+ * GET  /api/sections                                  list sections
+ * GET  /api/sections/{batch}/{section}/unmarked?date= students not yet marked for a date
+ * POST /api/sections/{batch}/{section}/marks?date=    body: one "studentId,Present|Absent" per line
+ * GET  /api/stats                                     request count and latency percentiles
+ * GET  /api/events?section={batch}/{section}          Server-Sent Events stream of marks and totals
+ * GET  /dashboard                                     live dashboard page fed by /api/events
+ * </pre>
+ *
+ * The date defaults to today. Writes to the same section are serialised with group commit.
+ */
+public class AttendanceServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int LATENCY_SAMPLES = 100_000;
+    private static final int REQUEST_BACKLOG = 1024;
+    private static final long STATS_INTERVAL_MILLIS = 30_000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<BatchSection, SectionWriter> writers = new ConcurrentHashMap<>();
+    private final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+    private final AtomicLong markCount = new AtomicLong();
+    private final Timer statsTimer = new Timer("attendance-server-stats", true);
+    private final AttendanceEventHub eventHub = new AttendanceEventHub();
+
+    /**
+     * Create a server on a port; call {@link #start()} to begin serving.
+     *
+     * @param port The port to listen on
+     * @throws IOException If the port cannot be bound
+     */
+    public AttendanceServer(int port) throws IOException {
+        // Small JSON responses should not wait for delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), REQUEST_BACKLOG);
+        executor = createExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/sections", this::handleSections);
+        server.createContext("/api/stats", this::handleStats);
+        server.createContext("/api/events", this::handleEvents);
+        server.createContext("/dashboard", this::handleDashboard);
+    }
+
+    public void start() {
+        eventHub.start();
+        server.start();
+        statsTimer.scheduleAtFixedRate(new TimerTask() {
+            private long lastCount = 0;
+
+            @Override
+            public void run() {
+                long count = latencies.getCount();
+                if (count != lastCount) {
+                    System.out.println(formatStats());
+                    lastCount = count;
+                }
+            }
+        }, STATS_INTERVAL_MILLIS, STATS_INTERVAL_MILLIS);
+    }
+
+    public void stop() {
+        statsTimer.cancel();
+        eventHub.stop();
+        server.stop(1);
+        executor.shutdown();
+        System.out.println(formatStats());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Start the server from the command line.
+     * Usage: AttendanceServer [port]
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try {
+            AttendanceServer attendanceServer = new AttendanceServer(port);
+            attendanceServer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(attendanceServer::stop));
+            System.out.println("Trackese attendance server listening on port " + attendanceServer.getPort());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Use one virtual thread per request where the JDK supports it, otherwise a cached pool.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handleSections(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            String[] parts = exchange.getRequestURI().getRawPath().split("/");
+            // parts: "", "api", "sections", batch, section, action
+            if (parts.length == 3 && "GET".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 200, listSections());
+            } else if (parts.length == 6) {
+                BatchSection batchSection = findSection(decode(parts[3]), decode(parts[4]));
+                String date = getDate(exchange);
+                if (batchSection == null) {
+                    sendError(exchange, 404, "Unknown batch section");
+                } else if (date == null) {
+                    sendError(exchange, 400, "Date must be in yyyy-MM-dd format");
+                } else if ("unmarked".equals(parts[5]) && "GET".equals(exchange.getRequestMethod())) {
+                    sendJson(exchange, 200, listUnmarked(batchSection, date));
+                } else if ("marks".equals(parts[5]) && "POST".equals(exchange.getRequestMethod())) {
+                    postMarks(exchange, batchSection, date);
+                } else {
+                    sendError(exchange, 404, "Not found");
+                }
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            // The marks were not saved; the client may retry
+            e.printStackTrace();
+            sendError(exchange, 503, "Could not save marks: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            sendJson(exchange, 200, "{\"requests\":" + latencies.getCount()
+                    + ",\"marks\":" + markCount.get()
+                    + ",\"p50Ms\":" + latencies.getPercentileMillis(50)
+                    + ",\"p99Ms\":" + latencies.getPercentileMillis(99)
+                    + ",\"maxMs\":" + latencies.getPercentileMillis(100) + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        try {
+            BatchSection filter = null;
+            String section = getParameter(exchange, "section");
+            if (section != null) {
+                String[] parts = section.split("/", 2);
+                filter = parts.length == 2 ? findSection(parts[0], parts[1]) : null;
+                if (filter == null) {
+                    sendError(exchange, 404, "Unknown batch section");
+                    return;
+                }
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                eventHub.subscribe(filter).stream(out);
+            } catch (IOException e) {
+                // Client disconnected
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleDashboard(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = DashboardPage.HTML.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void postMarks(HttpExchange exchange, BatchSection batchSection, String date) throws IOException {
+        Map<String, Boolean> marks = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] data = line.split(",");
+                if (data.length != 2 || data[0].trim().isEmpty()) {
+                    throw new IllegalArgumentException("Expected \"studentId,Present|Absent\" but got: " + line);
+                }
+                String status = data[1].trim();
+                if (!"Present".equalsIgnoreCase(status) && !"Absent".equalsIgnoreCase(status)) {
+                    throw new IllegalArgumentException("Status must be Present or Absent: " + line);
+                }
+                marks.put(data[0].trim(), "Present".equalsIgnoreCase(status));
+            }
+        }
+
+        if (marks.isEmpty()) {
+            throw new IllegalArgumentException("No marks in request body");
+        }
+
+        writers.computeIfAbsent(batchSection, SectionWriter::new).submit(date, marks);
+        markCount.addAndGet(marks.size());
+        sendJson(exchange, 200, "{\"applied\":" + marks.size() + "}");
+    }
+
+    private String listSections() {
+        StringBuilder json = new StringBuilder("[");
+        for (BatchSection batchSection : getSections()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"batch\":").append(quote(batchSection.getBatchName()))
+                    .append(",\"section\":").append(quote(batchSection.getSection()))
+                    .append(",\"name\":").append(quote(batchSection.getFullName())).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private String listUnmarked(BatchSection batchSection, String date) {
+        SectionSnapshot snapshot = SectionStore.get(batchSection);
+        StringBuilder json = new StringBuilder("[");
+        for (String studentId : snapshot.getStudentIds()) {
+            if (snapshot.getAttendance(studentId, date) == null) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(quote(studentId));
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    private static List<BatchSection> getSections() {
+        return new ArrayList<>(BatchSectionManager.getAllBatchSections());
+    }
+
+    private static BatchSection findSection(String batchName, String section) {
+        for (BatchSection batchSection : getSections()) {
+            if (batchSection.getBatchName().equals(batchName) && batchSection.getSection().equals(section)) {
+                return batchSection;
+            }
+        }
+        return null;
+    }
+
+    private static String getDate(HttpExchange exchange) {
+        String date = getParameter(exchange, "date");
+        if (date != null) {
+            return isValidDate(date) ? date : null;
+        }
+        return DateUtils.getCurrentDateString();
+    }
+
+    private static String getParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    return decode(parameter.substring(name.length() + 1));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValidDate(String date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        try {
+            return date.length() == 10 && format.format(format.parse(date)).equals(date);
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    private String formatStats() {
+        return String.format("requests=%d marks=%d p50=%.2fms p99=%.2fms max=%.2fms",
+                latencies.getCount(), markCount.get(), latencies.getPercentileMillis(50),
+                latencies.getPercentileMillis(99), latencies.getPercentileMillis(100));
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // UTF-8 is always supported
+        }
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, "{\"error\":" + quote(message == null ? "" : message) + "}");
+    }
+}
@@ -0,0 +1,43 @@
+package com.trackese.server;
+
+/**
+ * Static HTML for the live attendance dashboard served at /dashboard.
+ * The page subscribes to /api/events and shows per-section totals and recent marks.
+ */
+class DashboardPage {
+    static final String HTML = "<!DOCTYPE html>\n"
+            + "<html><head><meta charset=\"utf-8\"><title>Trackese - Live Attendance</title>\n"
+            + "<style>\n"
+            + "body{font-family:Arial,sans-serif;margin:20px;color:#333}\n"
+            + "h1{color:#3F51B5;font-size:22px}\n"
+            + "table{border-collapse:collapse;margin-bottom:20px}\n"
+            + "th,td{border:1px solid #ddd;padding:6px 12px;text-align:left}\n"
+            + "th{background:#3F51B5;color:#fff}\n"
+            + ".present{color:#4CAF50}.absent{color:#F44336}\n"
+            + "#status{font-size:12px;color:#888}\n"
+            + "</style></head><body>\n"
+            + "<h1>Live Attendance</h1><div id=\"status\">Connecting...</div>\n"
+            + "<h2>Sections</h2><table><thead><tr><th>Section</th><th>Date</th><th>Present</th><th>Absent</th>"
+            + "<th>Attendance</th></tr></thead><tbody id=\"totals\"></tbody></table>\n"
+            + "<h2>Recent Marks</h2><table><thead><tr><th>Section</th><th>Student ID</th><th>Date</th>"
+            + "<th>Status</th></tr></thead><tbody id=\"recent\"></tbody></table>\n"
+            + "<script>\n"
+            + "var rows={};\n"
+            + "function cell(tr,text,cls){var td=document.createElement('td');td.textContent=text;"
+            + "if(cls)td.className=cls;tr.appendChild(td);}\n"
+            + "function updateTotals(e){var key=e.batch+' - Section '+e.section+'|'+e.date;var tr=rows[key];\n"
+            + "if(!tr){tr=document.createElement('tr');rows[key]=tr;document.getElementById('totals').appendChild(tr);}\n"
+            + "tr.innerHTML='';var marked=e.present+e.absent;cell(tr,e.batch+' - Section '+e.section);cell(tr,e.date);\n"
+            + "cell(tr,e.present,'present');cell(tr,e.absent,'absent');"
+            + "cell(tr,marked?(100*e.present/marked).toFixed(1)+'%':'-');}\n"
+            + "var source=new EventSource('/api/events'+location.search);\n"
+            + "source.onopen=function(){document.getElementById('status').textContent='Connected';};\n"
+            + "source.onerror=function(){document.getElementById('status').textContent='Reconnecting...';};\n"
+            + "source.addEventListener('totals',function(m){updateTotals(JSON.parse(m.data));});\n"
+            + "source.addEventListener('mark',function(m){var e=JSON.parse(m.data);updateTotals(e);\n"
+            + "var tr=document.createElement('tr');cell(tr,e.batch+' - Section '+e.section);cell(tr,e.studentId);"
+            + "cell(tr,e.date);\n"
+            + "cell(tr,e.status,e.status==='Present'?'present':'absent');var recent=document.getElementById('recent');\n"
+            + "recent.insertBefore(tr,recent.firstChild);while(recent.rows.length>50)recent.deleteRow(-1);});\n"
+            + "</script></body></html>\n";
+}
@@ -0,0 +1,54 @@
+package com.trackese.server;
+
+import java.util.Arrays;
+
+/**
+ * Records request latencies in a fixed-size ring buffer and reports percentiles
+ * over the most recent requests.
+ */
+public class LatencyRecorder {
+    private final long[] samples;
+    private long count = 0;
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Record one latency.
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        samples[(int) (count % samples.length)] = nanos;
+        count++;
+    }
+
+    /**
+     * Total number of recorded latencies.
+     *
+     * @return The count
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Get a percentile over the retained samples.
+     *
+     * @param percentile Percentile from 0 to 100
+     * @return Latency in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+}
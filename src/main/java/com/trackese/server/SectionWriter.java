@@ -0,0 +1,134 @@
+package com.trackese.server;
+
+import com.trackese.models.BatchSection;
+import com.trackese.utils.CSVHandler;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serialises mark requests for one section with group commit.
+ * Requests queue their marks; while one request is committing, the others wait
+ * for it, and the next free request becomes the leader that applies every batch
+ * queued meanwhile with a single CSV rewrite. Many concurrent requests then cost
+ * one load and one save instead of one each.
+ */
+public class SectionWriter {
+    /**
+     * Marks from one request, completed by whichever thread commits them.
+     */
+    private static class PendingBatch {
+        private final String date;
+        private final Map<String, Boolean> marks;
+        private boolean done = false;
+        private RuntimeException failure;
+
+        PendingBatch(String date, Map<String, Boolean> marks) {
+            this.date = date;
+            this.marks = marks;
+        }
+    }
+
+    private final BatchSection batchSection;
+    private final ConcurrentLinkedQueue<PendingBatch> pending = new ConcurrentLinkedQueue<>();
+    private boolean committing = false;
+
+    public SectionWriter(BatchSection batchSection) {
+        this.batchSection = batchSection;
+    }
+
+    /**
+     * Apply the marks of one request for a date.
+     *
+     * @param date  The date
+     * @param marks Student ID to present/absent
+     * @throws IllegalArgumentException If a student is not in the section roster
+     * @throws UncheckedIOException     If the marks could not be saved
+     */
+    public void submit(String date, Map<String, Boolean> marks) {
+        PendingBatch batch = new PendingBatch(date, marks);
+        pending.add(batch);
+
+        boolean leader = false;
+        synchronized (this) {
+            while (committing && !batch.done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for commit");
+                }
+            }
+            if (!batch.done) {
+                committing = true;
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            try {
+                commitPending();
+            } finally {
+                synchronized (this) {
+                    committing = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        // Rethrown on this thread, which may not be the one that committed the batch
+        if (batch.failure instanceof IllegalArgumentException) {
+            throw new IllegalArgumentException(batch.failure.getMessage(), batch.failure);
+        }
+        if (batch.failure instanceof UncheckedIOException) {
+            throw new UncheckedIOException(batch.failure.getMessage(), ((UncheckedIOException) batch.failure).getCause());
+        }
+        if (batch.failure != null) {
+            throw new IllegalStateException("Could not save marks", batch.failure);
+        }
+    }
+
+    private void commitPending() {
+        List<PendingBatch> batches = new ArrayList<>();
+        PendingBatch next;
+        while ((next = pending.poll()) != null) {
+            batches.add(next);
+        }
+
+        try {
+            commitBatches(batches);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            for (PendingBatch batch : batches) {
+                batch.failure = e;
+            }
+        } finally {
+            synchronized (this) {
+                for (PendingBatch batch : batches) {
+                    batch.done = true;
+                }
+            }
+        }
+    }
+
+    private void commitBatches(List<PendingBatch> batches) {
+        Map<String, Map<String, Boolean>> marksByDate = new LinkedHashMap<>();
+        for (PendingBatch batch : batches) {
+            marksByDate.computeIfAbsent(batch.date, date -> new LinkedHashMap<>()).putAll(batch.marks);
+        }
+
+        try {
+            CSVHandler.markAttendance(batchSection, marksByDate);
+        } catch (IllegalArgumentException e) {
+            // A request failed validation; commit the others without it
+            for (PendingBatch batch : batches) {
+                try {
+                    CSVHandler.markAttendance(batchSection, batch.date, batch.marks);
+                } catch (IllegalArgumentException | UncheckedIOException batchError) {
+                    batch.failure = batchError;
+                }
+            }
+        }
+    }
+}
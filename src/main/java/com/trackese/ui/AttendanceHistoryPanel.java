@@ -1,17 +1,41 @@
 package com.trackese.ui;
 
+import com.trackese.metrics.Metrics;
+import com.trackese.metrics.Tracing;
+import com.trackese.models.AttendanceChange;
 import com.trackese.models.BatchSection;
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionEvent;
+import com.trackese.models.SectionSnapshot;
 import com.trackese.models.Student;
+import com.trackese.utils.AtRiskRuleEngine;
+import com.trackese.utils.AttendanceExporter;
+import com.trackese.utils.AttendanceIndex;
+import com.trackese.utils.BatchSectionManager;
 import com.trackese.utils.CSVHandler;
 import com.trackese.utils.DateUtils;
+import com.trackese.utils.SectionStore;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,18 +43,52 @@ import java.util.Map;
  * Panel for viewing and editing past attendance records.
  */
 public class AttendanceHistoryPanel extends JPanel {
+    private static final Color AT_RISK_BACKGROUND = new Color(255, 200, 120);
+    private static final Color AT_RISK_SELECTED_BACKGROUND = new Color(230, 140, 40);
+    private static final Color AT_RISK_FOREGROUND = new Color(120, 50, 0);
+    private static final int ROW_HEIGHT = 30;
+    private static final int HEATMAP_ROW_HEIGHT = 16;
+    private static final int HEATMAP_COLUMN_WIDTH = 1; // Pixels per date in the heatmap
+    private static final int ID_COLUMN_WIDTH = 120;
+    private static final int RANGE_COLUMN_WIDTH = 80;
+
     private MainFrame mainFrame;
     private BatchSection batchSection;
     
     // UI components
     private JComboBox<String> dateComboBox;
-    private JTable attendanceTable;
-    private DefaultTableModel tableModel;
+    private JComboBox<String> fromDateComboBox;
+    private JComboBox<String> toDateComboBox;
+    private JTable attendanceTable; // Date columns of the shown page
+    private JTable frozenTable; // Student ID and range columns, kept in view while scrolling
+    private AttendanceHistoryTableModel tableModel;
+    private AttendanceStatusRenderer statusRenderer;
+    private JCheckBox heatmapCheckBox;
+    private JButton previousPageButton;
+    private JButton nextPageButton;
+    private JComboBox<String> pageComboBox;
+    private JLabel rangeSummaryLabel;
+    private JLabel atRiskLabel;
     
     // Data
     private List<Student> students;
+    private Map<String, Integer> rowsById = new HashMap<>(); // Student ID -> table row
     private List<String> dates;
+    private List<String> visibleDates = new ArrayList<>();
+    private List<Integer> pageStarts = new ArrayList<>(); // Index in visibleDates of each page's first date
+    private int pageIndex;
+    private String[] rangeValues; // Range percentage per row, or null
     private String selectedDate;
+    private String rangeFromDate;
+    private String rangeToDate;
+    private long loadedVersion;
+    private AttendanceIndex attendanceIndex;
+    private AtRiskRuleEngine atRiskEngine;
+    private final AtRiskRuleEngine.FlagListener flagListener =
+            (section, studentId, atRisk) -> SwingUtilities.invokeLater(this::updateAtRiskDisplay);
+    private boolean updatingDateFilters = false;
+    private boolean updatingPages = false;
+    private boolean dirty = false; // Section changed while the panel was hidden
 
     /**
      * Constructor for the attendance history panel.
@@ -40,6 +98,16 @@ public class AttendanceHistoryPanel extends JPanel {
     public AttendanceHistoryPanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
         initializeUI();
+        
+        mainFrame.getSectionEventBus().subscribe(this::sectionChanged);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                if (dirty) {
+                    reloadData();
+                }
+            }
+        });
     }
 
     private void initializeUI() {
@@ -74,7 +142,7 @@ public class AttendanceHistoryPanel extends JPanel {
         // Will be populated when batch section is updated
         dateComboBox.addActionListener(e -> {
             Object selected = dateComboBox.getSelectedItem();
-            if (selected != null) {
+            if (selected != null && !updatingDateFilters) {
                 if ("All Dates".equals(selected)) {
                     selectedDate = null;
                 } else {
@@ -95,11 +163,54 @@ public class AttendanceHistoryPanel extends JPanel {
         
         datePanel.add(dateComboBox);
         
+        // Date range filter, answered from the attendance index
+        fromDateComboBox = new JComboBox<>();
+        fromDateComboBox.addItem("Any");
+        fromDateComboBox.addActionListener(e -> {
+            if (!updatingDateFilters) {
+                rangeFromDate = toStorageDate(fromDateComboBox.getSelectedItem());
+                updateAttendanceTable();
+            }
+        });
+        toDateComboBox = new JComboBox<>();
+        toDateComboBox.addItem("Any");
+        toDateComboBox.addActionListener(e -> {
+            if (!updatingDateFilters) {
+                rangeToDate = toStorageDate(toDateComboBox.getSelectedItem());
+                updateAttendanceTable();
+            }
+        });
+        datePanel.add(new JLabel("  From:"));
+        datePanel.add(fromDateComboBox);
+        datePanel.add(new JLabel("To:"));
+        datePanel.add(toDateComboBox);
+        
         // Add refresh button
         JButton refreshButton = new JButton("Refresh");
         refreshButton.addActionListener(e -> loadData());
         datePanel.add(refreshButton);
         
+        // Add presence query button
+        JButton queryButton = new JButton("Query Presence...");
+        queryButton.addActionListener(e ->
+                new PresenceQueryDialog(SwingUtilities.getWindowAncestor(this), batchSection).setVisible(true));
+        datePanel.add(queryButton);
+        
+        // Add calendar heatmap button
+        JButton calendarButton = new JButton("Calendar...");
+        calendarButton.addActionListener(e -> {
+            if (batchSection != null) {
+                new CalendarHeatmapDialog(mainFrame, batchSection).setVisible(true);
+            }
+        });
+        datePanel.add(calendarButton);
+        
+        // Whole-semester overview, one pixel column per date
+        heatmapCheckBox = new JCheckBox("Heatmap");
+        heatmapCheckBox.setToolTipText("Show each date as a narrow colored column");
+        heatmapCheckBox.addActionListener(e -> setHeatmap(heatmapCheckBox.isSelected()));
+        datePanel.add(heatmapCheckBox);
+        
         panel.add(datePanel, BorderLayout.CENTER);
 
         return panel;
@@ -113,77 +224,287 @@ public class AttendanceHistoryPanel extends JPanel {
                         new Font("Arial", Font.BOLD, 14)),
                 BorderFactory.createEmptyBorder(10, 10, 10, 10)));
 
-        // Create table model with editable cells
-        tableModel = new DefaultTableModel() {
+        // Only the dates of the shown page are loaded into the model
+        tableModel = new AttendanceHistoryTableModel();
+        
+        // Date columns, which fill the view until they need to scroll
+        attendanceTable = new JTable(tableModel) {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return column > 0; // Only date columns are editable
+            public boolean getScrollableTracksViewportWidth() {
+                return getParent() != null && getPreferredSize().width < getParent().getWidth();
             }
             
             @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return columnIndex == 0 ? String.class : String.class;
+            public String getToolTipText(MouseEvent event) {
+                // Heatmap columns are too narrow for a header, so name the cell on hover
+                int row = rowAtPoint(event.getPoint());
+                int column = columnAtPoint(event.getPoint());
+                if (statusRenderer.isHeatmap() && row >= 0 && column >= 0) {
+                    byte status = AttendanceStatusRenderer.toStatus(getValueAt(row, column));
+                    return tableModel.getStudentId(row) + " on " + getColumnName(column) + ": "
+                            + (status == SectionSnapshot.UNMARKED ? "not marked" : AttendanceStatusRenderer.LABELS[status]);
+                }
+                return super.getToolTipText(event);
             }
         };
+        frozenTable = new JTable(tableModel);
+        frozenTable.setSelectionModel(attendanceTable.getSelectionModel());
+        frozenTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        for (JTable table : new JTable[]{attendanceTable, frozenTable}) {
+            table.setRowHeight(ROW_HEIGHT);
+            table.setShowGrid(true);
+            table.setGridColor(Color.LIGHT_GRAY);
+            table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 14));
+            table.getTableHeader().setReorderingAllowed(false);
+        }
         
-        // Create table
-        attendanceTable = new JTable(tableModel);
-        attendanceTable.setRowHeight(30);
-        attendanceTable.setShowGrid(true);
-        attendanceTable.setGridColor(Color.LIGHT_GRAY);
-        attendanceTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 14));
-        
-        // Custom cell renderer to color cells based on attendance
-        attendanceTable.setDefaultRenderer(String.class, new DefaultTableCellRenderer() {
+        // Student ID and range cells, flagging at-risk students on their ID cell
+        frozenTable.setDefaultRenderer(String.class, new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
                 Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
                 
-                if (column == 0 || value == null) {
+                setToolTipText(null);
+                if (column == 0 && atRiskEngine != null && value != null && atRiskEngine.isAtRisk(value.toString())) {
+                    c.setBackground(isSelected ? AT_RISK_SELECTED_BACKGROUND : AT_RISK_BACKGROUND);
+                    c.setForeground(AT_RISK_FOREGROUND);
+                    setToolTipText(atRiskEngine.getReasons(value.toString()));
+                } else {
                     c.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
                     c.setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
-                } else {
-                    if ("Present".equals(value)) {
-                        c.setBackground(isSelected ? new Color(100, 200, 100) : new Color(220, 255, 220));
-                        c.setForeground(new Color(0, 100, 0));
-                    } else if ("Absent".equals(value)) {
-                        c.setBackground(isSelected ? new Color(200, 100, 100) : new Color(255, 220, 220));
-                        c.setForeground(new Color(100, 0, 0));
-                    } else {
-                        c.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
-                        c.setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
-                    }
                 }
                 
                 return c;
             }
         });
         
-        // Add editor for attendance cells
-        attendanceTable.setDefaultEditor(String.class, new DefaultCellEditor(createAttendanceComboBox()));
+        // Attendance cells are colored from preallocated styles by status code
+        statusRenderer = new AttendanceStatusRenderer();
+        attendanceTable.setDefaultRenderer(Byte.class, statusRenderer);
+        attendanceTable.setDefaultEditor(Byte.class, new DefaultCellEditor(createAttendanceComboBox()));
         
-        // Add table to scroll pane
+        // Add table to scroll pane, with the frozen columns as its row header
         JScrollPane scrollPane = new JScrollPane(attendanceTable);
+        scrollPane.setRowHeaderView(frozenTable);
+        scrollPane.setCorner(JScrollPane.UPPER_LEFT_CORNER, frozenTable.getTableHeader());
         panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(createPagePanel(), BorderLayout.NORTH);
         
-        // Add save button
+        // Add range summary and save button
+        rangeSummaryLabel = new JLabel(" ");
         JButton saveButton = new JButton("Save Changes");
         saveButton.addActionListener(e -> saveChanges());
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportAttendance(exportButton));
+        JButton copyPreviousButton = new JButton("Copy Previous Date");
+        copyPreviousButton.addActionListener(e -> copyPreviousDate());
+        JButton markUnmarkedButton = new JButton("Mark Unmarked Absent");
+        markUnmarkedButton.addActionListener(e -> markUnmarkedAbsent());
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(copyPreviousButton);
+        buttonPanel.add(markUnmarkedButton);
+        buttonPanel.add(exportButton);
         buttonPanel.add(saveButton);
-        panel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        // Add at-risk summary and export
+        atRiskLabel = new JLabel(" ");
+        atRiskLabel.setForeground(new Color(200, 0, 0));
+        JButton exportAtRiskButton = new JButton("Export At-Risk List");
+        exportAtRiskButton.addActionListener(e -> exportAtRiskList());
+        JPanel infoPanel = new JPanel(new GridLayout(2, 1));
+        infoPanel.add(rangeSummaryLabel);
+        JPanel atRiskPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        atRiskPanel.add(atRiskLabel);
+        atRiskPanel.add(Box.createHorizontalStrut(10));
+        atRiskPanel.add(exportAtRiskButton);
+        infoPanel.add(atRiskPanel);
+        
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(infoPanel, BorderLayout.WEST);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+        panel.add(southPanel, BorderLayout.SOUTH);
         
         return panel;
     }
 
-    private JComboBox<String> createAttendanceComboBox() {
-        JComboBox<String> comboBox = new JComboBox<>();
-        comboBox.addItem("Present");
-        comboBox.addItem("Absent");
-        comboBox.addItem(""); // For not marked
+    private JComboBox<Byte> createAttendanceComboBox() {
+        JComboBox<Byte> comboBox = new JComboBox<>();
+        comboBox.addItem(SectionSnapshot.PRESENT);
+        comboBox.addItem(SectionSnapshot.ABSENT);
+        comboBox.addItem(SectionSnapshot.UNMARKED); // For not marked
+        comboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                String label = AttendanceStatusRenderer.LABELS[AttendanceStatusRenderer.toStatus(value)];
+                return super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+            }
+        });
         return comboBox;
     }
 
+    /**
+     * Create the month navigation shown above the table.
+     */
+    private JPanel createPagePanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        previousPageButton = new JButton("< Previous Month");
+        previousPageButton.addActionListener(e -> showPage(pageIndex - 1));
+        nextPageButton = new JButton("Next Month >");
+        nextPageButton.addActionListener(e -> showPage(pageIndex + 1));
+        pageComboBox = new JComboBox<>();
+        pageComboBox.addActionListener(e -> {
+            if (!updatingPages && pageComboBox.getSelectedIndex() >= 0) {
+                showPage(pageComboBox.getSelectedIndex());
+            }
+        });
+        panel.add(previousPageButton);
+        panel.add(pageComboBox);
+        panel.add(nextPageButton);
+        
+        // Alt+Left and Alt+Right page from anywhere in the panel
+        InputMap inputMap = getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, InputEvent.ALT_DOWN_MASK), "previousPage");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, InputEvent.ALT_DOWN_MASK), "nextPage");
+        getActionMap().put("previousPage", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showPage(pageIndex - 1);
+            }
+        });
+        getActionMap().put("nextPage", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showPage(pageIndex + 1);
+            }
+        });
+        updatePageControls();
+        return panel;
+    }
+
+    /**
+     * Switch between the month pages and the compact heatmap, which shows every
+     * date as a narrow color column so a whole semester fits on screen.
+     *
+     * @param heatmap Whether to show the heatmap
+     */
+    private void setHeatmap(boolean heatmap) {
+        stopEditing();
+        statusRenderer.setHeatmap(heatmap);
+        attendanceTable.setRowHeight(heatmap ? HEATMAP_ROW_HEIGHT : ROW_HEIGHT);
+        frozenTable.setRowHeight(heatmap ? HEATMAP_ROW_HEIGHT : ROW_HEIGHT);
+        attendanceTable.setShowVerticalLines(!heatmap);
+        attendanceTable.setIntercellSpacing(new Dimension(heatmap ? 0 : 1, 1));
+        updateAttendanceTable();
+    }
+
+    private void stopEditing() {
+        if (attendanceTable.isEditing()) {
+            attendanceTable.getCellEditor().stopCellEditing();
+        }
+    }
+
+    /**
+     * Split the model's columns between the frozen and the scrolling table and
+     * size them; called whenever the model's columns change.
+     */
+    private void layoutColumns() {
+        int frozenCount = tableModel.getFrozenColumnCount();
+        TableColumnModel dateColumns = attendanceTable.getColumnModel();
+        while (dateColumns.getColumnCount() > 0 && dateColumns.getColumn(0).getModelIndex() < frozenCount) {
+            dateColumns.removeColumn(dateColumns.getColumn(0));
+        }
+        TableColumnModel frozenColumns = frozenTable.getColumnModel();
+        while (frozenColumns.getColumnCount() > frozenCount) {
+            frozenColumns.removeColumn(frozenColumns.getColumn(frozenCount));
+        }
+        
+        frozenColumns.getColumn(0).setPreferredWidth(ID_COLUMN_WIDTH);
+        if (frozenCount > 1) {
+            frozenColumns.getColumn(1).setPreferredWidth(RANGE_COLUMN_WIDTH);
+        }
+        frozenTable.setPreferredScrollableViewportSize(new Dimension(
+                frozenColumns.getTotalColumnWidth(), 0));
+        
+        if (statusRenderer.isHeatmap()) {
+            for (int i = 0; i < dateColumns.getColumnCount(); i++) {
+                TableColumn column = dateColumns.getColumn(i);
+                column.setMinWidth(HEATMAP_COLUMN_WIDTH);
+                column.setPreferredWidth(HEATMAP_COLUMN_WIDTH);
+                column.setMaxWidth(HEATMAP_COLUMN_WIDTH);
+                column.setHeaderValue("");
+            }
+        }
+        frozenTable.revalidate();
+    }
+
+    /**
+     * Split the shown dates into pages of one month; the heatmap shows all of
+     * them at once. Keeps the month of the current page if it is still shown,
+     * otherwise opens the latest month.
+     */
+    private void updatePages() {
+        List<String> windowDates = tableModel.getWindowDates();
+        String shownMonth = windowDates.isEmpty() ? null : windowDates.get(0).substring(0, 7);
+        
+        pageStarts = new ArrayList<>();
+        updatingPages = true;
+        pageComboBox.removeAllItems();
+        String month = null;
+        for (int i = 0; i < visibleDates.size(); i++) {
+            String dateMonth = visibleDates.get(i).substring(0, 7);
+            if (i == 0 || (!statusRenderer.isHeatmap() && !dateMonth.equals(month))) {
+                pageStarts.add(i);
+                pageComboBox.addItem(statusRenderer.isHeatmap() ? "All Dates"
+                        : DateUtils.formatMonthForDisplay(visibleDates.get(i)));
+            }
+            month = dateMonth;
+        }
+        updatingPages = false;
+        
+        pageIndex = Math.max(0, pageStarts.size() - 1);
+        for (int i = 0; shownMonth != null && i < pageStarts.size(); i++) {
+            if (visibleDates.get(pageStarts.get(i)).startsWith(shownMonth)) {
+                pageIndex = i;
+            }
+        }
+    }
+
+    private void updatePageControls() {
+        previousPageButton.setEnabled(pageIndex > 0);
+        nextPageButton.setEnabled(pageIndex < pageStarts.size() - 1);
+        pageComboBox.setEnabled(pageStarts.size() > 1);
+        if (pageIndex < pageComboBox.getItemCount() && pageComboBox.getSelectedIndex() != pageIndex) {
+            updatingPages = true;
+            pageComboBox.setSelectedIndex(pageIndex);
+            updatingPages = false;
+        }
+    }
+
+    /**
+     * Load one page of dates into the table.
+     *
+     * @param index The page
+     */
+    private void showPage(int index) {
+        if (students == null || index < 0 || (index >= pageStarts.size() && index > 0)) {
+            return;
+        }
+        stopEditing();
+        pageIndex = index;
+        long start = System.nanoTime();
+        Tracing.Span span = Tracing.beginUIRebuild("ui.history.table", batchSection);
+        
+        int from = pageStarts.isEmpty() ? 0 : pageStarts.get(index);
+        int to = index + 1 < pageStarts.size() ? pageStarts.get(index + 1) : visibleDates.size();
+        tableModel.setWindow(new ArrayList<>(visibleDates.subList(from, to)), rangeValues);
+        layoutColumns();
+        updatePageControls();
+        
+        Metrics.record("ui.history.table", batchSection, start, 0, students.size());
+        span.finish(0, students.size());
+    }
+
     /**
      * Update the batch section and reload data.
      *
@@ -191,151 +512,525 @@ public class AttendanceHistoryPanel extends JPanel {
      */
     public void updateBatchSection(BatchSection batchSection) {
         this.batchSection = batchSection;
-        loadData();
+        
+        // Follow the at-risk flags of the new section
+        if (atRiskEngine != null) {
+            atRiskEngine.removeFlagListener(flagListener);
+        }
+        atRiskEngine = batchSection == null ? null : AtRiskRuleEngine.forSection(batchSection);
+        if (atRiskEngine != null) {
+            atRiskEngine.addFlagListener(flagListener);
+        }
+        
+        if (isVisible()) {
+            loadData();
+        } else {
+            // Load when shown, without the filters of the previous section
+            selectedDate = null;
+            rangeFromDate = null;
+            rangeToDate = null;
+            releaseData();
+        }
+    }
+
+    /**
+     * Drop the students, index, table rows and unsaved edits of a hidden panel;
+     * they are loaded again when it is shown.
+     */
+    private void releaseData() {
+        dirty = true;
+        students = null;
+        rowsById = new HashMap<>();
+        attendanceIndex = null;
+        rangeValues = null;
+        tableModel.clear();
+    }
+
+    /**
+     * Estimate the heap used by the loaded students, their index and the table rows.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateRetainedBytes() {
+        if (students == null) {
+            return 0;
+        }
+        return Student.estimateBytes(students) + Footprint.hashMap(rowsById.size())
+                + Footprint.boxedIndexes(rowsById.size()) + attendanceIndex.estimateBytes() + tableModel.estimateBytes();
+    }
+
+    /**
+     * Apply saved changes of the shown section to the loaded data and the table,
+     * keeping unsaved edits, whether the panel is shown or not. Changes that need a
+     * reload are reloaded at once when shown; when hidden, the loaded data is
+     * dropped, or kept until the panel is shown if it holds unsaved edits.
+     */
+    private void sectionChanged(List<SectionEvent> events) {
+        boolean datesAdded = false;
+        boolean cellsMarked = false;
+        for (SectionEvent event : events) {
+            if (!event.getBatchSection().equals(batchSection)) {
+                continue;
+            }
+            if (students == null) {
+                if (isVisible()) {
+                    reloadData();
+                } else {
+                    dirty = true;
+                }
+                return;
+            }
+            if (event.getType() == SectionEvent.Type.ROSTER_CHANGED
+                    || (event.getType() == SectionEvent.Type.CELL_MARKED && !rowsById.containsKey(event.getStudentId()))) {
+                if (isVisible()) {
+                    reloadData();
+                } else if (tableModel.getEdits().isEmpty()) {
+                    releaseData();
+                } else {
+                    dirty = true;
+                }
+                return;
+            }
+            
+            if (!dates.contains(event.getDate())) {
+                addDate(event.getDate());
+                datesAdded = true;
+            }
+            if (event.getType() == SectionEvent.Type.CELL_MARKED) {
+                markCell(event.getStudentId(), event.getDate(), event.getIsPresent());
+                cellsMarked = true;
+            }
+        }
+        
+        if (datesAdded) {
+            // New date columns: rebuild the pages; the model keeps unsaved edits
+            updateAttendanceTable();
+        } else if (cellsMarked) {
+            updateRangeSummary();
+        }
+    }
+
+    /**
+     * Insert a new date into the loaded dates and the date filters.
+     */
+    private void addDate(String date) {
+        int position = -Collections.binarySearch(dates, date) - 1;
+        dates.add(position, date);
+        
+        // The first item of each filter is "All Dates" or "Any"
+        String displayDate = DateUtils.formatDateForDisplay(date);
+        updatingDateFilters = true;
+        dateComboBox.insertItemAt(displayDate, position + 1);
+        fromDateComboBox.insertItemAt(displayDate, position + 1);
+        toDateComboBox.insertItemAt(displayDate, position + 1);
+        updatingDateFilters = false;
+    }
+
+    /**
+     * Update one loaded cell, and its table cell unless the user has edited it.
+     */
+    private void markCell(String studentId, String date, Boolean isPresent) {
+        int row = rowsById.get(studentId);
+        Student student = students.get(row);
+        if (isPresent == null) {
+            student.getAttendanceRecords().remove(date);
+        } else {
+            student.addAttendanceRecord(date, isPresent);
+        }
+        attendanceIndex.mark(studentId, date, isPresent);
+        
+        tableModel.attendanceChanged(row, date);
+        if (rangeValues != null) {
+            tableModel.setRangeValue(row, formatPercentage(
+                    attendanceIndex.getAttendancePercentage(studentId, rangeFromDate, rangeToDate)));
+        }
+    }
+
+    private void updateAtRiskDisplay() {
+        if (atRiskEngine == null) {
+            atRiskLabel.setText(" ");
+            return;
+        }
+        
+        int flagged = atRiskEngine.getFlaggedStudents().size();
+        atRiskLabel.setText(flagged == 0 ? "No students at risk" : "At-risk students: " + flagged);
+        frozenTable.repaint(); // The flag is drawn on the frozen Student ID column
+    }
+
+    private void exportAttendance(JButton exportButton) {
+        JComboBox<AttendanceExporter.Format> formatComboBox = new JComboBox<>(AttendanceExporter.Format.values());
+        JCheckBox allSectionsCheckBox = new JCheckBox("Include all batch sections");
+        JPanel optionsPanel = new JPanel(new GridLayout(2, 1, 5, 5));
+        optionsPanel.add(formatComboBox);
+        optionsPanel.add(allSectionsCheckBox);
+        
+        int result = JOptionPane.showConfirmDialog(this, optionsPanel, "Export Attendance",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION || (batchSection == null && !allSectionsCheckBox.isSelected())) {
+            return;
+        }
+        
+        AttendanceExporter.Format format = (AttendanceExporter.Format) formatComboBox.getSelectedItem();
+        List<BatchSection> sections = allSectionsCheckBox.isSelected()
+                ? new ArrayList<>(BatchSectionManager.getAllBatchSections())
+                : Collections.singletonList(batchSection);
+        String baseName = allSectionsCheckBox.isSelected() ? "attendance_all_sections"
+                : batchSection.getFileName().replace(".csv", "");
+        
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File(baseName + "." + format.getExtension()));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        
+        // Stream the export off the event dispatch thread
+        exportButton.setEnabled(false);
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                return AttendanceExporter.export(sections, format, file);
+            }
+            
+            @Override
+            protected void done() {
+                exportButton.setEnabled(true);
+                try {
+                    JOptionPane.showMessageDialog(AttendanceHistoryPanel.this,
+                            get() + " attendance rows exported to " + file.getName() + ".",
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(AttendanceHistoryPanel.this,
+                            "Error exporting attendance: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void exportAtRiskList() {
+        if (atRiskEngine == null) {
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File(batchSection.getFileName().replace(".csv", "_at_risk.csv")));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        try {
+            atRiskEngine.exportFlaggedStudents(fileChooser.getSelectedFile());
+            JOptionPane.showMessageDialog(this, "At-risk list exported.",
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error exporting at-risk list: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /**
      * Load data from the CSV file.
      */
     private void loadData() {
+        dirty = false;
         if (batchSection == null) {
             return;
         }
 
-        // Load data from CSV
-        Map<String, Object> data = CSVHandler.loadStudentsFromCSV(batchSection);
-        students = (List<Student>) data.get("students");
-        dates = (List<String>) data.get("dates");
+        // Copy the section's current snapshot; marking elsewhere publishes new ones
+        long start = System.nanoTime();
+        SectionSnapshot snapshot = SectionStore.get(batchSection);
+        students = snapshot.toStudents();
+        rowsById = new HashMap<>();
+        for (int row = 0; row < students.size(); row++) {
+            rowsById.putIfAbsent(students.get(row).getId(), row);
+        }
+        dates = new ArrayList<>(snapshot.getDates());
+        loadedVersion = snapshot.getVersion();
+        attendanceIndex = AttendanceIndex.build(students, dates);
+        tableModel.setStudents(students);
         
         // Update date combo box
         updateDateComboBox();
         
         // Update table with data
         updateAttendanceTable();
+        updateAtRiskDisplay();
+        Metrics.record("ui.history.load", batchSection, start, 0, students.size());
     }
 
     private void updateDateComboBox() {
+        updatingDateFilters = true;
         dateComboBox.removeAllItems();
         dateComboBox.addItem("All Dates");
+        fromDateComboBox.removeAllItems();
+        fromDateComboBox.addItem("Any");
+        toDateComboBox.removeAllItems();
+        toDateComboBox.addItem("Any");
         
         for (String date : dates) {
-            dateComboBox.addItem(DateUtils.formatDateForDisplay(date));
+            String displayDate = DateUtils.formatDateForDisplay(date);
+            dateComboBox.addItem(displayDate);
+            fromDateComboBox.addItem(displayDate);
+            toDateComboBox.addItem(displayDate);
         }
+        updatingDateFilters = false;
         
         selectedDate = null;
+        rangeFromDate = null;
+        rangeToDate = null;
+    }
+
+    private String toStorageDate(Object displayDate) {
+        if (displayDate == null || "Any".equals(displayDate)) {
+            return null;
+        }
+        return DateUtils.parseDisplayDate(displayDate.toString());
     }
 
     private void updateAttendanceTable() {
-        // Clear the table
-        tableModel.setRowCount(0);
-        tableModel.setColumnCount(0);
-        
-        // Add the student ID column
-        tableModel.addColumn("Student ID");
+        if (students == null) {
+            return;
+        }
         
-        if (selectedDate == null) {
-            // Add all date columns
+        // Work out which date columns are shown
+        visibleDates = new ArrayList<>();
+        if (selectedDate != null) {
+            visibleDates.add(selectedDate);
+        } else {
             for (String date : dates) {
-                tableModel.addColumn(DateUtils.formatDateForDisplay(date));
-            }
-            
-            // Add rows for each student
-            for (Student student : students) {
-                Object[] rowData = new Object[dates.size() + 1];
-                rowData[0] = student.getId();
-                
-                // Add attendance data for each date
-                for (int i = 0; i < dates.size(); i++) {
-                    String date = dates.get(i);
-                    Boolean isPresent = student.getAttendanceForDate(date);
-                    rowData[i + 1] = (isPresent == null) ? "" : (isPresent ? "Present" : "Absent");
+                if ((rangeFromDate == null || date.compareTo(rangeFromDate) >= 0)
+                        && (rangeToDate == null || date.compareTo(rangeToDate) <= 0)) {
+                    visibleDates.add(date);
                 }
-                
-                tableModel.addRow(rowData);
             }
-        } else {
-            // Add only the selected date column
-            tableModel.addColumn(DateUtils.formatDateForDisplay(selectedDate));
-            
-            // Add rows for each student
-            for (Student student : students) {
-                Object[] rowData = new Object[2];
-                rowData[0] = student.getId();
-                
-                // Add attendance data for the selected date
-                Boolean isPresent = student.getAttendanceForDate(selectedDate);
-                rowData[1] = (isPresent == null) ? "" : (isPresent ? "Present" : "Absent");
-                
-                tableModel.addRow(rowData);
+        }
+        
+        // Range percentage per student, shown next to the student ID
+        rangeValues = null;
+        if (selectedDate == null && (rangeFromDate != null || rangeToDate != null)) {
+            rangeValues = new String[students.size()];
+            for (int row = 0; row < students.size(); row++) {
+                rangeValues[row] = formatPercentage(attendanceIndex.getAttendancePercentage(
+                        students.get(row).getId(), rangeFromDate, rangeToDate));
             }
         }
+        
+        updatePages();
+        showPage(pageIndex);
+        updateRangeSummary();
+    }
+
+    private void updateRangeSummary() {
+        if (selectedDate != null || (rangeFromDate == null && rangeToDate == null)) {
+            rangeSummaryLabel.setText(" ");
+            return;
+        }
+        
+        rangeSummaryLabel.setText("Section attendance in range: "
+                + formatPercentage(attendanceIndex.getSectionAttendancePercentage(rangeFromDate, rangeToDate))
+                + " (" + attendanceIndex.countSectionPresent(rangeFromDate, rangeToDate) + " of "
+                + attendanceIndex.countSectionMarked(rangeFromDate, rangeToDate) + " marks present)");
+    }
+
+    private String formatPercentage(double percentage) {
+        return percentage < 0 ? "-" : String.format("%.1f%%", percentage);
     }
 
     private void saveChanges() {
-        if (batchSection == null || students.isEmpty()) {
+        if (batchSection == null || students == null || students.isEmpty()) {
             return;
         }
         
-        boolean changesFound = false;
+        stopEditing();
+        Map<String, Map<String, Boolean>> changes = tableModel.getEdits();
         
-        // Iterate through table cells and update student attendance
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            String studentId = (String) tableModel.getValueAt(row, 0);
-            Student student = findStudentById(studentId);
-            
-            if (student != null) {
-                if (selectedDate == null) {
-                    // Update all dates
-                    for (int col = 1; col < tableModel.getColumnCount(); col++) {
-                        String date = dates.get(col - 1);
-                        String attendanceValue = (String) tableModel.getValueAt(row, col);
-                        
-                        if (attendanceValue != null && !attendanceValue.isEmpty()) {
-                            boolean isPresent = "Present".equals(attendanceValue);
-                            Boolean currentValue = student.getAttendanceForDate(date);
-                            
-                            // Update only if changed
-                            if (currentValue == null || currentValue != isPresent) {
-                                student.addAttendanceRecord(date, isPresent);
-                                changesFound = true;
-                            }
-                        }
-                    }
-                } else {
-                    // Update only selected date
-                    String attendanceValue = (String) tableModel.getValueAt(row, 1);
-                    
-                    if (attendanceValue != null && !attendanceValue.isEmpty()) {
-                        boolean isPresent = "Present".equals(attendanceValue);
-                        Boolean currentValue = student.getAttendanceForDate(selectedDate);
-                        
-                        // Update only if changed
-                        if (currentValue == null || currentValue != isPresent) {
-                            student.addAttendanceRecord(selectedDate, isPresent);
-                            changesFound = true;
-                        }
-                    }
-                }
+        if (!changes.isEmpty()) {
+            // Save all changes with one write, merged with concurrent edits
+            if (applyMarks(changes)) {
+                JOptionPane.showMessageDialog(this, "Changes saved successfully.",
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
             }
-        }
-        
-        if (changesFound) {
-            // Save changes to the CSV file
-            CSVHandler.saveStudentsToCSV(batchSection, students, dates);
-            JOptionPane.showMessageDialog(this, "Changes saved successfully.",
-                    "Success", JOptionPane.INFORMATION_MESSAGE);
         } else {
             JOptionPane.showMessageDialog(this, "No changes were made.",
                     "No Changes", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
-    private Student findStudentById(String id) {
+    /**
+     * Fill the selected date from the previous date for students not marked yet.
+     */
+    private void copyPreviousDate() {
+        if (!checkSingleDateSelected()) {
+            return;
+        }
+        
+        int index = dates.indexOf(selectedDate);
+        if (index <= 0) {
+            JOptionPane.showMessageDialog(this, "There is no earlier date to copy from.",
+                    "Nothing to Copy", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String previousDate = dates.get(index - 1);
+        
+        Map<String, Boolean> marks = new LinkedHashMap<>();
         for (Student student : students) {
-            if (student.getId().equals(id)) {
-                return student;
+            Boolean previousValue = student.getAttendanceForDate(previousDate);
+            if (previousValue != null && student.getAttendanceForDate(selectedDate) == null) {
+                marks.put(student.getId(), previousValue);
             }
         }
-        return null;
+        confirmAndApply(marks, "Copy " + marks.size() + " marks from "
+                + DateUtils.formatDateForDisplay(previousDate) + " to " + DateUtils.formatDateForDisplay(selectedDate) + "?");
+    }
+
+    /**
+     * Mark every student without a mark on the selected date absent.
+     */
+    private void markUnmarkedAbsent() {
+        if (!checkSingleDateSelected()) {
+            return;
+        }
+        
+        Map<String, Boolean> marks = new LinkedHashMap<>();
+        for (Student student : students) {
+            if (student.getAttendanceForDate(selectedDate) == null) {
+                marks.put(student.getId(), false);
+            }
+        }
+        confirmAndApply(marks, "Mark " + marks.size() + " unmarked students absent for "
+                + DateUtils.formatDateForDisplay(selectedDate) + "?");
+    }
+
+    private boolean checkSingleDateSelected() {
+        if (batchSection == null || students == null || selectedDate == null) {
+            JOptionPane.showMessageDialog(this, "Select a single date first.",
+                    "No Date Selected", JOptionPane.INFORMATION_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    private void confirmAndApply(Map<String, Boolean> marks, String question) {
+        if (marks.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Every student already has a mark for this date.",
+                    "Nothing to Mark", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        
+        int result = JOptionPane.showConfirmDialog(this, question, "Confirm", JOptionPane.YES_NO_OPTION);
+        if (result == JOptionPane.YES_OPTION) {
+            Map<String, Map<String, Boolean>> marksByDate = new LinkedHashMap<>();
+            marksByDate.put(selectedDate, marks);
+            applyMarks(marksByDate);
+        }
+    }
+
+    /**
+     * Save marks made against the loaded data with one write, merging them with
+     * changes saved elsewhere since the section was loaded, then reload it.
+     * If the file cannot be written nothing is saved and the table keeps the edits.
+     *
+     * @param marksByDate Date to student ID to present/absent
+     * @return Whether every mark was saved
+     */
+    private boolean applyMarks(Map<String, Map<String, Boolean>> marksByDate) {
+        List<AttendanceChange> edits = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Boolean>> dateMarks : marksByDate.entrySet()) {
+            for (Map.Entry<String, Boolean> mark : dateMarks.getValue().entrySet()) {
+                Boolean previousValue = findStudentById(mark.getKey()).getAttendanceForDate(dateMarks.getKey());
+                edits.add(new AttendanceChange(mark.getKey(), dateMarks.getKey(), mark.getValue(), previousValue));
+            }
+        }
+        
+        List<AttendanceChange> conflicts;
+        try {
+            conflicts = CSVHandler.saveEdits(batchSection, loadedVersion, edits);
+        } catch (UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save attendance: " + e.getCause().getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        boolean saved = conflicts.isEmpty();
+        if (!saved) {
+            int result = JOptionPane.showConfirmDialog(this,
+                    conflicts.size() + " of your changes were also changed by someone else since this section was loaded.\n"
+                            + "Overwrite their changes with yours?",
+                    "Conflicting Changes", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (result == JOptionPane.YES_OPTION) {
+                Map<String, Map<String, Boolean>> overwrite = new LinkedHashMap<>();
+                for (AttendanceChange conflict : conflicts) {
+                    overwrite.computeIfAbsent(conflict.getDate(), date -> new LinkedHashMap<>())
+                            .put(conflict.getStudentId(), conflict.getIsPresent());
+                }
+                try {
+                    CSVHandler.markAttendance(batchSection, overwrite);
+                    saved = true;
+                } catch (IllegalArgumentException e) {
+                    JOptionPane.showMessageDialog(this, "Could not save attendance: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (UncheckedIOException e) {
+                    JOptionPane.showMessageDialog(this, "Could not save attendance: " + e.getCause().getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+        
+        // Show the merged data, including changes saved by others. The submitted
+        // edits were saved or declined; any other edits in the table are kept.
+        Map<String, Map<String, Boolean>> keptEdits = tableModel.getEdits();
+        for (Map.Entry<String, Map<String, Boolean>> dateMarks : marksByDate.entrySet()) {
+            Map<String, Boolean> dateEdits = keptEdits.get(dateMarks.getKey());
+            if (dateEdits != null) {
+                dateEdits.keySet().removeAll(dateMarks.getValue().keySet());
+            }
+        }
+        reloadData(keptEdits);
+        return saved;
+    }
+
+    /**
+     * Reload the section from its CSV file, keeping the date filters and unsaved edits.
+     */
+    private void reloadData() {
+        reloadData(tableModel.getEdits());
+    }
+
+    /**
+     * Reload the section from its CSV file, keeping the date filters, and apply
+     * edits again by student ID and date. Edits of removed students or dates are dropped.
+     *
+     * @param edits Date to student ID to present/absent
+     */
+    private void reloadData(Map<String, Map<String, Boolean>> edits) {
+        String keepSelectedDate = selectedDate;
+        String keepFromDate = rangeFromDate;
+        String keepToDate = rangeToDate;
+        loadData();
+        
+        updatingDateFilters = true;
+        if (keepSelectedDate != null && dates.contains(keepSelectedDate)) {
+            selectedDate = keepSelectedDate;
+            dateComboBox.setSelectedItem(DateUtils.formatDateForDisplay(keepSelectedDate));
+        }
+        if (keepFromDate != null && dates.contains(keepFromDate)) {
+            rangeFromDate = keepFromDate;
+            fromDateComboBox.setSelectedItem(DateUtils.formatDateForDisplay(keepFromDate));
+        }
+        if (keepToDate != null && dates.contains(keepToDate)) {
+            rangeToDate = keepToDate;
+            toDateComboBox.setSelectedItem(DateUtils.formatDateForDisplay(keepToDate));
+        }
+        updatingDateFilters = false;
+        
+        edits.keySet().retainAll(dates);
+        tableModel.restoreEdits(edits);
+        updateAttendanceTable();
+    }
+
+    private Student findStudentById(String id) {
+        Integer row = rowsById.get(id);
+        return row == null ? null : students.get(row);
     }
 } 
\ No newline at end of file
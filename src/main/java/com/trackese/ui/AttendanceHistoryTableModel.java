@@ -0,0 +1,294 @@
+package com.trackese.ui;
+
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.models.Student;
+import com.trackese.utils.DateUtils;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Table model of the attendance history that holds only a window of the dates,
+ * e.g. one month. The student ID column and the optional range percentage column
+ * come first and are shown frozen; the date columns of the window follow.
+ * Cells of the window are read from the loaded students when the window is set
+ * and kept as status codes, one byte per cell, so the model's size follows the
+ * window rather than the whole archive. Edits are kept by date until saved, so
+ * they survive moving the window.
+ */
+public class AttendanceHistoryTableModel extends AbstractTableModel {
+    private List<Student> students = Collections.emptyList();
+    private List<String> windowDates = Collections.emptyList();
+    private String[] columnNames = new String[0];
+    private byte[][] cells = new byte[0][]; // Window date -> row -> status code
+    private String[] rangeValues; // Per row, or null without a range column
+    private final Map<String, Map<Integer, Boolean>> edits = new TreeMap<>(); // Date -> row -> present/absent
+
+    /**
+     * Show new students, dropping the window and all edits.
+     *
+     * @param students The loaded students, one row each
+     */
+    public void setStudents(List<Student> students) {
+        this.students = students;
+        edits.clear();
+        setWindow(Collections.<String>emptyList(), null);
+    }
+
+    /**
+     * Show a window of dates, reading their cells from the students.
+     *
+     * @param windowDates The dates to show as columns, in order
+     * @param rangeValues The range percentage of each row, or null for no range column
+     */
+    public void setWindow(List<String> windowDates, String[] rangeValues) {
+        this.windowDates = windowDates;
+        this.rangeValues = rangeValues;
+        cells = new byte[windowDates.size()][];
+        columnNames = new String[windowDates.size()];
+        for (int i = 0; i < windowDates.size(); i++) {
+            String date = windowDates.get(i);
+            columnNames[i] = DateUtils.formatDateForDisplay(date);
+            cells[i] = new byte[students.size()];
+            for (int row = 0; row < students.size(); row++) {
+                cells[i][row] = SectionSnapshot.toStatus(getShownAttendance(row, date));
+            }
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Drop the students, window and edits.
+     */
+    public void clear() {
+        setStudents(Collections.<Student>emptyList());
+    }
+
+    /**
+     * Get the number of columns before the date columns, which are shown frozen.
+     *
+     * @return 2 with a range column, otherwise 1
+     */
+    public int getFrozenColumnCount() {
+        return rangeValues == null ? 1 : 2;
+    }
+
+    public List<String> getWindowDates() {
+        return windowDates;
+    }
+
+    /**
+     * Get the column of a date.
+     *
+     * @param date The date
+     * @return The model column, or -1 if the date is outside the window
+     */
+    public int getDateColumn(String date) {
+        int index = windowDates.indexOf(date);
+        return index < 0 ? -1 : index + getFrozenColumnCount();
+    }
+
+    /**
+     * Get the date of a column.
+     *
+     * @param column The model column
+     * @return The date, or null for the ID and range columns
+     */
+    public String getDate(int column) {
+        int index = column - getFrozenColumnCount();
+        return index < 0 ? null : windowDates.get(index);
+    }
+
+    public String getStudentId(int row) {
+        return students.get(row).getId();
+    }
+
+    /**
+     * Update a row's range percentage.
+     *
+     * @param row   The row
+     * @param value The formatted percentage
+     */
+    public void setRangeValue(int row, String value) {
+        if (rangeValues != null) {
+            rangeValues[row] = value;
+            fireTableCellUpdated(row, 1);
+        }
+    }
+
+    /**
+     * Show a change of a loaded student's attendance. An edit of the cell is kept
+     * unless it now matches the saved value.
+     *
+     * @param row  The student's row
+     * @param date The date that changed
+     */
+    public void attendanceChanged(int row, String date) {
+        Map<Integer, Boolean> dateEdits = edits.get(date);
+        if (dateEdits != null && dateEdits.get(row) != null
+                && dateEdits.get(row).equals(students.get(row).getAttendanceForDate(date))) {
+            removeEdit(dateEdits, date, row);
+        }
+        updateCell(row, date);
+    }
+
+    /**
+     * Apply edits kept from before the students were reloaded, by student ID.
+     * Edits of students that are no longer loaded, or that now match the saved
+     * attendance, are dropped.
+     *
+     * @param changes Date to student ID to present/absent, as from {@link #getEdits()}
+     */
+    public void restoreEdits(Map<String, Map<String, Boolean>> changes) {
+        Map<String, Integer> rowsById = new HashMap<>();
+        for (int row = 0; row < students.size(); row++) {
+            rowsById.putIfAbsent(students.get(row).getId(), row);
+        }
+        for (Map.Entry<String, Map<String, Boolean>> dateChanges : changes.entrySet()) {
+            String date = dateChanges.getKey();
+            for (Map.Entry<String, Boolean> change : dateChanges.getValue().entrySet()) {
+                Integer row = rowsById.get(change.getKey());
+                if (row != null && change.getValue() != null
+                        && !change.getValue().equals(students.get(row).getAttendanceForDate(date))) {
+                    edits.computeIfAbsent(date, d -> new HashMap<>()).put(row, change.getValue());
+                    updateCell(row, date);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the edited cells that differ from the loaded attendance.
+     *
+     * @return Date to student ID to present/absent
+     */
+    public Map<String, Map<String, Boolean>> getEdits() {
+        Map<String, Map<String, Boolean>> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<Integer, Boolean>> dateEdits : edits.entrySet()) {
+            for (Map.Entry<Integer, Boolean> edit : dateEdits.getValue().entrySet()) {
+                changes.computeIfAbsent(dateEdits.getKey(), date -> new LinkedHashMap<>())
+                        .put(getStudentId(edit.getKey()), edit.getValue());
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Estimate the heap used by the window cells and edits.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateBytes() {
+        long bytes = Footprint.object(6 * Footprint.REFERENCE) + Footprint.referenceArray(cells.length)
+                + Footprint.referenceArray(columnNames.length);
+        for (String columnName : columnNames) {
+            bytes += Footprint.string(columnName);
+        }
+        for (byte[] column : cells) {
+            bytes += Footprint.byteArray(column.length);
+        }
+        if (rangeValues != null) {
+            bytes += Footprint.referenceArray(rangeValues.length);
+            for (String rangeValue : rangeValues) {
+                bytes += rangeValue == null ? 0 : Footprint.string(rangeValue);
+            }
+        }
+        bytes += Footprint.treeMap(edits.size());
+        for (Map<Integer, Boolean> dateEdits : edits.values()) {
+            bytes += Footprint.hashMap(dateEdits.size());
+            for (int row : dateEdits.keySet()) {
+                bytes += Footprint.boxedInteger(row);
+            }
+        }
+        return bytes;
+    }
+
+    private Boolean getShownAttendance(int row, String date) {
+        Map<Integer, Boolean> dateEdits = edits.get(date);
+        Boolean edited = dateEdits == null ? null : dateEdits.get(row);
+        return edited != null ? edited : students.get(row).getAttendanceForDate(date);
+    }
+
+    private void removeEdit(Map<Integer, Boolean> dateEdits, String date, int row) {
+        dateEdits.remove(row);
+        if (dateEdits.isEmpty()) {
+            edits.remove(date);
+        }
+    }
+
+    private void updateCell(int row, String date) {
+        int index = windowDates.indexOf(date);
+        if (index >= 0) {
+            cells[index][row] = SectionSnapshot.toStatus(getShownAttendance(row, date));
+            fireTableCellUpdated(row, index + getFrozenColumnCount());
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return students.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return getFrozenColumnCount() + windowDates.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == 0) {
+            return "Student ID";
+        }
+        int index = column - getFrozenColumnCount();
+        return index < 0 ? "Range %" : columnNames[index];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column < getFrozenColumnCount() ? String.class : Byte.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column >= getFrozenColumnCount(); // Only date columns are editable
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return students.get(row).getId();
+        }
+        int index = column - getFrozenColumnCount();
+        // Byte.valueOf returns cached instances, so reading a cell allocates nothing
+        return index < 0 ? rangeValues[row] : Byte.valueOf(cells[index][row]);
+    }
+
+    /**
+     * Edit a date cell. Choosing the saved value, or no mark, drops the edit, as
+     * marks cannot be removed from the history.
+     */
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        String date = getDate(column);
+        if (date == null) {
+            return;
+        }
+        byte status = AttendanceStatusRenderer.toStatus(value);
+        Boolean saved = students.get(row).getAttendanceForDate(date);
+        Map<Integer, Boolean> dateEdits = edits.get(date);
+        if (status == SectionSnapshot.UNMARKED || SectionSnapshot.toStatus(saved) == status) {
+            if (dateEdits != null) {
+                removeEdit(dateEdits, date, row);
+            }
+        } else {
+            edits.computeIfAbsent(date, d -> new HashMap<>()).put(row, status == SectionSnapshot.PRESENT);
+        }
+        updateCell(row, date);
+    }
+}
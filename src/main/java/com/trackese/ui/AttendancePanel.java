@@ -1,23 +1,40 @@
 package com.trackese.ui;
 
+import com.trackese.metrics.Metrics;
+import com.trackese.metrics.Tracing;
+import com.trackese.models.AttendanceChange;
 import com.trackese.models.BatchSection;
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionEvent;
+import com.trackese.models.SectionSnapshot;
 import com.trackese.models.Student;
+import com.trackese.utils.AtRiskRuleEngine;
 import com.trackese.utils.CSVHandler;
 import com.trackese.utils.DateUtils;
+import com.trackese.utils.SectionStore;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.List;
 
 /**
  * Panel for taking attendance with sliding UI and history display.
+ * Only the shown student's card and the next one exist. The next card is built
+ * and drawn offscreen while the current one is shown, so moving on is a slide
+ * between two ready images.
  */
 public class AttendancePanel extends JPanel {
+    private static final int SLIDE_MILLIS = 250;
+    private static final int MAX_POOLED_IMAGES = 3;
+
     private MainFrame mainFrame;
     private BatchSection batchSection;
     
@@ -27,12 +44,29 @@ public class AttendancePanel extends JPanel {
     private JComboBox<String> dateComboBox;
     private JPanel historyPanel;
     private JLabel noStudentsLabel;
+    private JLabel allMarkedLabel;
+    private JLabel atRiskLabel;
+    private SlideTransition slide;
+    private final CellRendererPane offscreenPane = new CellRendererPane();
+    
+    // Shown and pre-rendered student cards
+    private JPanel currentCard;
+    private JPanel nextCard;
+    private Student nextCardStudent;
+    private BufferedImage nextCardImage;
+    private final List<BufferedImage> imagePool = new ArrayList<>(); // Card-sized images for reuse
     
     // Data
-    private List<Student> students;
+    private List<Student> students; // Students without a mark when loaded, in roster order
+    private long loadedVersion; // Version of the snapshot the students were loaded from
+    private Map<String, Student> studentsById = new HashMap<>();
     private int currentStudentIndex = 0;
     private String currentDate;
     private List<String> lastThreeDays;
+    private AtRiskRuleEngine atRiskEngine;
+    private final AtRiskRuleEngine.FlagListener flagListener =
+            (section, studentId, atRisk) -> SwingUtilities.invokeLater(this::updateAtRiskLabel);
+    private boolean dirty = false; // Section changed while the panel was hidden
 
     /**
      * Constructor for the attendance panel.
@@ -42,6 +76,16 @@ public class AttendancePanel extends JPanel {
     public AttendancePanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
         initializeUI();
+        
+        mainFrame.getSectionEventBus().subscribe(this::sectionChanged);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                if (dirty) {
+                    loadStudents();
+                }
+            }
+        });
     }
 
     private void initializeUI() {
@@ -80,21 +124,15 @@ public class AttendancePanel extends JPanel {
         }
         
         // Set current date as selected
-        SimpleDateFormat displayFormat = new SimpleDateFormat("MMM dd, yyyy");
-        String currentDateFormatted = displayFormat.format(new Date());
-        dateComboBox.setSelectedItem(currentDateFormatted);
+        dateComboBox.setSelectedItem(DateUtils.formatDateForDisplay(DateUtils.getCurrentDateString()));
         
         dateComboBox.addActionListener(e -> {
             if (dateComboBox.getSelectedItem() != null) {
-                SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy");
-                try {
-                    Date selectedDate = sdf.parse(dateComboBox.getSelectedItem().toString());
-                    SimpleDateFormat storageFormat = new SimpleDateFormat("yyyy-MM-dd");
-                    currentDate = storageFormat.format(selectedDate);
+                String selectedDate = DateUtils.parseDisplayDate(dateComboBox.getSelectedItem().toString());
+                if (selectedDate != null) {
+                    currentDate = selectedDate;
                     updateLastThreeDays();
                     loadStudents();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
                 }
             }
         });
@@ -106,7 +144,22 @@ public class AttendancePanel extends JPanel {
         refreshButton.addActionListener(e -> loadStudents());
         datePanel.add(refreshButton);
         
+        // One-click actions for everyone not marked yet
+        JButton remainingAbsentButton = new JButton("Mark Remaining Absent");
+        remainingAbsentButton.addActionListener(e -> markRemaining(false));
+        datePanel.add(remainingAbsentButton);
+        
+        JButton remainingPresentButton = new JButton("Mark Remaining Present");
+        remainingPresentButton.addActionListener(e -> markRemaining(true));
+        datePanel.add(remainingPresentButton);
+        
         panel.add(datePanel, BorderLayout.CENTER);
+        
+        // Live count of at-risk students
+        atRiskLabel = new JLabel(" ");
+        atRiskLabel.setForeground(new Color(200, 0, 0));
+        atRiskLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        panel.add(atRiskLabel, BorderLayout.EAST);
 
         return panel;
     }
@@ -131,12 +184,16 @@ public class AttendancePanel extends JPanel {
         attendanceCardPanel.add(noStudentsLabel, "NO_STUDENTS");
         
         // Add a message for when all attendance is marked
-        JLabel allMarkedLabel = new JLabel("<html><div style='text-align: center;'>" +
+        allMarkedLabel = new JLabel("<html><div style='text-align: center;'>" +
                 "<h2>All Done!</h2>" +
                 "<p>Attendance for all students has been recorded.</p>" +
                 "</div></html>", SwingConstants.CENTER);
         attendanceCardPanel.add(allMarkedLabel, "ALL_MARKED");
         
+        // Shown while sliding from one card to the next
+        slide = new SlideTransition(SLIDE_MILLIS);
+        attendanceCardPanel.add(slide, "SLIDE");
+        
         // Add the attendance card panel to the center
         panel.add(attendanceCardPanel, BorderLayout.CENTER);
         
@@ -190,8 +247,14 @@ public class AttendancePanel extends JPanel {
         
         panel.add(buttonPanel, BorderLayout.CENTER);
         
-        // Update history panel for this student
-        updateHistoryPanel(student);
+        // Warn when the student is already at risk
+        if (atRiskEngine != null && atRiskEngine.isAtRisk(student.getId())) {
+            JLabel warningLabel = new JLabel("At risk: " + atRiskEngine.getReasons(student.getId()));
+            warningLabel.setForeground(new Color(200, 0, 0));
+            warningLabel.setFont(new Font("Arial", Font.BOLD, 14));
+            warningLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            panel.add(warningLabel, BorderLayout.SOUTH);
+        }
         
         return panel;
     }
@@ -240,7 +303,129 @@ public class AttendancePanel extends JPanel {
      */
     public void updateBatchSection(BatchSection batchSection) {
         this.batchSection = batchSection;
-        loadStudents();
+        
+        // Follow the at-risk flags of the new section
+        if (atRiskEngine != null) {
+            atRiskEngine.removeFlagListener(flagListener);
+        }
+        atRiskEngine = batchSection == null ? null : AtRiskRuleEngine.forSection(batchSection);
+        if (atRiskEngine != null) {
+            atRiskEngine.addFlagListener(flagListener);
+        }
+        updateAtRiskLabel();
+        
+        refreshWhenShown();
+    }
+
+    /**
+     * Reload the students now if the panel is shown, otherwise the next time it is.
+     */
+    private void refreshWhenShown() {
+        if (isVisible()) {
+            loadStudents();
+        } else {
+            releaseStudents();
+        }
+    }
+
+    /**
+     * Drop the cards and students of a hidden panel; they are rebuilt when it is shown.
+     */
+    private void releaseStudents() {
+        dirty = true;
+        removeStudentCards();
+        students = null;
+        studentsById = new HashMap<>();
+        currentStudentIndex = 0;
+    }
+
+    private void removeStudentCards() {
+        slide.cancel();
+        restoreAllMarkedCard();
+        if (currentCard != null) {
+            attendanceCardPanel.remove(currentCard);
+            currentCard = null;
+        }
+        discardNextCard();
+        imagePool.clear();
+    }
+
+    private void restoreAllMarkedCard() {
+        if (allMarkedLabel.getParent() != attendanceCardPanel) {
+            // Drawing it offscreen for a slide moved it out of the card area
+            attendanceCardPanel.add(allMarkedLabel, "ALL_MARKED");
+        }
+    }
+
+    private void discardNextCard() {
+        recycleImage(nextCardImage);
+        nextCard = null;
+        nextCardStudent = null;
+        nextCardImage = null;
+    }
+
+    /**
+     * Estimate the heap used by the loaded students and the card images, not
+     * counting the cards themselves.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateRetainedBytes() {
+        long imageBytes = imageBytes(nextCardImage) + imageBytes(slide.getFromImage()) + imageBytes(slide.getToImage());
+        for (BufferedImage image : imagePool) {
+            imageBytes += imageBytes(image);
+        }
+        return Student.estimateBytes(students) + Footprint.hashMap(studentsById.size()) + imageBytes;
+    }
+
+    private static long imageBytes(BufferedImage image) {
+        return image == null ? 0 : Footprint.intArray(image.getWidth() * image.getHeight());
+    }
+
+    public int getCardCount() {
+        return (currentCard == null ? 0 : 1) + (nextCard == null ? 0 : 1);
+    }
+
+    /**
+     * Apply marks saved elsewhere, e.g. in the history view or by a scanner, to the
+     * loaded students. A student marked for the current date is skipped when reached.
+     */
+    private void sectionChanged(List<SectionEvent> events) {
+        boolean currentChanged = false;
+        for (SectionEvent event : events) {
+            if (!event.getBatchSection().equals(batchSection)) {
+                continue;
+            }
+            if (!isVisible() || event.getType() == SectionEvent.Type.ROSTER_CHANGED) {
+                refreshWhenShown();
+                return;
+            }
+            if (event.getType() == SectionEvent.Type.CELL_MARKED) {
+                Student student = studentsById.get(event.getStudentId());
+                if (student != null) {
+                    if (event.getIsPresent() == null) {
+                        student.getAttendanceRecords().remove(event.getDate());
+                    } else {
+                        student.addAttendanceRecord(event.getDate(), event.getIsPresent());
+                    }
+                    currentChanged |= currentStudentIndex < students.size()
+                            && student == students.get(currentStudentIndex);
+                }
+            }
+        }
+        
+        if (currentChanged) {
+            if (students.get(currentStudentIndex).getAttendanceForDate(currentDate) != null) {
+                showNextUnmarkedStudent();
+            } else {
+                updateHistoryPanel(students.get(currentStudentIndex));
+            }
+        }
+    }
+
+    private void updateAtRiskLabel() {
+        int flagged = atRiskEngine == null ? 0 : atRiskEngine.getFlaggedStudents().size();
+        atRiskLabel.setText(flagged == 0 ? " " : "At-risk students: " + flagged);
     }
 
     private void updateLastThreeDays() {
@@ -251,54 +436,54 @@ public class AttendancePanel extends JPanel {
      * Load students from the CSV file.
      */
     private void loadStudents() {
+        dirty = false;
         if (batchSection == null) {
             return;
         }
 
-        // Remove existing student panels
-        for (Component comp : attendanceCardPanel.getComponents()) {
-            if (!(comp == noStudentsLabel)) {
-                attendanceCardPanel.remove(comp);
-            }
-        }
+        long start = System.nanoTime();
+        try {
+            // Remove existing student panels
+            removeStudentCards();
         
-        // Get student data
-        Map<String, Object> data = CSVHandler.loadStudentsFromCSV(batchSection);
-        students = (List<Student>) data.get("students");
+            // Get student data
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+            List<Student> allStudents = snapshot.toStudents();
+            loadedVersion = snapshot.getVersion();
         
-        if (students.isEmpty()) {
-            // Show no students message
-            cardLayout.show(attendanceCardPanel, "NO_STUDENTS");
-            return;
-        }
+            // Get students who haven't had attendance marked for current date
+            List<Student> unmarkedStudents = new ArrayList<>();
+            for (Student student : allStudents) {
+                if (student.getAttendanceForDate(currentDate) == null) {
+                    unmarkedStudents.add(student);
+                }
+            }
         
-        // Get students who haven't had attendance marked for current date
-        List<Student> unmarkedStudents = new ArrayList<>();
-        for (Student student : students) {
-            if (student.getAttendanceForDate(currentDate) == null) {
-                unmarkedStudents.add(student);
+            // Set current students list to unmarked students
+            students = unmarkedStudents;
+            studentsById = new HashMap<>();
+            for (Student student : students) {
+                studentsById.put(student.getId(), student);
             }
-        }
+            currentStudentIndex = 0;
         
-        if (unmarkedStudents.isEmpty()) {
-            // All students have attendance marked
-            cardLayout.show(attendanceCardPanel, "ALL_MARKED");
-            return;
-        }
+            if (allStudents.isEmpty()) {
+                // Show no students message
+                cardLayout.show(attendanceCardPanel, "NO_STUDENTS");
+                return;
+            }
         
-        // Set current students list to unmarked students
-        students = unmarkedStudents;
-        currentStudentIndex = 0;
+            if (unmarkedStudents.isEmpty()) {
+                // All students have attendance marked
+                cardLayout.show(attendanceCardPanel, "ALL_MARKED");
+                return;
+            }
         
-        // Create attendance panels for each student
-        for (int i = 0; i < students.size(); i++) {
-            Student student = students.get(i);
-            JPanel studentPanel = createStudentAttendancePanel(student);
-            attendanceCardPanel.add(studentPanel, "STUDENT_" + i);
+            // Show the first student; the next card is built once it is shown
+            showCurrentCard();
+        } finally {
+            Metrics.record("ui.attendance.load", batchSection, start, 0, students == null ? 0 : students.size());
         }
-        
-        // Show the first student
-        cardLayout.show(attendanceCardPanel, "STUDENT_" + currentStudentIndex);
     }
 
     /**
@@ -308,17 +493,282 @@ public class AttendancePanel extends JPanel {
      * @param isPresent Whether the student is present
      */
     private void markAttendance(Student student, boolean isPresent) {
-        // Update attendance in the CSV file
-        CSVHandler.updateAttendance(batchSection, currentDate, student.getId(), isPresent);
+        // Ignore a second click on a card that is already sliding out
+        if (students == null || currentStudentIndex >= students.size() || students.get(currentStudentIndex) != student) {
+            return;
+        }
+        
+        // Update attendance in the CSV file, staying on the student if it fails
+        try {
+            CSVHandler.updateAttendance(batchSection, currentDate, student.getId(), isPresent);
+        } catch (UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Could not save attendance: " + e.getCause().getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        student.addAttendanceRecord(currentDate, isPresent);
         
         // Move to the next student
-        currentStudentIndex++;
+        showNextUnmarkedStudent();
+    }
+
+    /**
+     * Show the next student without a mark for the current date, sliding to it.
+     * The move takes effect at once; only the picture is animated, so the next
+     * click applies to the incoming student even while it slides in.
+     */
+    private void showNextUnmarkedStudent() {
+        BufferedImage outgoing = captureShownCard();
+        do {
+            currentStudentIndex++;
+        } while (currentStudentIndex < students.size()
+                && students.get(currentStudentIndex).getAttendanceForDate(currentDate) != null);
+        
+        // Use the pre-rendered card if it is still the right one
+        Component incoming = allMarkedLabel;
+        BufferedImage incomingImage = null;
         if (currentStudentIndex < students.size()) {
-            cardLayout.show(attendanceCardPanel, "STUDENT_" + currentStudentIndex);
-            updateHistoryPanel(students.get(currentStudentIndex));
-        } else {
-            // All students have been marked
+            Student student = students.get(currentStudentIndex);
+            if (nextCard != null && nextCardStudent == student) {
+                incoming = nextCard;
+                incomingImage = nextCardImage;
+                nextCard = null;
+                nextCardStudent = null;
+                nextCardImage = null;
+            } else {
+                discardNextCard();
+                incoming = createStudentAttendancePanel(student);
+            }
+            updateHistoryPanel(student);
+        }
+        if (incomingImage == null) {
+            incomingImage = renderOffscreen(incoming);
+        }
+        
+        if (outgoing == null || incomingImage == null) {
+            // Not shown yet, nothing to animate
+            recycleImage(outgoing);
+            recycleImage(incomingImage);
+            finishSlide(incoming);
+            return;
+        }
+        
+        // A replaced slide continues from the image it was heading to; its other image is free
+        BufferedImage replaced = slide.isRunning() ? slide.getFromImage() : null;
+        Component target = incoming;
+        slide.start(outgoing, incomingImage, incoming, () -> {
+            BufferedImage from = slide.getFromImage();
+            BufferedImage to = slide.getToImage();
+            slide.cancel();
+            recycleImage(from);
+            recycleImage(to);
+            finishSlide(target);
+        });
+        recycleImage(replaced);
+        cardLayout.show(attendanceCardPanel, "SLIDE");
+        SwingUtilities.invokeLater(this::prepareNextCard);
+    }
+
+    /**
+     * Put the live component in place once the slide to it has ended.
+     */
+    private void finishSlide(Component incoming) {
+        if (incoming == allMarkedLabel) {
+            restoreAllMarkedCard();
+            if (currentCard != null) {
+                attendanceCardPanel.remove(currentCard);
+                currentCard = null;
+            }
             cardLayout.show(attendanceCardPanel, "ALL_MARKED");
+        } else if (currentStudentIndex < students.size()) {
+            showCurrentCard(incoming instanceof JPanel ? (JPanel) incoming : null);
+        }
+    }
+
+    private void showCurrentCard() {
+        showCurrentCard(null);
+    }
+
+    /**
+     * Show the card of the current student, using a card built already if given.
+     */
+    private void showCurrentCard(JPanel card) {
+        Student student = students.get(currentStudentIndex);
+        if (card == null) {
+            card = createStudentAttendancePanel(student);
+        }
+        if (currentCard != null && currentCard != card) {
+            attendanceCardPanel.remove(currentCard);
+        }
+        currentCard = card;
+        attendanceCardPanel.add(card, "STUDENT");
+        cardLayout.show(attendanceCardPanel, "STUDENT");
+        updateHistoryPanel(student);
+        SwingUtilities.invokeLater(this::prepareNextCard);
+    }
+
+    /**
+     * Build and draw the card of the student after the current one, while the
+     * current one is shown.
+     */
+    private void prepareNextCard() {
+        if (students == null || !isShowing()) {
+            return;
+        }
+        int index = currentStudentIndex + 1;
+        while (index < students.size() && students.get(index).getAttendanceForDate(currentDate) != null) {
+            index++;
+        }
+        if (index >= students.size() || (nextCard != null && nextCardStudent == students.get(index))) {
+            return;
+        }
+        
+        long start = System.nanoTime();
+        Tracing.Span span = Tracing.beginUIRebuild("ui.attendance.cards", batchSection);
+        discardNextCard();
+        nextCardStudent = students.get(index);
+        nextCard = createStudentAttendancePanel(nextCardStudent);
+        nextCardImage = renderOffscreen(nextCard);
+        span.finish(0, 1);
+        Metrics.record("ui.attendance.prerender", batchSection, start, 0, 1);
+    }
+
+    /**
+     * Get a picture of what the card area shows now.
+     *
+     * @return The image, or null if nothing is shown
+     */
+    private BufferedImage captureShownCard() {
+        if (slide.isRunning()) {
+            // Continue from the card the running slide is heading to
+            return slide.getToImage();
+        }
+        if (currentCard == null || !currentCard.isShowing()) {
+            return null;
         }
+        BufferedImage image = takeImage();
+        if (image != null) {
+            Graphics2D g = image.createGraphics();
+            try {
+                currentCard.paint(g);
+            } finally {
+                g.dispose();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Lay out a component that is not shown at the size of the card area and draw it.
+     *
+     * @return The image, or null if the card area has no size yet
+     */
+    private BufferedImage renderOffscreen(Component component) {
+        BufferedImage image = takeImage();
+        if (image != null) {
+            // Lay out by hand; validate() skips components that were never displayed
+            component.setBounds(0, 0, image.getWidth(), image.getHeight());
+            layoutTree(component);
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setColor(attendanceCardPanel.getBackground());
+                g.fillRect(0, 0, image.getWidth(), image.getHeight());
+                offscreenPane.paintComponent(g, component, attendanceCardPanel,
+                        0, 0, image.getWidth(), image.getHeight(), false);
+            } finally {
+                g.dispose();
+            }
+            // Keep the laid-out size, so clicks during the slide can find its buttons
+            component.setBounds(0, 0, image.getWidth(), image.getHeight());
+        }
+        return image;
+    }
+
+    private static void layoutTree(Component component) {
+        if (component instanceof Container) {
+            Container container = (Container) component;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layoutTree(child);
+            }
+        }
+    }
+
+    /**
+     * Get an image the size of the card area, reusing a pooled one if it fits.
+     */
+    private BufferedImage takeImage() {
+        int width = attendanceCardPanel.getWidth();
+        int height = attendanceCardPanel.getHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        while (!imagePool.isEmpty()) {
+            BufferedImage image = imagePool.remove(imagePool.size() - 1);
+            if (image.getWidth() == width && image.getHeight() == height) {
+                return image;
+            }
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private void recycleImage(BufferedImage image) {
+        if (image != null && imagePool.size() < MAX_POOLED_IMAGES && !imagePool.contains(image)
+                && image != nextCardImage && image != slide.getFromImage() && image != slide.getToImage()) {
+            imagePool.add(image);
+        }
+    }
+
+    /**
+     * Mark every student not marked yet for the current date with one write.
+     * Whether a student is still unmarked is checked again when saving, under the
+     * section's lock, so marks saved elsewhere since the list was loaded are kept.
+     *
+     * @param isPresent Whether the remaining students are present
+     */
+    private void markRemaining(boolean isPresent) {
+        if (batchSection == null || students == null || currentStudentIndex >= students.size()) {
+            JOptionPane.showMessageDialog(this,
+                    "All students have been marked for this date.",
+                    "Nothing to Mark", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        // Skip students already marked elsewhere since the list was loaded
+        List<Student> remaining = new ArrayList<>();
+        for (Student student : students.subList(currentStudentIndex, students.size())) {
+            if (student.getAttendanceForDate(currentDate) == null) {
+                remaining.add(student);
+            }
+        }
+        int result = JOptionPane.showConfirmDialog(this,
+                "Mark " + remaining.size() + " remaining students " + (isPresent ? "present" : "absent")
+                        + " for " + DateUtils.formatDateForDisplay(currentDate) + "?",
+                "Confirm", JOptionPane.YES_NO_OPTION);
+        if (result != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        // Saved as edits of unmarked cells, so students marked elsewhere in the meantime are left alone
+        List<AttendanceChange> edits = new ArrayList<>();
+        for (Student student : remaining) {
+            edits.add(new AttendanceChange(student.getId(), currentDate, isPresent, null));
+        }
+
+        try {
+            List<AttendanceChange> conflicts = CSVHandler.saveEdits(batchSection, loadedVersion, edits);
+            if (!conflicts.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                        conflicts.size() + " of these students were marked by someone else in the meantime "
+                                + "and were left as they are.",
+                        "Already Marked", JOptionPane.INFORMATION_MESSAGE);
+            }
+        } catch (UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Could not save attendance: " + e.getCause().getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        loadStudents();
     }
-} 
\ No newline at end of file
+}
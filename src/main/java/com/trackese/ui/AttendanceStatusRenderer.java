@@ -0,0 +1,102 @@
+package com.trackese.ui;
+
+import com.trackese.models.SectionSnapshot;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+
+/**
+ * Renderer for attendance cells holding a status code ({@link SectionSnapshot#UNMARKED},
+ * {@link SectionSnapshot#PRESENT} or {@link SectionSnapshot#ABSENT}) as a Byte.
+ * Every color and label is allocated once and looked up by the code, so painting
+ * a cell creates no objects. In heatmap mode cells are drawn as plain color fills,
+ * strong enough to read at one pixel per date.
+ */
+public class AttendanceStatusRenderer extends DefaultTableCellRenderer {
+    /** Cell text by status code, also shown by the editor. */
+    static final String[] LABELS = {"", "Present", "Absent"};
+
+    private static final Color[] BACKGROUNDS = {
+            null, new Color(220, 255, 220), new Color(255, 220, 220)};
+    private static final Color[] SELECTED_BACKGROUNDS = {
+            null, new Color(100, 200, 100), new Color(200, 100, 100)};
+    private static final Color[] FOREGROUNDS = {
+            null, new Color(0, 100, 0), new Color(100, 0, 0)};
+    private static final Color[] HEATMAP_COLORS = {
+            new Color(235, 235, 235), new Color(60, 170, 60), new Color(210, 60, 60)};
+    private static final Color[] HEATMAP_SELECTED_COLORS = {
+            new Color(180, 180, 200), new Color(20, 110, 20), new Color(150, 20, 20)};
+
+    private boolean heatmap = false;
+    private Border focusBorder;
+
+    public AttendanceStatusRenderer() {
+        setHorizontalAlignment(CENTER);
+    }
+
+    /**
+     * Draw cells as color fills without text.
+     *
+     * @param heatmap Whether to draw the compact heatmap
+     */
+    public void setHeatmap(boolean heatmap) {
+        this.heatmap = heatmap;
+    }
+
+    public boolean isHeatmap() {
+        return heatmap;
+    }
+
+    /**
+     * Get the status code of a cell value.
+     *
+     * @param value A Byte status code, or null
+     * @return The status code, {@link SectionSnapshot#UNMARKED} for anything else
+     */
+    static byte toStatus(Object value) {
+        if (value instanceof Byte) {
+            byte status = (Byte) value;
+            if (status >= 0 && status < LABELS.length) {
+                return status;
+            }
+        }
+        return SectionSnapshot.UNMARKED;
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        focusBorder = UIManager.getBorder("Table.focusCellHighlightBorder");
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        // Replaces the superclass lookups, which run for every painted cell
+        byte status = toStatus(value);
+        if (heatmap) {
+            setText(null);
+            setBackground(isSelected ? HEATMAP_SELECTED_COLORS[status] : HEATMAP_COLORS[status]);
+            setBorder(null);
+            return this;
+        }
+
+        setText(LABELS[status]);
+        setFont(table.getFont());
+        if (status == SectionSnapshot.UNMARKED) {
+            setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+            setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
+        } else {
+            setBackground(isSelected ? SELECTED_BACKGROUNDS[status] : BACKGROUNDS[status]);
+            setForeground(FOREGROUNDS[status]);
+        }
+        Border border = hasFocus && focusBorder != null ? focusBorder : noFocusBorder;
+        if (getBorder() != border) {
+            // Changing it fires a property change event
+            setBorder(border);
+        }
+        return this;
+    }
+}
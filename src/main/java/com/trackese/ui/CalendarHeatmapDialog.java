@@ -0,0 +1,409 @@
+package com.trackese.ui;
+
+import com.trackese.metrics.Metrics;
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionEvent;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.utils.AttendanceIndex;
+import com.trackese.utils.DateUtils;
+import com.trackese.utils.SectionEventListener;
+import com.trackese.utils.SectionStore;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Calendar of a section's daily attendance rate as a heatmap, with a strip of
+ * one student's marks below it. Both are drawn one month at a time into cached
+ * offscreen images. The counts come from the section's attendance index, and a
+ * saved mark only redraws the month it falls in.
+ */
+public class CalendarHeatmapDialog extends JDialog {
+    private static final int CELL_SIZE = 18;
+    private static final int STRIP_CELL_WIDTH = 6;
+    private static final int STRIP_HEIGHT = 24;
+    private static final int TITLE_HEIGHT = 18;
+    private static final int TILE_GAP = 10;
+    private static final int CALENDAR_COLUMNS = 4; // Months per row
+    private static final String NO_STUDENT = "(none)";
+
+    // Attendance rate in steps of 10%, from red through yellow to green
+    private static final Color[] RATE_COLORS = new Color[11];
+    private static final Color NO_CLASS_COLOR = new Color(240, 240, 240);
+    private static final Color NOT_MARKED_COLOR = new Color(200, 200, 200);
+    private static final Color PRESENT_COLOR = new Color(60, 170, 60);
+    private static final Color ABSENT_COLOR = new Color(210, 60, 60);
+
+    static {
+        for (int i = 0; i < RATE_COLORS.length; i++) {
+            float rate = i / 10f;
+            RATE_COLORS[i] = rate < 0.5f
+                    ? new Color(215, (int) (60 + 330 * rate), 60)
+                    : new Color((int) (215 - 310 * (rate - 0.5f)), 225 - (int) (110 * (rate - 0.5f)), 60);
+        }
+    }
+
+    private final BatchSection batchSection;
+    private final SectionEventListener sectionListener = this::sectionChanged;
+    private AttendanceIndex attendanceIndex;
+    private YearMonth firstMonth;
+    private int monthCount;
+
+    private MonthTiles calendar;
+    private MonthTiles strip;
+    private JComboBox<String> studentComboBox;
+    private String studentId;
+
+    /**
+     * Constructor for the calendar heatmap dialog.
+     *
+     * @param mainFrame    The main application frame, whose section changes are followed
+     * @param batchSection The section to show
+     */
+    public CalendarHeatmapDialog(MainFrame mainFrame, BatchSection batchSection) {
+        super(mainFrame, "Attendance Calendar - " + batchSection.getFullName(), ModalityType.MODELESS);
+        this.batchSection = batchSection;
+        initializeUI();
+        loadData();
+        setSize(720, 600);
+        setLocationRelativeTo(mainFrame);
+
+        mainFrame.getSectionEventBus().subscribe(sectionListener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                mainFrame.getSectionEventBus().unsubscribe(sectionListener);
+            }
+        });
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initializeUI() {
+        setLayout(new BorderLayout(10, 10));
+
+        calendar = new MonthTiles() {
+            @Override
+            Dimension getTileSize() {
+                return new Dimension(7 * CELL_SIZE, TITLE_HEIGHT + 6 * CELL_SIZE);
+            }
+
+            @Override
+            int getColumns() {
+                return CALENDAR_COLUMNS;
+            }
+
+            @Override
+            void renderMonth(Graphics2D g, YearMonth month) {
+                int offset = month.atDay(1).getDayOfWeek().getValue() - 1; // Weeks start on Monday
+                for (int day = 1; day <= month.lengthOfMonth(); day++) {
+                    String date = month.atDay(day).toString();
+                    int cell = offset + day - 1;
+                    g.setColor(getRateColor(date));
+                    g.fillRect((cell % 7) * CELL_SIZE, TITLE_HEIGHT + (cell / 7) * CELL_SIZE,
+                            CELL_SIZE - 1, CELL_SIZE - 1);
+                }
+            }
+
+            @Override
+            String getDateAt(YearMonth month, int x, int y) {
+                int cell = (y - TITLE_HEIGHT) / CELL_SIZE * 7 + x / CELL_SIZE
+                        - (month.atDay(1).getDayOfWeek().getValue() - 1);
+                return y < TITLE_HEIGHT || cell < 0 || cell >= month.lengthOfMonth()
+                        ? null : month.atDay(cell + 1).toString();
+            }
+        };
+        JScrollPane calendarScroll = new JScrollPane(calendar);
+        calendarScroll.setBorder(BorderFactory.createTitledBorder("Daily Attendance Rate"));
+
+        strip = new MonthTiles() {
+            @Override
+            Dimension getTileSize() {
+                return new Dimension(31 * STRIP_CELL_WIDTH, TITLE_HEIGHT + STRIP_HEIGHT);
+            }
+
+            @Override
+            int getColumns() {
+                return Math.max(1, monthCount);
+            }
+
+            @Override
+            void renderMonth(Graphics2D g, YearMonth month) {
+                for (int day = 1; day <= month.lengthOfMonth(); day++) {
+                    g.setColor(getStudentColor(month.atDay(day).toString()));
+                    g.fillRect((day - 1) * STRIP_CELL_WIDTH, TITLE_HEIGHT, STRIP_CELL_WIDTH - 1, STRIP_HEIGHT);
+                }
+            }
+
+            @Override
+            String getDateAt(YearMonth month, int x, int y) {
+                int day = x / STRIP_CELL_WIDTH + 1;
+                return y < TITLE_HEIGHT || day > month.lengthOfMonth() ? null : month.atDay(day).toString();
+            }
+        };
+        JScrollPane stripScroll = new JScrollPane(strip, JScrollPane.VERTICAL_SCROLLBAR_NEVER,
+                JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        stripScroll.setPreferredSize(new Dimension(0, TITLE_HEIGHT + STRIP_HEIGHT + 60));
+
+        studentComboBox = new JComboBox<>();
+        studentComboBox.addActionListener(e -> {
+            Object selected = studentComboBox.getSelectedItem();
+            studentId = selected == null || NO_STUDENT.equals(selected) ? null : selected.toString();
+            strip.invalidateAll();
+        });
+        JPanel studentPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        studentPanel.add(new JLabel("Student:"));
+        studentPanel.add(studentComboBox);
+
+        JPanel stripPanel = new JPanel(new BorderLayout());
+        stripPanel.setBorder(BorderFactory.createTitledBorder("Student Attendance"));
+        stripPanel.add(studentPanel, BorderLayout.NORTH);
+        stripPanel.add(stripScroll, BorderLayout.CENTER);
+
+        JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        contentPanel.add(calendarScroll, BorderLayout.CENTER);
+        contentPanel.add(stripPanel, BorderLayout.SOUTH);
+        add(contentPanel, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        buttonPanel.add(closeButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Load the section's index and lay out its months.
+     */
+    private void loadData() {
+        SectionSnapshot snapshot = SectionStore.get(batchSection);
+        attendanceIndex = AttendanceIndex.build(snapshot);
+
+        Object selected = studentComboBox.getSelectedItem();
+        studentComboBox.removeAllItems();
+        studentComboBox.addItem(NO_STUDENT);
+        for (String id : attendanceIndex.getStudentIds()) {
+            studentComboBox.addItem(id);
+        }
+        if (selected != null) {
+            studentComboBox.setSelectedItem(selected);
+        }
+
+        updateMonths();
+    }
+
+    /**
+     * Work out the months from the first to the last date, and redraw everything.
+     */
+    private void updateMonths() {
+        List<String> dates = attendanceIndex.getDates();
+        if (dates.isEmpty()) {
+            firstMonth = YearMonth.now();
+            monthCount = 1;
+        } else {
+            firstMonth = YearMonth.from(LocalDate.parse(dates.get(0)));
+            monthCount = (int) ChronoUnit.MONTHS.between(firstMonth,
+                    YearMonth.from(LocalDate.parse(dates.get(dates.size() - 1)))) + 1;
+        }
+        calendar.invalidateAll();
+        strip.invalidateAll();
+    }
+
+    /**
+     * Apply saved marks of the section to the index and redraw their months.
+     */
+    private void sectionChanged(List<SectionEvent> events) {
+        for (SectionEvent event : events) {
+            if (!event.getBatchSection().equals(batchSection)) {
+                continue;
+            }
+            if (event.getType() == SectionEvent.Type.ROSTER_CHANGED) {
+                loadData();
+                return;
+            }
+            if (event.getType() != SectionEvent.Type.CELL_MARKED) {
+                continue;
+            }
+
+            boolean newDate = !attendanceIndex.getDates().contains(event.getDate());
+            attendanceIndex.mark(event.getStudentId(), event.getDate(), event.getIsPresent());
+            YearMonth month = YearMonth.from(LocalDate.parse(event.getDate()));
+            if (newDate && (month.isBefore(firstMonth) || monthIndex(month) >= monthCount)) {
+                updateMonths();
+                continue;
+            }
+            calendar.invalidateMonth(month);
+            if (event.getStudentId().equals(studentId)) {
+                strip.invalidateMonth(month);
+            }
+        }
+    }
+
+    private int monthIndex(YearMonth month) {
+        return (int) ChronoUnit.MONTHS.between(firstMonth, month);
+    }
+
+    private Color getRateColor(String date) {
+        int marked = attendanceIndex.countSectionMarked(date, date);
+        if (marked == 0) {
+            return NO_CLASS_COLOR;
+        }
+        int present = attendanceIndex.countSectionPresent(date, date);
+        return RATE_COLORS[present * 10 / marked];
+    }
+
+    private Color getStudentColor(String date) {
+        if (studentId == null || attendanceIndex.countSectionMarked(date, date) == 0) {
+            return NO_CLASS_COLOR;
+        }
+        byte status = attendanceIndex.getStatus(studentId, date);
+        return status == SectionSnapshot.PRESENT ? PRESENT_COLOR
+                : status == SectionSnapshot.ABSENT ? ABSENT_COLOR : NOT_MARKED_COLOR;
+    }
+
+    private String describeDate(String date) {
+        int marked = attendanceIndex.countSectionMarked(date, date);
+        String text = DateUtils.formatDateForDisplay(date) + ": ";
+        if (marked == 0) {
+            return text + "no marks";
+        }
+        int present = attendanceIndex.countSectionPresent(date, date);
+        text += present + " of " + marked + " present (" + (present * 100 / marked) + "%)";
+        if (studentId != null) {
+            byte status = attendanceIndex.getStatus(studentId, date);
+            text += ", " + studentId + " " + (status == SectionSnapshot.PRESENT ? "present"
+                    : status == SectionSnapshot.ABSENT ? "absent" : "not marked");
+        }
+        return text;
+    }
+
+    /**
+     * Months laid out in a grid, each drawn once into an offscreen image that is
+     * kept until its month changes. Painting copies the images that intersect the
+     * clip and redraws only the dirty ones.
+     */
+    private abstract class MonthTiles extends JComponent {
+        private BufferedImage[] tiles = new BufferedImage[0];
+        private final BitSet dirty = new BitSet();
+
+        MonthTiles() {
+            setToolTipText(""); // Registers with the tooltip manager; the text comes from getToolTipText(MouseEvent)
+        }
+
+        abstract Dimension getTileSize();
+
+        abstract int getColumns();
+
+        /**
+         * Draw a month into its tile, below the title.
+         */
+        abstract void renderMonth(Graphics2D g, YearMonth month);
+
+        /**
+         * Get the date at a point of a tile.
+         *
+         * @return The date, or null outside the days
+         */
+        abstract String getDateAt(YearMonth month, int x, int y);
+
+        /**
+         * Drop all tiles, e.g. after the months changed.
+         */
+        void invalidateAll() {
+            tiles = new BufferedImage[monthCount];
+            dirty.set(0, monthCount);
+            revalidate();
+            repaint();
+        }
+
+        /**
+         * Mark one month's tile for redrawing and repaint only its area.
+         */
+        void invalidateMonth(YearMonth month) {
+            int index = monthIndex(month);
+            if (index >= 0 && index < tiles.length) {
+                dirty.set(index);
+                repaint(getTileBounds(index));
+            }
+        }
+
+        private Rectangle getTileBounds(int index) {
+            Dimension size = getTileSize();
+            int columns = getColumns();
+            return new Rectangle(TILE_GAP + (index % columns) * (size.width + TILE_GAP),
+                    TILE_GAP + (index / columns) * (size.height + TILE_GAP), size.width, size.height);
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            Dimension size = getTileSize();
+            int columns = Math.min(getColumns(), Math.max(1, monthCount));
+            int rows = (monthCount + getColumns() - 1) / getColumns();
+            return new Dimension(TILE_GAP + columns * (size.width + TILE_GAP),
+                    TILE_GAP + Math.max(1, rows) * (size.height + TILE_GAP));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Rectangle clip = g.getClipBounds();
+            for (int i = 0; i < tiles.length; i++) {
+                Rectangle bounds = getTileBounds(i);
+                if (clip == null || clip.intersects(bounds)) {
+                    g.drawImage(getTile(i), bounds.x, bounds.y, null);
+                }
+            }
+        }
+
+        private BufferedImage getTile(int index) {
+            if (tiles[index] != null && !dirty.get(index)) {
+                return tiles[index];
+            }
+
+            long start = System.nanoTime();
+            Dimension size = getTileSize();
+            if (tiles[index] == null) {
+                tiles[index] = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+            }
+            YearMonth month = firstMonth.plusMonths(index);
+            Graphics2D g = tiles[index].createGraphics();
+            try {
+                // Clear to transparent, then draw the title and days
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, size.width, size.height);
+                g.setComposite(AlphaComposite.SrcOver);
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setColor(getForeground());
+                g.setFont(getFont());
+                g.drawString(DateUtils.formatMonthForDisplay(month.atDay(1).toString()), 0, TITLE_HEIGHT - 5);
+                renderMonth(g, month);
+            } finally {
+                g.dispose();
+            }
+            dirty.clear(index);
+            Metrics.record("ui.calendar.tile", batchSection, start, 0, 1);
+            return tiles[index];
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent event) {
+            for (int i = 0; i < tiles.length; i++) {
+                Rectangle bounds = getTileBounds(i);
+                if (bounds.contains(event.getPoint())) {
+                    String date = getDateAt(firstMonth.plusMonths(i),
+                            event.getX() - bounds.x, event.getY() - bounds.y);
+                    return date == null ? null : describeDate(date);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.trackese.ui;
+
+import com.trackese.metrics.Metrics;
+import com.trackese.metrics.Tracing;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches how quickly the event dispatch thread answers.
+ * A daemon thread posts a probe task every probe interval and times how long it
+ * waits to run; the waits are kept as the "ui.edt.latency" metric. While the
+ * thread is blocked longer than the stall threshold its stack is sampled, and the
+ * stall is reported on standard error and as a Flight Recorder event with the
+ * samples, so a freeze can be traced to the code that caused it.
+ * <p>
+ * The threshold and interval can be set with the system properties
+ * trackese.edt.stallMillis (default 200) and trackese.edt.probeMillis (default 100).
+ */
+public class EDTWatchdog {
+    private static final int MAX_SAMPLES = 100;
+    private static final int MAX_FRAMES = 40;
+
+    private static EDTWatchdog instance;
+
+    private final long stallMillis;
+    private final long probeMillis;
+    private volatile Thread dispatchThread;
+
+    private EDTWatchdog(long stallMillis, long probeMillis) {
+        this.stallMillis = stallMillis;
+        this.probeMillis = probeMillis;
+    }
+
+    /**
+     * Start the watchdog with the thresholds from the system properties, unless it is running.
+     */
+    public static synchronized void start() {
+        if (instance != null) {
+            return;
+        }
+        instance = new EDTWatchdog(Long.getLong("trackese.edt.stallMillis", 200),
+                Long.getLong("trackese.edt.probeMillis", 100));
+        Thread thread = new Thread(instance::run, "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                probe();
+                Thread.sleep(probeMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Post one probe and wait for it, sampling the dispatch thread while it is stalled.
+     */
+    private void probe() throws InterruptedException {
+        CountDownLatch answered = new CountDownLatch(1);
+        long[] answeredAt = new long[1];
+        Tracing.StallSpan span = Tracing.beginStall();
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            answeredAt[0] = System.nanoTime();
+            dispatchThread = Thread.currentThread();
+            answered.countDown();
+        });
+
+        List<StackTraceElement[]> samples = null;
+        if (!answered.await(stallMillis, TimeUnit.MILLISECONDS)) {
+            // Stalled: sample until the probe runs
+            samples = new ArrayList<>();
+            do {
+                Thread thread = dispatchThread;
+                if (thread != null && samples.size() < MAX_SAMPLES) {
+                    samples.add(thread.getStackTrace());
+                }
+            } while (!answered.await(probeMillis, TimeUnit.MILLISECONDS));
+        }
+
+        // The latch orders the write of answeredAt before this read
+        long waitNanos = answeredAt[0] - posted;
+        Metrics.operation("ui.edt.latency", null).record(waitNanos, 0, 0);
+        if (samples == null) {
+            span.finish(false, 0, null);
+            return;
+        }
+
+        String report = formatSamples(samples);
+        span.finish(true, samples.size(), report);
+        Metrics.operation("ui.edt.stall", null).record(waitNanos, 0, samples.size());
+        System.err.printf("Event dispatch thread blocked for %d ms (%d stack samples):%n%s",
+                TimeUnit.NANOSECONDS.toMillis(waitNanos), samples.size(), report);
+    }
+
+    /**
+     * Group identical stack samples and format them, most frequent first.
+     */
+    private static String formatSamples(List<StackTraceElement[]> samples) {
+        Map<List<StackTraceElement>, Integer> counts = new LinkedHashMap<>();
+        for (StackTraceElement[] sample : samples) {
+            List<StackTraceElement> frames = Arrays.asList(sample);
+            if (frames.size() > MAX_FRAMES) {
+                frames = frames.subList(0, MAX_FRAMES);
+            }
+            counts.merge(frames, 1, Integer::sum);
+        }
+
+        List<Map.Entry<List<StackTraceElement>, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> b.getValue() - a.getValue());
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<List<StackTraceElement>, Integer> entry : entries) {
+            report.append(entry.getValue()).append(" of ").append(samples.size()).append(" samples:")
+                    .append(System.lineSeparator());
+            for (StackTraceElement frame : entry.getKey()) {
+                report.append("\tat ").append(frame).append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+}
@@ -2,64 +2,16 @@ package com.trackese.ui;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.awt.image.BufferedImage;
 
 /**
- * Utility class for creating and loading icons.
+ * Utility class for creating icons.
+ * Icons are drawn in memory the first time they are asked for and shared from
+ * then on, so every attendance card reuses the same two images.
  */
 public class IconUtil {
-    private static final String ICONS_DIRECTORY = "icons";
-    
-    /**
-     * Initialize icons for the application.
-     * This method creates icon files if they don't exist.
-     */
-    public static void initializeIcons() {
-        // Create icons directory if it doesn't exist
-        File iconsDir = new File(ICONS_DIRECTORY);
-        if (!iconsDir.exists()) {
-            iconsDir.mkdirs();
-        }
-        
-        // Create check icon
-        createCheckIcon();
-        
-        // Create X icon
-        createXIcon();
-    }
-    
-    /**
-     * Create a check mark icon.
-     */
-    private static void createCheckIcon() {
-        File checkFile = new File(ICONS_DIRECTORY + File.separator + "check.png");
-        if (checkFile.exists()) {
-            return;
-        }
-        
-        // Create a simple check icon
-        ImageIcon checkIcon = createSimpleCheckIcon();
-        saveImageIconToFile(checkIcon, checkFile);
-    }
-    
-    /**
-     * Create an X icon.
-     */
-    private static void createXIcon() {
-        File xFile = new File(ICONS_DIRECTORY + File.separator + "x.png");
-        if (xFile.exists()) {
-            return;
-        }
-        
-        // Create a simple X icon
-        ImageIcon xIcon = createSimpleXIcon();
-        saveImageIconToFile(xIcon, xFile);
-    }
+    private static ImageIcon checkIcon;
+    private static ImageIcon xIcon;
     
     /**
      * Create a simple check mark icon.
@@ -117,66 +69,31 @@ public class IconUtil {
      * @return The empty image
      */
     private static Image createEmptyImage(int size) {
-        Image image = new java.awt.image.BufferedImage(size, size, java.awt.image.BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = (Graphics2D) image.getGraphics();
-        g2d.setColor(new Color(0, 0, 0, 0)); // Transparent
-        g2d.fillRect(0, 0, size, size);
-        g2d.dispose();
-        return image;
-    }
-    
-    /**
-     * Save an image icon to a file.
-     * 
-     * @param icon The image icon
-     * @param file The file
-     */
-    private static void saveImageIconToFile(ImageIcon icon, File file) {
-        try {
-            Image image = icon.getImage();
-            
-            // Convert to buffered image
-            java.awt.image.BufferedImage bufferedImage = new java.awt.image.BufferedImage(
-                    image.getWidth(null), 
-                    image.getHeight(null), 
-                    java.awt.image.BufferedImage.TYPE_INT_ARGB);
-            
-            Graphics2D g2d = bufferedImage.createGraphics();
-            g2d.drawImage(image, 0, 0, null);
-            g2d.dispose();
-            
-            // Save image
-            javax.imageio.ImageIO.write(bufferedImage, "png", file);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // New ARGB images are fully transparent
+        return new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
     }
     
     /**
      * Get the check icon.
      * 
-     * @return The check icon or null if it doesn't exist
+     * @return The shared check icon
      */
-    public static ImageIcon getCheckIcon() {
-        File checkFile = new File(ICONS_DIRECTORY + File.separator + "check.png");
-        if (!checkFile.exists()) {
-            return createSimpleCheckIcon();
+    public static synchronized ImageIcon getCheckIcon() {
+        if (checkIcon == null) {
+            checkIcon = createSimpleCheckIcon();
         }
-        
-        return new ImageIcon(checkFile.getAbsolutePath());
+        return checkIcon;
     }
     
     /**
      * Get the X icon.
      * 
-     * @return The X icon or null if it doesn't exist
+     * @return The shared X icon
      */
-    public static ImageIcon getXIcon() {
-        File xFile = new File(ICONS_DIRECTORY + File.separator + "x.png");
-        if (!xFile.exists()) {
-            return createSimpleXIcon();
+    public static synchronized ImageIcon getXIcon() {
+        if (xIcon == null) {
+            xIcon = createSimpleXIcon();
         }
-        
-        return new ImageIcon(xFile.getAbsolutePath());
+        return xIcon;
     }
-} 
\ No newline at end of file
+}
@@ -1,12 +1,22 @@
 package com.trackese.ui;
 
+import com.trackese.ingest.ScanIngestor;
+import com.trackese.metrics.Metrics;
 import com.trackese.models.BatchSection;
+import com.trackese.server.AttendanceServer;
 import com.trackese.utils.BatchSectionManager;
+import com.trackese.utils.SectionReportGenerator;
+import com.trackese.utils.SectionStore;
+import com.trackese.utils.SectionSummary;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Main application frame.
@@ -16,29 +26,22 @@ public class MainFrame extends JFrame {
     private JPanel mainPanel;
     private JComboBox<Object> batchSectionComboBox;
     private BatchSection currentBatchSection;
+    private final Map<BatchSection, String> sectionLabels = new HashMap<>();
+    private SwingWorker<Map<BatchSection, String>, Void> sectionLabelWorker;
+    private final SectionEventBus sectionEventBus = new SectionEventBus();
 
-    // UI panels
+    // UI panels, each built the first time it is shown
     private StudentManagementPanel studentManagementPanel;
     private AttendancePanel attendancePanel;
     private AttendanceHistoryPanel attendanceHistoryPanel;
+    private boolean painted = false;
 
     public MainFrame() {
         super("University Student Attendance Tracking System");
-        
-        // Initialize icons
-        IconUtil.initializeIcons();
-        
         initializeUI();
     }
 
     private void initializeUI() {
-        // Set look and feel
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
         // Set frame properties
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1000, 700);
@@ -50,24 +53,64 @@ public class MainFrame extends JFrame {
 
         // Create top panel with navigation
         JPanel topPanel = createTopPanel();
-
-        // Create the panels
-        studentManagementPanel = new StudentManagementPanel(this);
-        attendancePanel = new AttendancePanel(this);
-        attendanceHistoryPanel = new AttendanceHistoryPanel(this);
-
-        // Add panels to main panel
-        mainPanel.add(studentManagementPanel, "STUDENT_MANAGEMENT");
-        mainPanel.add(attendancePanel, "ATTENDANCE");
-        mainPanel.add(attendanceHistoryPanel, "ATTENDANCE_HISTORY");
+        StartupTimer.mark("navigation");
 
         // Create layout
         setLayout(new BorderLayout());
         add(topPanel, BorderLayout.NORTH);
         add(mainPanel, BorderLayout.CENTER);
 
-        // Show initial panel
-        cardLayout.show(mainPanel, "STUDENT_MANAGEMENT");
+        // Show initial panel; the others are built on first navigation
+        showPanel("STUDENT_MANAGEMENT");
+        StartupTimer.mark("first panel");
+    }
+
+    /**
+     * Show a panel, building it first if it has not been shown before.
+     *
+     * @param name STUDENT_MANAGEMENT, ATTENDANCE or ATTENDANCE_HISTORY
+     */
+    private void showPanel(String name) {
+        JPanel panel = null;
+        if ("STUDENT_MANAGEMENT".equals(name) && studentManagementPanel == null) {
+            studentManagementPanel = new StudentManagementPanel(this);
+            panel = studentManagementPanel;
+        } else if ("ATTENDANCE".equals(name) && attendancePanel == null) {
+            attendancePanel = new AttendancePanel(this);
+            panel = attendancePanel;
+        } else if ("ATTENDANCE_HISTORY".equals(name) && attendanceHistoryPanel == null) {
+            attendanceHistoryPanel = new AttendanceHistoryPanel(this);
+            panel = attendanceHistoryPanel;
+        }
+
+        if (panel != null) {
+            // A new card starts hidden, so the section is loaded when the card is shown below
+            mainPanel.add(panel, name);
+            panel.setVisible(false);
+            updatePanelSection(panel);
+        }
+        cardLayout.show(mainPanel, name);
+    }
+
+    private void updatePanelSection(JPanel panel) {
+        if (panel instanceof StudentManagementPanel) {
+            ((StudentManagementPanel) panel).updateBatchSection(currentBatchSection);
+        } else if (panel instanceof AttendancePanel) {
+            ((AttendancePanel) panel).updateBatchSection(currentBatchSection);
+        } else if (panel instanceof AttendanceHistoryPanel) {
+            ((AttendanceHistoryPanel) panel).updateBatchSection(currentBatchSection);
+        }
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!painted) {
+            painted = true;
+            StartupTimer.mark("first paint");
+            // Runs once the events queued during startup have been handled
+            SwingUtilities.invokeLater(StartupTimer::finish);
+        }
     }
 
     private JPanel createTopPanel() {
@@ -86,14 +129,38 @@ public class MainFrame extends JFrame {
 
         // Batch section combo box
         batchSectionComboBox = new JComboBox<>();
+        batchSectionComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                Object label = value instanceof BatchSection && index >= 0
+                        ? sectionLabels.getOrDefault(value, value.toString()) : value;
+                return super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+            }
+        });
+        batchSectionComboBox.addPopupMenuListener(new javax.swing.event.PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(javax.swing.event.PopupMenuEvent e) {
+                updateSectionLabels();
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(javax.swing.event.PopupMenuEvent e) {
+            }
+        });
         updateBatchSectionComboBox();
         batchSectionComboBox.addActionListener(e -> {
             Object selected = batchSectionComboBox.getSelectedItem();
             if (selected instanceof BatchSection) {
                 currentBatchSection = (BatchSection) selected;
-                studentManagementPanel.updateBatchSection(currentBatchSection);
-                attendancePanel.updateBatchSection(currentBatchSection);
-                attendanceHistoryPanel.updateBatchSection(currentBatchSection);
+                // Hidden panels only remember the section and load it when shown
+                for (Component card : mainPanel.getComponents()) {
+                    updatePanelSection((JPanel) card);
+                }
             } else if (selected instanceof String && ((String) selected).equals("+ Add More")) {
                 showAddBatchSectionDialog();
             }
@@ -108,15 +175,25 @@ public class MainFrame extends JFrame {
         JButton historyButton = new JButton("Attendance History");
 
         // Add action listeners
-        studentManagementButton.addActionListener(e -> cardLayout.show(mainPanel, "STUDENT_MANAGEMENT"));
-        attendanceButton.addActionListener(e -> cardLayout.show(mainPanel, "ATTENDANCE"));
-        historyButton.addActionListener(e -> cardLayout.show(mainPanel, "ATTENDANCE_HISTORY"));
+        studentManagementButton.addActionListener(e -> showPanel("STUDENT_MANAGEMENT"));
+        attendanceButton.addActionListener(e -> showPanel("ATTENDANCE"));
+        historyButton.addActionListener(e -> showPanel("ATTENDANCE_HISTORY"));
 
         // Add buttons to panel
         controlPanel.add(studentManagementButton);
         controlPanel.add(attendanceButton);
         controlPanel.add(historyButton);
 
+        // Department-wide report over all sections
+        JButton reportButton = new JButton("Department Report");
+        reportButton.addActionListener(e -> generateDepartmentReport(reportButton));
+        controlPanel.add(reportButton);
+
+        // Heap use of cached sections and panels
+        JButton memoryButton = new JButton("Memory");
+        memoryButton.addActionListener(e -> new MemoryDiagnosticsDialog(this).setVisible(true));
+        controlPanel.add(memoryButton);
+
         panel.add(controlPanel, BorderLayout.EAST);
 
         return panel;
@@ -137,6 +214,48 @@ public class MainFrame extends JFrame {
         }
     }
 
+    /**
+     * Refresh the section picker labels from the summary sidecars. A missing or
+     * stale sidecar is rebuilt from the CSV file, so they are read off the event
+     * dispatch thread; the open popup shows the previous labels until they arrive.
+     */
+    private void updateSectionLabels() {
+        if (sectionLabelWorker != null && !sectionLabelWorker.isDone()) {
+            return;
+        }
+        List<BatchSection> sections = BatchSectionManager.getAllBatchSections();
+        sectionLabelWorker = new SwingWorker<Map<BatchSection, String>, Void>() {
+            @Override
+            protected Map<BatchSection, String> doInBackground() {
+                Map<BatchSection, String> labels = new HashMap<>();
+                for (BatchSection bs : sections) {
+                    SectionSummary summary = SectionSummary.load(bs);
+                    String label = bs.getFullName() + " (" + summary.getStudentCount() + " students";
+                    if (summary.getTotalMarked() > 0) {
+                        label += String.format(", %.0f%%", summary.getTotalPresent() * 100.0 / summary.getTotalMarked());
+                    }
+                    labels.put(bs, label + ")");
+                }
+                return labels;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    sectionLabels.clear();
+                    sectionLabels.putAll(get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                Object popup = batchSectionComboBox.getAccessibleContext().getAccessibleChild(0);
+                if (popup instanceof javax.swing.plaf.basic.ComboPopup) {
+                    ((javax.swing.plaf.basic.ComboPopup) popup).getList().repaint();
+                }
+            }
+        };
+        sectionLabelWorker.execute();
+    }
+
     private void showAddBatchSectionDialog() {
         JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
         panel.add(new JLabel("Batch:"));
@@ -167,20 +286,122 @@ public class MainFrame extends JFrame {
         }
     }
 
+    private void generateDepartmentReport(JButton reportButton) {
+        reportButton.setEnabled(false);
+        new SwingWorker<File, Void>() {
+            @Override
+            protected File doInBackground() {
+                return SectionReportGenerator.writeDepartmentReport();
+            }
+
+            @Override
+            protected void done() {
+                reportButton.setEnabled(true);
+                try {
+                    File file = get();
+                    if (file != null) {
+                        JOptionPane.showMessageDialog(MainFrame.this, "Report written to " + file.getPath(),
+                                "Department Report", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                JOptionPane.showMessageDialog(MainFrame.this, "The report could not be written.",
+                        "Department Report", JOptionPane.ERROR_MESSAGE);
+            }
+        }.execute();
+    }
+
     public BatchSection getCurrentBatchSection() {
         return currentBatchSection;
     }
 
+    public SectionEventBus getSectionEventBus() {
+        return sectionEventBus;
+    }
+
+    /**
+     * Get the student management panel.
+     *
+     * @return The panel, or null if it has not been shown yet
+     */
+    public StudentManagementPanel getStudentManagementPanel() {
+        return studentManagementPanel;
+    }
+
+    /**
+     * Get the attendance panel.
+     *
+     * @return The panel, or null if it has not been shown yet
+     */
+    public AttendancePanel getAttendancePanel() {
+        return attendancePanel;
+    }
+
+    /**
+     * Get the attendance history panel.
+     *
+     * @return The panel, or null if it has not been shown yet
+     */
+    public AttendanceHistoryPanel getAttendanceHistoryPanel() {
+        return attendanceHistoryPanel;
+    }
+
+    /**
+     * Warm the caches the first panel reads from. The section list is shared under a
+     * lock; the first section is normally cached before the frame asks for it.
+     */
+    private static void preloadFirstSection() {
+        List<BatchSection> batchSections = BatchSectionManager.getAllBatchSections();
+        if (!batchSections.isEmpty()) {
+            SectionStore.get(batchSections.get(0));
+        }
+    }
+
     /**
      * Main method to start the application.
      *
      * @param args Command line arguments
      */
     public static void main(String[] args) {
-        // Run the UI on the event dispatch thread
+        StartupTimer.start();
+        
+        // Periodic metrics file, if -Dtrackese.metrics.file is set
+        Metrics.startDumpFromSystemProperties();
+        
+        // Headless HTTP API mode: --server [port]
+        if (args.length > 0 && "--server".equals(args[0])) {
+            AttendanceServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        // Scanner log ingest mode: --ingest [options]
+        if (args.length > 0 && "--ingest".equals(args[0])) {
+            ScanIngestor.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        // Read the section list and the first section while the look and feel loads
+        Thread preload = new Thread(MainFrame::preloadFirstSection, "startup-preload");
+        preload.setDaemon(true);
+        preload.start();
+        
+        // Run the UI on the event dispatch thread, and report when it stalls
+        EDTWatchdog.start();
         SwingUtilities.invokeLater(() -> {
+            // The look and feel must be set before the first component is created
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            StartupTimer.mark("look and feel");
+            
             MainFrame frame = new MainFrame();
+            StartupTimer.mark("main frame");
             frame.setVisible(true);
+            StartupTimer.mark("window shown");
         });
     }
 } 
\ No newline at end of file
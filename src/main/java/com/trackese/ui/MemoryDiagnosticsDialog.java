@@ -0,0 +1,187 @@
+package com.trackese.ui;
+
+import com.trackese.models.SectionMemoryUsage;
+import com.trackese.utils.SectionStore;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dialog showing the heap use of the application: the JVM heap, the estimated
+ * size of every cached section and the caches derived from it against the memory
+ * budget, and the copies the panels keep of the shown section. Refreshes itself
+ * every two seconds.
+ */
+public class MemoryDiagnosticsDialog extends JDialog {
+    private static final int REFRESH_MILLIS = 2000;
+
+    private final MainFrame mainFrame;
+    private JLabel heapLabel;
+    private JLabel cacheLabel;
+    private DefaultTableModel sectionTableModel;
+    private List<String> derivedCacheNames = Collections.emptyList(); // Columns shown for derived caches
+    private DefaultTableModel panelTableModel;
+    private Timer refreshTimer;
+
+    /**
+     * Constructor for the memory diagnostics dialog.
+     *
+     * @param mainFrame The main application frame, whose panels are listed
+     */
+    public MemoryDiagnosticsDialog(MainFrame mainFrame) {
+        super(mainFrame, "Memory Diagnostics", ModalityType.MODELESS);
+        this.mainFrame = mainFrame;
+        initializeUI();
+        setSize(650, 500);
+        setLocationRelativeTo(mainFrame);
+        refresh();
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                refreshTimer.stop();
+            }
+        });
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initializeUI() {
+        setLayout(new BorderLayout(10, 10));
+
+        // Heap and budget summary
+        JPanel summaryPanel = new JPanel(new GridLayout(2, 1, 5, 5));
+        summaryPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        heapLabel = new JLabel();
+        cacheLabel = new JLabel();
+        summaryPanel.add(heapLabel);
+        summaryPanel.add(cacheLabel);
+        add(summaryPanel, BorderLayout.NORTH);
+
+        // Cached sections and panel copies
+        sectionTableModel = new DefaultTableModel(getSectionColumns(), 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        panelTableModel = new DefaultTableModel(new Object[]{"Panel", "Estimated Size", "Details"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JScrollPane sectionScroll = new JScrollPane(new JTable(sectionTableModel));
+        sectionScroll.setBorder(BorderFactory.createTitledBorder("Cached Sections"));
+        JScrollPane panelScroll = new JScrollPane(new JTable(panelTableModel));
+        panelScroll.setBorder(BorderFactory.createTitledBorder("Panel Copies"));
+        panelScroll.setPreferredSize(new Dimension(0, 120));
+
+        JPanel tablesPanel = new JPanel(new BorderLayout(10, 10));
+        tablesPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+        tablesPanel.add(sectionScroll, BorderLayout.CENTER);
+        tablesPanel.add(panelScroll, BorderLayout.SOUTH);
+        add(tablesPanel, BorderLayout.CENTER);
+
+        // Actions
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton releaseButton = new JButton("Release Cached Sections");
+        releaseButton.addActionListener(e -> {
+            SectionStore.clear();
+            refresh();
+        });
+        JButton gcButton = new JButton("Collect Garbage");
+        gcButton.addActionListener(e -> {
+            System.gc();
+            refresh();
+        });
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        buttonPanel.add(releaseButton);
+        buttonPanel.add(gcButton);
+        buttonPanel.add(closeButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    private void refresh() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        heapLabel.setText("Heap: " + formatBytes(used) + " used, " + formatBytes(runtime.totalMemory())
+                + " committed, " + formatBytes(runtime.maxMemory()) + " maximum");
+
+        // Derived caches register when first used
+        List<String> names = SectionStore.getDerivedCacheNames();
+        if (!names.equals(derivedCacheNames)) {
+            derivedCacheNames = names;
+            sectionTableModel.setColumnIdentifiers(getSectionColumns());
+        }
+
+        List<SectionMemoryUsage> usage = SectionStore.getMemoryUsage();
+        long retained = 0;
+        long now = System.currentTimeMillis();
+        sectionTableModel.setRowCount(0);
+        for (SectionMemoryUsage section : usage) {
+            retained += section.getTotalBytes();
+            List<Object> row = new ArrayList<>();
+            row.add(section.getBatchSection().getFullName());
+            row.add(section.getStudentCount());
+            row.add(section.getDateCount());
+            row.add(formatBytes(section.getEstimatedBytes()));
+            for (String name : derivedCacheNames) {
+                Long bytes = section.getDerivedBytes().get(name);
+                row.add(formatBytes(bytes == null ? 0 : bytes));
+            }
+            row.add(formatBytes(section.getTotalBytes()));
+            row.add(Math.max(0, (now - section.getLastUsedMillis()) / 1000) + " s ago");
+            sectionTableModel.addRow(row.toArray());
+        }
+        cacheLabel.setText("Section cache: " + formatBytes(retained) + " of " + formatBytes(SectionStore.getBudgetBytes())
+                + " budget, " + usage.size() + " sections, " + SectionStore.getEvictionCount() + " evicted");
+
+        // Panels that have not been shown yet hold nothing
+        panelTableModel.setRowCount(0);
+        StudentManagementPanel studentManagementPanel = mainFrame.getStudentManagementPanel();
+        if (studentManagementPanel != null) {
+            panelTableModel.addRow(new Object[]{"Student Management",
+                    formatBytes(studentManagementPanel.estimateRetainedBytes()), "Student ID list"});
+        }
+        AttendancePanel attendancePanel = mainFrame.getAttendancePanel();
+        if (attendancePanel != null) {
+            panelTableModel.addRow(new Object[]{"Take Attendance",
+                    formatBytes(attendancePanel.estimateRetainedBytes()),
+                    attendancePanel.getCardCount() + " student cards (not counted)"});
+        }
+        AttendanceHistoryPanel attendanceHistoryPanel = mainFrame.getAttendanceHistoryPanel();
+        if (attendanceHistoryPanel != null) {
+            panelTableModel.addRow(new Object[]{"Attendance History",
+                    formatBytes(attendanceHistoryPanel.estimateRetainedBytes()),
+                    "Students, range index and table rows"});
+        }
+    }
+
+    private Object[] getSectionColumns() {
+        List<Object> columns = new ArrayList<>(Arrays.asList("Section", "Students", "Dates", "Snapshot"));
+        columns.addAll(derivedCacheNames);
+        columns.add("Total");
+        columns.add("Last Used");
+        return columns.toArray();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,131 @@
+package com.trackese.ui;
+
+import com.trackese.models.BatchSection;
+import com.trackese.utils.BatchSectionManager;
+import com.trackese.utils.DateUtils;
+import com.trackese.utils.PresenceBitmaps;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Dialog for combining dates and sections into presence queries,
+ * such as "students absent on both of these dates".
+ */
+public class PresenceQueryDialog extends JDialog {
+    private JList<BatchSection> sectionList;
+    private DefaultListModel<String> dateListModel;
+    private JList<String> dateList;
+    private JComboBox<PresenceBitmaps.Match> matchComboBox;
+    private JTextArea resultArea;
+
+    /**
+     * Constructor for the presence query dialog.
+     *
+     * @param owner          The owner window
+     * @param currentSection The section selected initially, may be null
+     */
+    public PresenceQueryDialog(Window owner, BatchSection currentSection) {
+        super(owner, "Presence Query", ModalityType.MODELESS);
+        initializeUI(currentSection);
+        setSize(700, 500);
+        setLocationRelativeTo(owner);
+    }
+
+    private void initializeUI(BatchSection currentSection) {
+        setLayout(new BorderLayout(10, 10));
+
+        // Sections and dates side by side
+        List<BatchSection> sections = BatchSectionManager.getAllBatchSections();
+        sectionList = new JList<>(sections.toArray(new BatchSection[0]));
+        sectionList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        if (currentSection != null) {
+            sectionList.setSelectedValue(currentSection, true);
+        }
+        sectionList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                updateDateList();
+            }
+        });
+
+        dateListModel = new DefaultListModel<>();
+        dateList = new JList<>(dateListModel);
+        dateList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+
+        JPanel listsPanel = new JPanel(new GridLayout(1, 2, 10, 10));
+        listsPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        JScrollPane sectionScroll = new JScrollPane(sectionList);
+        sectionScroll.setBorder(BorderFactory.createTitledBorder("Sections"));
+        JScrollPane dateScroll = new JScrollPane(dateList);
+        dateScroll.setBorder(BorderFactory.createTitledBorder("Dates"));
+        listsPanel.add(sectionScroll);
+        listsPanel.add(dateScroll);
+        add(listsPanel, BorderLayout.CENTER);
+
+        // Match mode and run button
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controlPanel.add(new JLabel("Find students:"));
+        matchComboBox = new JComboBox<>(PresenceBitmaps.Match.values());
+        controlPanel.add(matchComboBox);
+        JButton runButton = new JButton("Run Query");
+        runButton.addActionListener(e -> runQuery());
+        controlPanel.add(runButton);
+
+        resultArea = new JTextArea(10, 40);
+        resultArea.setEditable(false);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        southPanel.add(controlPanel, BorderLayout.NORTH);
+        southPanel.add(new JScrollPane(resultArea), BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
+
+        updateDateList();
+    }
+
+    private void updateDateList() {
+        TreeSet<String> dates = new TreeSet<>();
+        for (BatchSection batchSection : sectionList.getSelectedValuesList()) {
+            dates.addAll(PresenceBitmaps.forSection(batchSection).getDates());
+        }
+
+        dateListModel.clear();
+        for (String date : dates) {
+            dateListModel.addElement(DateUtils.formatDateForDisplay(date));
+        }
+    }
+
+    private void runQuery() {
+        List<BatchSection> sections = sectionList.getSelectedValuesList();
+        List<String> dates = new ArrayList<>();
+        for (String displayDate : dateList.getSelectedValuesList()) {
+            dates.add(DateUtils.parseDisplayDate(displayDate));
+        }
+
+        if (sections.isEmpty() || dates.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select at least one section and one date.",
+                    "Invalid Query", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        long start = System.nanoTime();
+        PresenceBitmaps.Match match = (PresenceBitmaps.Match) matchComboBox.getSelectedItem();
+        Map<BatchSection, List<String>> results = PresenceBitmaps.query(sections, match, dates);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        StringBuilder text = new StringBuilder();
+        int total = 0;
+        for (Map.Entry<BatchSection, List<String>> entry : results.entrySet()) {
+            total += entry.getValue().size();
+            text.append(entry.getKey().getFullName()).append(" (").append(entry.getValue().size()).append("): ")
+                    .append(String.join(", ", entry.getValue())).append("\n");
+        }
+        text.insert(0, total + " matching students in " + elapsedMillis + " ms\n\n");
+        resultArea.setText(text.toString());
+        resultArea.setCaretPosition(0);
+    }
+}
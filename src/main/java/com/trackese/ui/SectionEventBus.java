@@ -0,0 +1,70 @@
+package com.trackese.ui;
+
+import com.trackese.models.SectionEvent;
+import com.trackese.utils.CSVHandler;
+import com.trackese.utils.SectionEventListener;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers saved section changes to the panels on the event dispatch thread.
+ * Saves may happen on any thread; their events are queued and handed to the
+ * panels together by one task, so a burst of saves costs a single pass over
+ * the panels instead of one per save.
+ */
+public class SectionEventBus implements SectionEventListener {
+    private final List<SectionEventListener> subscribers = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<SectionEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+
+    public SectionEventBus() {
+        CSVHandler.addSectionEventListener(this);
+    }
+
+    /**
+     * Subscribe to section changes. The subscriber is called on the event dispatch thread.
+     *
+     * @param subscriber The subscriber
+     */
+    public void subscribe(SectionEventListener subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(SectionEventListener subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void sectionChanged(List<SectionEvent> events) {
+        pending.addAll(events);
+        if (deliveryScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        // Events queued after this point schedule another delivery
+        deliveryScheduled.set(false);
+        List<SectionEvent> events = new ArrayList<>();
+        SectionEvent event;
+        while ((event = pending.poll()) != null) {
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        for (SectionEventListener subscriber : subscribers) {
+            try {
+                subscriber.sectionChanged(events);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.trackese.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+/**
+ * Component that slides one pre-rendered image out to the left while the next
+ * slides in from the right, driven by a Swing timer. Positions follow the time
+ * since the slide started, so a late frame skips ahead instead of slowing the
+ * slide down. A click during the slide is passed to the button at that point of
+ * the incoming component, so input is never held up by the animation.
+ */
+public class SlideTransition extends JComponent {
+    private static final int FRAME_MILLIS = 15; // About 60 frames per second
+
+    private final long durationNanos;
+    private final Timer timer;
+    private BufferedImage from;
+    private BufferedImage to;
+    private Component clickTarget;
+    private Runnable onFinished;
+    private long startNanos;
+    private double progress;
+
+    /**
+     * Constructor for the slide transition.
+     *
+     * @param durationMillis Length of one slide
+     */
+    public SlideTransition(int durationMillis) {
+        this.durationNanos = durationMillis * 1_000_000L;
+        timer = new Timer(FRAME_MILLIS, e -> nextFrame());
+        timer.setCoalesce(true);
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                forwardClick(e.getPoint());
+            }
+        });
+    }
+
+    /**
+     * Start sliding from one image to another. A running slide is replaced; pass
+     * its target image as the new starting image to continue from what is shown.
+     *
+     * @param from        Image of the outgoing component
+     * @param to          Image of the incoming component
+     * @param clickTarget The incoming component, laid out at this component's size, or null
+     * @param onFinished  Called on the event dispatch thread when the slide ends
+     */
+    public void start(BufferedImage from, BufferedImage to, Component clickTarget, Runnable onFinished) {
+        this.from = from;
+        this.to = to;
+        this.clickTarget = clickTarget;
+        this.onFinished = onFinished;
+        startNanos = System.nanoTime();
+        progress = 0;
+        timer.restart();
+        repaint();
+    }
+
+    public boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    public BufferedImage getFromImage() {
+        return from;
+    }
+
+    public BufferedImage getToImage() {
+        return to;
+    }
+
+    /**
+     * Stop the slide without calling its finish action and drop the images.
+     */
+    public void cancel() {
+        timer.stop();
+        from = null;
+        to = null;
+        clickTarget = null;
+        onFinished = null;
+    }
+
+    private void nextFrame() {
+        double elapsed = (double) (System.nanoTime() - startNanos) / durationNanos;
+        if (elapsed >= 1) {
+            timer.stop();
+            Runnable finished = onFinished;
+            onFinished = null;
+            if (finished != null) {
+                finished.run();
+            }
+            return;
+        }
+
+        // Ease out: fast start, gentle stop
+        double remaining = 1 - elapsed;
+        progress = 1 - remaining * remaining * remaining;
+        repaint();
+    }
+
+    private void forwardClick(Point point) {
+        if (clickTarget == null || !(clickTarget instanceof Container)) {
+            return;
+        }
+        Component target = SwingUtilities.getDeepestComponentAt(clickTarget, point.x, point.y);
+        while (target != null && !(target instanceof AbstractButton)) {
+            target = target.getParent();
+        }
+        if (target != null && target.isEnabled()) {
+            ((AbstractButton) target).doClick(0);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int offset = (int) Math.round(getWidth() * progress);
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (from != null) {
+            g.drawImage(from, -offset, 0, null);
+        }
+        if (to != null) {
+            g.drawImage(to, getWidth() - offset, 0, null);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.trackese.ui;
+
+import com.trackese.metrics.Metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup timing breakdown of the desktop application.
+ * Each phase is timed from the end of the previous one, starting when main() runs.
+ * The breakdown is logged once the main window has been painted and the event
+ * dispatch thread has nothing left to do, which is when the first click is handled,
+ * and the total is kept as the "ui.startup" metric.
+ */
+public class StartupTimer {
+    private static final long mainStarted = System.nanoTime();
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+    private static long lastMark = mainStarted;
+    private static boolean finished = false;
+
+    /**
+     * Start timing; call first thing in main().
+     */
+    public static void start() {
+        // Timing starts when the class is initialized
+    }
+
+    /**
+     * End a phase.
+     *
+     * @param phase Name of the phase that has just ended, e.g. "look and feel"
+     */
+    public static synchronized void mark(String phase) {
+        if (finished) {
+            return;
+        }
+        long now = System.nanoTime();
+        phases.merge(phase, now - lastMark, Long::sum);
+        lastMark = now;
+    }
+
+    /**
+     * End the last phase and log the breakdown. Only the first call has an effect.
+     */
+    public static synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        mark("ready");
+        finished = true;
+
+        long totalNanos = lastMark - mainStarted;
+        StringBuilder message = new StringBuilder("Startup:");
+        String separator = " ";
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            message.append(separator).append(phase.getKey()).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue())).append(" ms");
+            separator = ", ";
+        }
+        message.append("; interactive ").append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append(" ms after main");
+
+        // Time spent in the JVM before main, e.g. class loading
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long sinceJvmStart = System.currentTimeMillis() - jvmStart
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastMark);
+        message.append(", ").append(sinceJvmStart).append(" ms after JVM start");
+        System.out.println(message);
+
+        Metrics.operation("ui.startup", null).record(totalNanos, 0, 0);
+    }
+}
@@ -1,15 +1,20 @@
 package com.trackese.ui;
 
+import com.trackese.metrics.Metrics;
 import com.trackese.models.BatchSection;
-import com.trackese.models.Student;
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionEvent;
 import com.trackese.utils.CSVHandler;
+import com.trackese.utils.SectionStore;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Panel for adding and managing students.
@@ -25,6 +30,7 @@ public class StudentManagementPanel extends JPanel {
     private JButton addButton;
     private JList<String> studentIdsList;
     private DefaultListModel<String> listModel;
+    private boolean dirty = false; // Section changed while the panel was hidden
 
     /**
      * Constructor for the student management panel.
@@ -34,6 +40,16 @@ public class StudentManagementPanel extends JPanel {
     public StudentManagementPanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
         initializeUI();
+        
+        mainFrame.getSectionEventBus().subscribe(this::sectionChanged);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                if (dirty) {
+                    loadStudentList();
+                }
+            }
+        });
     }
 
     private void initializeUI() {
@@ -130,25 +146,61 @@ public class StudentManagementPanel extends JPanel {
      */
     public void updateBatchSection(BatchSection batchSection) {
         this.batchSection = batchSection;
-        loadStudentList();
+        refreshWhenShown();
+    }
+
+    /**
+     * Reload the list now if the panel is shown, otherwise the next time it is.
+     */
+    private void refreshWhenShown() {
+        if (isVisible()) {
+            loadStudentList();
+        } else {
+            // The list is filled again when shown
+            dirty = true;
+            listModel.clear();
+            listModel.trimToSize();
+        }
+    }
+
+    /**
+     * Estimate the heap used by the shown student list. The IDs are shared with the section snapshot.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateRetainedBytes() {
+        // DefaultListModel keeps its elements in a Vector
+        return Footprint.object(2 * Footprint.REFERENCE) + Footprint.object(Footprint.REFERENCE + 12)
+                + Footprint.referenceArray(listModel.getSize());
+    }
+
+    /**
+     * Follow roster changes of the shown section, e.g. students added while marking.
+     */
+    private void sectionChanged(List<SectionEvent> events) {
+        for (SectionEvent event : events) {
+            if (event.getType() == SectionEvent.Type.ROSTER_CHANGED && event.getBatchSection().equals(batchSection)) {
+                refreshWhenShown();
+                return;
+            }
+        }
     }
 
     private void loadStudentList() {
+        dirty = false;
         if (batchSection == null) {
             return;
         }
 
-        // Clear the list model
+        // Add student IDs of the current snapshot to the list model
+        long start = System.nanoTime();
+        List<String> studentIds = SectionStore.get(batchSection).getStudentIds();
         listModel.clear();
-
-        // Load students from CSV
-        Map<String, Object> data = CSVHandler.loadStudentsFromCSV(batchSection);
-        List<Student> students = (List<Student>) data.get("students");
-
-        // Add student IDs to the list model
-        for (Student student : students) {
-            listModel.addElement(student.getId());
+        listModel.ensureCapacity(studentIds.size());
+        for (String studentId : studentIds) {
+            listModel.addElement(studentId);
         }
+        Metrics.record("ui.students.load", batchSection, start, 0, studentIds.size());
     }
 
     private void addStudentRange() {
@@ -180,11 +232,13 @@ public class StudentManagementPanel extends JPanel {
             CSVHandler.addStudentBatch(batchSection, startId, endId);
             JOptionPane.showMessageDialog(this, "Student IDs added successfully.",
                     "Success", JOptionPane.INFORMATION_MESSAGE);
-            loadStudentList();
 
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "IDs must be numeric values.",
                     "Invalid Input", JOptionPane.ERROR_MESSAGE);
+        } catch (UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save student IDs: " + e.getCause().getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
@@ -224,7 +278,6 @@ public class StudentManagementPanel extends JPanel {
             
             JOptionPane.showMessageDialog(this, "Student IDs added successfully.",
                     "Success", JOptionPane.INFORMATION_MESSAGE);
-            loadStudentList();
             studentIdsTextArea.setText("");
             
         } catch (Exception e) {
@@ -0,0 +1,468 @@
+package com.trackese.utils;
+
+import com.trackese.models.BatchSection;
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionEvent;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.models.Student;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Rule engine that flags at-risk students of a batch section.
+ * A student is flagged when their attendance falls under a minimum percentage
+ * or they miss too many classes in a row. The engine is built once per section
+ * and then updated incrementally from attendance change events, so a mark only
+ * re-evaluates the one student it touches. It remembers the snapshot version its
+ * states match, which advances with each save it applies, and is rebuilt when the
+ * section is next requested after a save it has not seen, e.g. by another process.
+ * <p>
+ * Marks are kept as one status code per student and date, like the snapshots.
+ * Cached engines count against the {@link SectionStore} memory budget; engines
+ * without flag listeners, i.e. not shown by a panel, may be dropped and are
+ * rebuilt on the next request.
+ */
+public class AtRiskRuleEngine {
+    private static final String RULES_FILE = "at_risk_rules.properties";
+    private static final Map<BatchSection, AtRiskRuleEngine> engines = new HashMap<>();
+    private static Rules rules = null;
+
+    static {
+        CSVHandler.addSectionEventListener(events -> {
+            AtRiskRuleEngine engine;
+            synchronized (engines) {
+                engine = engines.get(events.get(0).getBatchSection());
+            }
+            if (engine != null) {
+                engine.apply(events);
+            }
+        });
+        SectionStore.registerDerivedCache(new SectionStore.DerivedCache() {
+            @Override
+            public String getName() {
+                return "At-Risk Engine";
+            }
+
+            @Override
+            public long getRetainedBytes(BatchSection batchSection) {
+                AtRiskRuleEngine engine;
+                synchronized (engines) {
+                    engine = engines.get(batchSection);
+                }
+                return engine == null ? 0 : engine.estimateBytes();
+            }
+
+            @Override
+            public long evict(BatchSection batchSection) {
+                AtRiskRuleEngine engine;
+                synchronized (engines) {
+                    engine = engines.get(batchSection);
+                    // Panels hold on to the engine of their section and listen to it
+                    if (engine == null || !engine.flagListeners.isEmpty()) {
+                        return 0;
+                    }
+                    engines.remove(batchSection);
+                }
+                return engine.estimateBytes();
+            }
+        });
+    }
+
+    /**
+     * Thresholds used to flag students.
+     */
+    public static class Rules {
+        private final double minPercentage;
+        private final int maxConsecutiveAbsences;
+
+        public Rules(double minPercentage, int maxConsecutiveAbsences) {
+            this.minPercentage = minPercentage;
+            this.maxConsecutiveAbsences = maxConsecutiveAbsences;
+        }
+
+        public double getMinPercentage() {
+            return minPercentage;
+        }
+
+        public int getMaxConsecutiveAbsences() {
+            return maxConsecutiveAbsences;
+        }
+    }
+
+    /**
+     * Listener notified when a student's flag is raised or cleared.
+     */
+    public interface FlagListener {
+        void flagChanged(BatchSection batchSection, String studentId, boolean atRisk);
+    }
+
+    /**
+     * Marks and running totals for one student.
+     */
+    private static class StudentState {
+        private byte[] statuses; // SectionSnapshot status code per date of the engine
+        private int present;
+        private int marked;
+        private int longestAbsenceStreak;
+        private boolean atRisk;
+    }
+
+    private final BatchSection batchSection;
+    private final Rules engineRules;
+    private final List<String> dates = new ArrayList<>(); // Chronological
+    private final Map<String, StudentState> states = new LinkedHashMap<>();
+    private final List<FlagListener> flagListeners = new CopyOnWriteArrayList<>();
+    private long version; // Snapshot version the states match
+
+    private AtRiskRuleEngine(BatchSection batchSection, Rules engineRules) {
+        this.batchSection = batchSection;
+        this.engineRules = engineRules;
+    }
+
+    /**
+     * Get the engine for a section, building it from the section's snapshot on first
+     * use and rebuilding it in place when the snapshot's version has changed since.
+     * The same engine is returned for a section, so flag listeners stay registered.
+     *
+     * @param batchSection The batch and section
+     * @return The engine
+     */
+    public static AtRiskRuleEngine forSection(BatchSection batchSection) {
+        SectionSnapshot snapshot = SectionStore.get(batchSection);
+        AtRiskRuleEngine engine;
+        synchronized (engines) {
+            engine = engines.get(batchSection);
+            if (engine == null) {
+                engine = new AtRiskRuleEngine(batchSection, getRules());
+                engine.load(snapshot);
+                engines.put(batchSection, engine);
+            }
+        }
+        engine.rebuildIfChanged(snapshot);
+        SectionStore.derivedCacheChanged(batchSection);
+        return engine;
+    }
+
+    /**
+     * Build an engine for the students of a section.
+     *
+     * @param batchSection The batch and section
+     * @param students     List of students
+     * @param rules        The thresholds to apply
+     * @return The engine
+     */
+    public static AtRiskRuleEngine build(BatchSection batchSection, List<Student> students, Rules rules) {
+        Set<String> dates = new TreeSet<>();
+        for (Student student : students) {
+            dates.addAll(student.getAttendanceRecords().keySet());
+        }
+        AtRiskRuleEngine engine = new AtRiskRuleEngine(batchSection, rules);
+        engine.load(SectionSnapshot.of(students, new ArrayList<>(dates), 0));
+        return engine;
+    }
+
+    private synchronized void load(SectionSnapshot snapshot) {
+        dates.clear();
+        dates.addAll(snapshot.getDates());
+        states.clear();
+        for (int i = 0; i < snapshot.getStudentCount(); i++) {
+            StudentState state = new StudentState();
+            state.statuses = new byte[dates.size()];
+            for (int d = 0; d < state.statuses.length; d++) {
+                state.statuses[d] = snapshot.getStatus(i, d);
+            }
+            states.put(snapshot.getStudentId(i), state);
+            evaluate(state);
+        }
+        version = snapshot.getVersion();
+    }
+
+    /**
+     * Rebuild the states from a snapshot saved since the engine was built, and
+     * notify listeners of every flag that changed, including flags of removed students.
+     */
+    private void rebuildIfChanged(SectionSnapshot snapshot) {
+        Map<String, Boolean> changedFlags = new LinkedHashMap<>();
+        synchronized (this) {
+            if (snapshot.getVersion() == version) {
+                return;
+            }
+            Set<String> wasFlagged = new LinkedHashSet<>(getFlaggedStudents());
+            load(snapshot);
+
+            for (String studentId : wasFlagged) {
+                if (!isAtRisk(studentId)) {
+                    changedFlags.put(studentId, false);
+                }
+            }
+            for (String studentId : getFlaggedStudents()) {
+                if (!wasFlagged.contains(studentId)) {
+                    changedFlags.put(studentId, true);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Boolean> flag : changedFlags.entrySet()) {
+            for (FlagListener listener : flagListeners) {
+                listener.flagChanged(batchSection, flag.getKey(), flag.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the configured thresholds, read from at_risk_rules.properties if present.
+     * Defaults are 75% minimum attendance and 3 consecutive absences.
+     *
+     * @return The rules
+     */
+    public static synchronized Rules getRules() {
+        if (rules == null) {
+            Properties properties = new Properties();
+            File file = new File(RULES_FILE);
+            if (file.exists()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    properties.load(in);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            try {
+                rules = new Rules(
+                        Double.parseDouble(properties.getProperty("minPercentage", "75")),
+                        Integer.parseInt(properties.getProperty("maxConsecutiveAbsences", "3")));
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+                rules = new Rules(75, 3);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Register a listener for flag changes of this section.
+     *
+     * @param listener The listener
+     */
+    public void addFlagListener(FlagListener listener) {
+        flagListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener for flag changes of this section.
+     *
+     * @param listener The listener
+     */
+    public void removeFlagListener(FlagListener listener) {
+        flagListeners.remove(listener);
+    }
+
+    /**
+     * Apply the marked cells of one save. If the engine was up to date with the snapshot
+     * the save was made on, it is up to date with the saved snapshot afterwards. Roster
+     * changes may remove students or dates, so they leave the engine to be rebuilt.
+     */
+    private void apply(List<SectionEvent> events) {
+        boolean rosterChanged = false;
+        for (SectionEvent event : events) {
+            if (event.getType() == SectionEvent.Type.CELL_MARKED) {
+                mark(event.getStudentId(), event.getDate(), event.getIsPresent());
+            } else if (event.getType() == SectionEvent.Type.ROSTER_CHANGED) {
+                rosterChanged = true;
+            }
+        }
+
+        SectionEvent save = events.get(0);
+        synchronized (this) {
+            if (!rosterChanged && version == save.getPreviousVersion()) {
+                version = save.getVersion();
+            }
+        }
+    }
+
+    /**
+     * Apply one changed mark and re-evaluate that student only.
+     *
+     * @param studentId The student ID
+     * @param date      The date
+     * @param isPresent The new value, or null if the mark was cleared
+     */
+    public void mark(String studentId, String date, Boolean isPresent) {
+        boolean changed;
+        boolean atRisk;
+        byte status = SectionSnapshot.toStatus(isPresent);
+        synchronized (this) {
+            int dateIndex = Collections.binarySearch(dates, date);
+            if (dateIndex < 0) {
+                if (status == SectionSnapshot.UNMARKED) {
+                    return;
+                }
+                dateIndex = addDate(-dateIndex - 1, date);
+            }
+            StudentState state = states.get(studentId);
+            if (state == null) {
+                state = new StudentState();
+                state.statuses = new byte[dates.size()];
+                states.put(studentId, state);
+            }
+            byte previous = state.statuses[dateIndex];
+            if (previous == status) {
+                return;
+            }
+
+            boolean wasAtRisk = state.atRisk;
+            state.statuses[dateIndex] = status;
+            state.present += (status == SectionSnapshot.PRESENT ? 1 : 0) - (previous == SectionSnapshot.PRESENT ? 1 : 0);
+            state.marked += (status != SectionSnapshot.UNMARKED ? 1 : 0) - (previous != SectionSnapshot.UNMARKED ? 1 : 0);
+            state.longestAbsenceStreak = longestAbsenceStreak(state.statuses);
+            state.atRisk = violatesRules(state);
+            changed = wasAtRisk != state.atRisk;
+            atRisk = state.atRisk;
+        }
+
+        if (changed) {
+            for (FlagListener listener : flagListeners) {
+                listener.flagChanged(batchSection, studentId, atRisk);
+            }
+        }
+    }
+
+    /**
+     * Check whether a student is currently flagged.
+     *
+     * @param studentId The student ID
+     * @return True if the student is at risk
+     */
+    public synchronized boolean isAtRisk(String studentId) {
+        StudentState state = states.get(studentId);
+        return state != null && state.atRisk;
+    }
+
+    /**
+     * Describe why a student is flagged.
+     *
+     * @param studentId The student ID
+     * @return Reasons separated by "; ", or an empty string if not flagged
+     */
+    public synchronized String getReasons(String studentId) {
+        StudentState state = states.get(studentId);
+        if (state == null || !state.atRisk) {
+            return "";
+        }
+
+        List<String> reasons = new ArrayList<>();
+        if (getPercentage(state) < engineRules.getMinPercentage()) {
+            reasons.add(String.format(Locale.ROOT, "Attendance %.1f%% below %.0f%%", getPercentage(state),
+                    engineRules.getMinPercentage()));
+        }
+        if (state.longestAbsenceStreak >= engineRules.getMaxConsecutiveAbsences()) {
+            reasons.add(state.longestAbsenceStreak + " absences in a row");
+        }
+        return String.join("; ", reasons);
+    }
+
+    /**
+     * Get the flagged students in roster order.
+     *
+     * @return List of student IDs
+     */
+    public synchronized List<String> getFlaggedStudents() {
+        List<String> flagged = new ArrayList<>();
+        for (Map.Entry<String, StudentState> entry : states.entrySet()) {
+            if (entry.getValue().atRisk) {
+                flagged.add(entry.getKey());
+            }
+        }
+        return flagged;
+    }
+
+    /**
+     * Export the flagged students to a CSV file.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized void exportFlaggedStudents(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("Student ID,Present,Marked,Attendance %,Longest Absence Streak,Reasons");
+            for (Map.Entry<String, StudentState> entry : states.entrySet()) {
+                StudentState state = entry.getValue();
+                if (state.atRisk) {
+                    writer.println(entry.getKey() + "," + state.present + "," + state.marked + ","
+                            + String.format(Locale.ROOT, "%.1f", getPercentage(state)) + ","
+                            + state.longestAbsenceStreak + ",\"" + getReasons(entry.getKey()).replace("\"", "\"\"") + "\"");
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimate the heap used by the dates and student states.
+     * Student IDs and dates are the snapshot's strings and are not counted.
+     *
+     * @return Estimated size in bytes
+     */
+    public synchronized long estimateBytes() {
+        // Per student: state object and its status array
+        long perStudent = Footprint.object(Footprint.REFERENCE + 3 * 4 + 1) + Footprint.byteArray(dates.size());
+        return Footprint.object(5 * Footprint.REFERENCE + 8) + Footprint.arrayList(dates.size())
+                + Footprint.linkedHashMap(states.size()) + states.size() * perStudent;
+    }
+
+    /**
+     * Insert a date, with an unmarked status for every student.
+     *
+     * @return The index of the date
+     */
+    private int addDate(int index, String date) {
+        dates.add(index, date);
+        for (StudentState state : states.values()) {
+            byte[] grown = new byte[state.statuses.length + 1];
+            System.arraycopy(state.statuses, 0, grown, 0, index);
+            System.arraycopy(state.statuses, index, grown, index + 1, state.statuses.length - index);
+            state.statuses = grown;
+        }
+        return index;
+    }
+
+    private void evaluate(StudentState state) {
+        state.present = 0;
+        state.marked = 0;
+        for (byte status : state.statuses) {
+            if (status != SectionSnapshot.UNMARKED) {
+                state.marked++;
+                if (status == SectionSnapshot.PRESENT) {
+                    state.present++;
+                }
+            }
+        }
+        state.longestAbsenceStreak = longestAbsenceStreak(state.statuses);
+        state.atRisk = violatesRules(state);
+    }
+
+    private boolean violatesRules(StudentState state) {
+        if (state.marked == 0) {
+            return false;
+        }
+        return getPercentage(state) < engineRules.getMinPercentage()
+                || state.longestAbsenceStreak >= engineRules.getMaxConsecutiveAbsences();
+    }
+
+    private static double getPercentage(StudentState state) {
+        return state.marked == 0 ? 100 : state.present * 100.0 / state.marked;
+    }
+
+    private static int longestAbsenceStreak(byte[] statuses) {
+        int longest = 0;
+        int current = 0;
+        for (byte status : statuses) {
+            if (status == SectionSnapshot.UNMARKED) {
+                continue; // Only marked classes count
+            }
+            current = status == SectionSnapshot.PRESENT ? 0 : current + 1;
+            longest = Math.max(longest, current);
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,189 @@
+package com.trackese.utils;
+
+import com.trackese.models.BatchSection;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streaming export pipeline from the attendance CSV files to a pluggable writer.
+ * A reader thread streams CSV rows into a bounded queue of row batches while the
+ * calling thread drains it into the writer, so memory stays constant no matter
+ * how many sections and dates are exported.
+ */
+public class AttendanceExporter {
+    private static final int BATCH_SIZE = 512;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        CSV("CSV", "csv"),
+        JSON_LINES("JSON Lines", "jsonl"),
+        XLSX("Excel Workbook", "xlsx");
+
+        private final String label;
+        private final String extension;
+
+        Format(String label, String extension) {
+            this.label = label;
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Create a writer for this format.
+         *
+         * @param out The output stream, closed by the writer
+         * @return The writer
+         * @throws IOException If the writer cannot start its output
+         */
+        public ExportWriter createWriter(OutputStream out) throws IOException {
+            switch (this) {
+                case CSV:
+                    return new CsvExportWriter(out);
+                case JSON_LINES:
+                    return new JsonLinesExportWriter(out);
+                default:
+                    return new XlsxExportWriter(out);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Last item the reader puts on the queue, with the failure that ended the stream, if any.
+     */
+    private static class EndOfStream extends ArrayList<String[]> {
+        private static final long serialVersionUID = 1L;
+        private final Throwable failure;
+
+        EndOfStream(Throwable failure) {
+            this.failure = failure;
+        }
+
+        void rethrow() throws IOException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+    }
+
+    /**
+     * Export the marked cells of the given sections to a file.
+     *
+     * @param batchSections The batch sections, exported in order
+     * @param format        The export format
+     * @param file          The output file
+     * @return Number of rows written
+     * @throws IOException If reading or writing fails
+     */
+    public static long export(List<BatchSection> batchSections, Format format, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE)) {
+            return export(batchSections, format.createWriter(out));
+        }
+    }
+
+    /**
+     * Export the marked cells of the given sections to a writer, which is closed afterwards.
+     *
+     * @param batchSections The batch sections, exported in order
+     * @param writer        The export writer
+     * @return Number of rows written
+     * @throws IOException If reading or writing fails
+     */
+    public static long export(List<BatchSection> batchSections, ExportWriter writer) throws IOException {
+        BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        Thread reader = new Thread(() -> {
+            Throwable failure = null;
+            try {
+                for (BatchSection batchSection : batchSections) {
+                    streamSection(batchSection, queue);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException | Error e) {
+                failure = e; // Rethrown by the exporting thread, which would otherwise wait forever
+            }
+            try {
+                queue.put(new EndOfStream(failure));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "attendance-export-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long rowCount = 0;
+        List<String[]> batch;
+        try (ExportWriter exportWriter = writer) {
+            while (!((batch = queue.take()) instanceof EndOfStream)) {
+                for (String[] row : batch) {
+                    exportWriter.writeRow(row[0], row[1], row[2], row[3]);
+                }
+                rowCount += batch.size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } finally {
+            reader.interrupt();
+        }
+
+        ((EndOfStream) batch).rethrow();
+        return rowCount;
+    }
+
+    private static void streamSection(BatchSection batchSection, BlockingQueue<List<String[]>> queue)
+            throws IOException, InterruptedException {
+        String section = batchSection.getFullName();
+        List<List<String[]>> pending = new ArrayList<>(1);
+        pending.add(new ArrayList<>(BATCH_SIZE));
+
+        try {
+            CSVHandler.streamRows(batchSection, (dates, data) -> {
+                for (int i = 1; i < data.length && i - 1 < dates.size(); i++) {
+                    if (!data[i].isEmpty()) {
+                        String status = "Present".equalsIgnoreCase(data[i]) ? "Present" : "Absent";
+                        pending.get(0).add(new String[]{section, data[0], dates.get(i - 1), status});
+                    }
+                }
+                if (pending.get(0).size() >= BATCH_SIZE) {
+                    try {
+                        queue.put(pending.get(0));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Export interrupted");
+                    }
+                    pending.set(0, new ArrayList<>(BATCH_SIZE));
+                }
+            });
+        } catch (InterruptedIOException e) {
+            throw new InterruptedException(e.getMessage());
+        }
+
+        if (!pending.get(0).isEmpty()) {
+            queue.put(pending.get(0));
+        }
+    }
+}
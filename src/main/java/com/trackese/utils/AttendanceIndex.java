@@ -0,0 +1,323 @@
+package com.trackese.utils;
+
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.models.Student;
+
+import java.util.*;
+
+/**
+ * Date-range attendance index for a batch section.
+ * Every student has Fenwick trees of present and marked counts over the
+ * chronological date positions, and the section keeps the same trees summed
+ * over all students, so range counts and single marks are both O(log n).
+ * Appending a new latest date costs amortized O(log n) per student, since the
+ * status arrays and trees grow with spare capacity; a back-dated date rebuilds the index.
+ */
+public class AttendanceIndex {
+    private static final byte UNMARKED = SectionSnapshot.UNMARKED;
+    private static final byte PRESENT = SectionSnapshot.PRESENT;
+    private static final byte ABSENT = SectionSnapshot.ABSENT;
+
+    private final List<String> dates = new ArrayList<>(); // Sorted yyyy-MM-dd
+    private final Map<String, byte[]> statusByStudent = new LinkedHashMap<>(); // Capacity may exceed the date count
+    private final Map<String, FenwickTree> presentByStudent = new HashMap<>();
+    private final Map<String, FenwickTree> markedByStudent = new HashMap<>();
+    private FenwickTree sectionPresent;
+    private FenwickTree sectionMarked;
+
+    private AttendanceIndex() {
+    }
+
+    /**
+     * Build an index for the students and dates of a section.
+     *
+     * @param students List of students
+     * @param dates    List of dates
+     * @return The index
+     */
+    public static AttendanceIndex build(List<Student> students, List<String> dates) {
+        AttendanceIndex index = new AttendanceIndex();
+        index.dates.addAll(new TreeSet<>(dates));
+
+        for (Student student : students) {
+            byte[] status = new byte[index.dates.size()];
+            for (int i = 0; i < status.length; i++) {
+                status[i] = toStatus(student.getAttendanceForDate(index.dates.get(i)));
+            }
+            index.statusByStudent.put(student.getId(), status);
+        }
+
+        index.rebuildTrees();
+        return index;
+    }
+
+    /**
+     * Build an index from a section snapshot, reading its status columns directly.
+     *
+     * @param snapshot The snapshot
+     * @return The index
+     */
+    public static AttendanceIndex build(SectionSnapshot snapshot) {
+        AttendanceIndex index = new AttendanceIndex();
+        index.dates.addAll(snapshot.getDates());
+
+        for (int s = 0; s < snapshot.getStudentCount(); s++) {
+            byte[] status = new byte[index.dates.size()];
+            for (int d = 0; d < status.length; d++) {
+                status[d] = snapshot.getStatus(s, d);
+            }
+            index.statusByStudent.putIfAbsent(snapshot.getStudentId(s), status);
+        }
+
+        index.rebuildTrees();
+        return index;
+    }
+
+    /**
+     * Estimate the heap used by the index. Student IDs and dates are shared with the loaded students.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateBytes() {
+        long bytes = Footprint.object(6 * Footprint.REFERENCE) + Footprint.arrayList(dates.size())
+                + Footprint.linkedHashMap(statusByStudent.size()) + Footprint.hashMap(presentByStudent.size())
+                + Footprint.hashMap(markedByStudent.size())
+                + sectionPresent.estimateBytes() + sectionMarked.estimateBytes();
+        for (Map.Entry<String, byte[]> entry : statusByStudent.entrySet()) {
+            bytes += Footprint.byteArray(entry.getValue().length)
+                    + presentByStudent.get(entry.getKey()).estimateBytes()
+                    + markedByStudent.get(entry.getKey()).estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Record a mark for a student, adding the student or date when new.
+     *
+     * @param studentId The student ID
+     * @param date      The date
+     * @param isPresent Present/absent, or null to clear the mark
+     */
+    public void mark(String studentId, String date, Boolean isPresent) {
+        int position = Collections.binarySearch(dates, date);
+        if (position < 0) {
+            position = insertDate(date, -position - 1);
+        }
+
+        byte[] status = statusByStudent.get(studentId);
+        if (status == null) {
+            status = new byte[dates.size()];
+            statusByStudent.put(studentId, status);
+            presentByStudent.put(studentId, new FenwickTree(dates.size()));
+            markedByStudent.put(studentId, new FenwickTree(dates.size()));
+        }
+
+        byte previous = status[position];
+        byte current = toStatus(isPresent);
+        if (previous == current) {
+            return;
+        }
+        status[position] = current;
+
+        int presentDelta = (current == PRESENT ? 1 : 0) - (previous == PRESENT ? 1 : 0);
+        int markedDelta = (current != UNMARKED ? 1 : 0) - (previous != UNMARKED ? 1 : 0);
+        presentByStudent.get(studentId).add(position, presentDelta);
+        markedByStudent.get(studentId).add(position, markedDelta);
+        sectionPresent.add(position, presentDelta);
+        sectionMarked.add(position, markedDelta);
+    }
+
+    /**
+     * Get the mark of a student on a date.
+     *
+     * @param studentId The student ID
+     * @param date      The date
+     * @return {@link SectionSnapshot#UNMARKED}, {@link SectionSnapshot#PRESENT} or {@link SectionSnapshot#ABSENT}
+     */
+    public byte getStatus(String studentId, String date) {
+        byte[] status = statusByStudent.get(studentId);
+        int position = Collections.binarySearch(dates, date);
+        return status == null || position < 0 ? UNMARKED : status[position];
+    }
+
+    /**
+     * Get the students of the index in roster order.
+     *
+     * @return Unmodifiable set of student IDs
+     */
+    public Set<String> getStudentIds() {
+        return Collections.unmodifiableSet(statusByStudent.keySet());
+    }
+
+    /**
+     * Count the days a student was present in a date range.
+     *
+     * @param studentId The student ID
+     * @param fromDate  First date (inclusive), or null for no lower bound
+     * @param toDate    Last date (inclusive), or null for no upper bound
+     * @return Number of days present
+     */
+    public int countPresent(String studentId, String fromDate, String toDate) {
+        FenwickTree tree = presentByStudent.get(studentId);
+        return tree == null ? 0 : tree.rangeSum(lowerPosition(fromDate), upperPosition(toDate));
+    }
+
+    /**
+     * Count the days a student was marked (present or absent) in a date range.
+     *
+     * @param studentId The student ID
+     * @param fromDate  First date (inclusive), or null for no lower bound
+     * @param toDate    Last date (inclusive), or null for no upper bound
+     * @return Number of days marked
+     */
+    public int countMarked(String studentId, String fromDate, String toDate) {
+        FenwickTree tree = markedByStudent.get(studentId);
+        return tree == null ? 0 : tree.rangeSum(lowerPosition(fromDate), upperPosition(toDate));
+    }
+
+    /**
+     * Attendance percentage of a student over the marked days in a date range.
+     *
+     * @param studentId The student ID
+     * @param fromDate  First date (inclusive), or null for no lower bound
+     * @param toDate    Last date (inclusive), or null for no upper bound
+     * @return Percentage from 0 to 100, or -1 if nothing was marked
+     */
+    public double getAttendancePercentage(String studentId, String fromDate, String toDate) {
+        return percentage(countPresent(studentId, fromDate, toDate), countMarked(studentId, fromDate, toDate));
+    }
+
+    /**
+     * Count present marks across the whole section in a date range.
+     *
+     * @param fromDate First date (inclusive), or null for no lower bound
+     * @param toDate   Last date (inclusive), or null for no upper bound
+     * @return Number of present marks
+     */
+    public int countSectionPresent(String fromDate, String toDate) {
+        return sectionPresent.rangeSum(lowerPosition(fromDate), upperPosition(toDate));
+    }
+
+    /**
+     * Count all marks across the whole section in a date range.
+     *
+     * @param fromDate First date (inclusive), or null for no lower bound
+     * @param toDate   Last date (inclusive), or null for no upper bound
+     * @return Number of marks
+     */
+    public int countSectionMarked(String fromDate, String toDate) {
+        return sectionMarked.rangeSum(lowerPosition(fromDate), upperPosition(toDate));
+    }
+
+    /**
+     * Attendance percentage of the whole section in a date range.
+     *
+     * @param fromDate First date (inclusive), or null for no lower bound
+     * @param toDate   Last date (inclusive), or null for no upper bound
+     * @return Percentage from 0 to 100, or -1 if nothing was marked
+     */
+    public double getSectionAttendancePercentage(String fromDate, String toDate) {
+        return percentage(countSectionPresent(fromDate, toDate), countSectionMarked(fromDate, toDate));
+    }
+
+    /**
+     * Number of students present on each date of a range, in date order.
+     *
+     * @param fromDate First date (inclusive), or null for no lower bound
+     * @param toDate   Last date (inclusive), or null for no upper bound
+     * @return Map of date to present count
+     */
+    public Map<String, Integer> getDailyPresentCounts(String fromDate, String toDate) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int upper = upperPosition(toDate);
+        for (int i = lowerPosition(fromDate); i <= upper; i++) {
+            counts.put(dates.get(i), sectionPresent.rangeSum(i, i));
+        }
+        return counts;
+    }
+
+    /**
+     * Get the indexed dates in chronological order.
+     *
+     * @return Unmodifiable list of dates
+     */
+    public List<String> getDates() {
+        return Collections.unmodifiableList(dates);
+    }
+
+    private int lowerPosition(String fromDate) {
+        if (fromDate == null) {
+            return 0;
+        }
+        int position = Collections.binarySearch(dates, fromDate);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private int upperPosition(String toDate) {
+        if (toDate == null) {
+            return dates.size() - 1;
+        }
+        int position = Collections.binarySearch(dates, toDate);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    private int insertDate(String date, int position) {
+        dates.add(position, date);
+
+        if (position == dates.size() - 1) {
+            // Appending a new latest date is the common case: grow each array by doubling, not per date
+            for (Map.Entry<String, byte[]> entry : statusByStudent.entrySet()) {
+                if (entry.getValue().length < dates.size()) {
+                    entry.setValue(Arrays.copyOf(entry.getValue(), Math.max(dates.size() * 2, 4)));
+                }
+                presentByStudent.get(entry.getKey()).append(0);
+                markedByStudent.get(entry.getKey()).append(0);
+            }
+            sectionPresent.append(0);
+            sectionMarked.append(0);
+            return position;
+        }
+
+        // Back-dated columns shift every position, so rebuild once
+        for (Map.Entry<String, byte[]> entry : statusByStudent.entrySet()) {
+            byte[] old = entry.getValue();
+            byte[] status = new byte[dates.size()];
+            System.arraycopy(old, 0, status, 0, position);
+            System.arraycopy(old, position, status, position + 1, dates.size() - 1 - position);
+            entry.setValue(status);
+        }
+        rebuildTrees();
+        return position;
+    }
+
+    private void rebuildTrees() {
+        int[] sectionPresentCounts = new int[dates.size()];
+        int[] sectionMarkedCounts = new int[dates.size()];
+
+        for (Map.Entry<String, byte[]> entry : statusByStudent.entrySet()) {
+            byte[] status = entry.getValue();
+            int[] present = new int[dates.size()];
+            int[] marked = new int[dates.size()];
+            for (int i = 0; i < dates.size(); i++) {
+                present[i] = status[i] == PRESENT ? 1 : 0;
+                marked[i] = status[i] != UNMARKED ? 1 : 0;
+                sectionPresentCounts[i] += present[i];
+                sectionMarkedCounts[i] += marked[i];
+            }
+            presentByStudent.put(entry.getKey(), FenwickTree.fromValues(present));
+            markedByStudent.put(entry.getKey(), FenwickTree.fromValues(marked));
+        }
+
+        sectionPresent = FenwickTree.fromValues(sectionPresentCounts);
+        sectionMarked = FenwickTree.fromValues(sectionMarkedCounts);
+    }
+
+    private static byte toStatus(Boolean isPresent) {
+        return isPresent == null ? UNMARKED : (isPresent ? PRESENT : ABSENT);
+    }
+
+    private static double percentage(int present, int marked) {
+        return marked == 0 ? -1 : present * 100.0 / marked;
+    }
+}
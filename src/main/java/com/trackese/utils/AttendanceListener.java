@@ -0,0 +1,18 @@
+package com.trackese.utils;
+
+import com.trackese.models.BatchSection;
+
+/**
+ * Listener notified whenever a single attendance cell changes.
+ */
+public interface AttendanceListener {
+    /**
+     * Called after a mark has been saved.
+     *
+     * @param batchSection The batch and section
+     * @param studentId    The student ID
+     * @param date         The date
+     * @param isPresent    The new value, or null if the mark was cleared
+     */
+    void attendanceChanged(BatchSection batchSection, String studentId, String date, Boolean isPresent);
+}
@@ -20,7 +20,7 @@ public class BatchSectionManager {
      *
      * @return List of batch sections
      */
-    public static List<BatchSection> getAllBatchSections() {
+    public static synchronized List<BatchSection> getAllBatchSections() {
         if (batchSections == null) {
             loadBatchSections();
         }
@@ -72,7 +72,7 @@ public class BatchSectionManager {
      * @param section   Section
      * @return The newly created batch section
      */
-    public static BatchSection addBatchSection(String batchName, String section) {
+    public static synchronized BatchSection addBatchSection(String batchName, String section) {
         if (batchSections == null) {
             loadBatchSections();
         }
@@ -96,7 +96,7 @@ public class BatchSectionManager {
      *
      * @param batchSection The batch section to delete
      */
-    public static void deleteBatchSection(BatchSection batchSection) {
+    public static synchronized void deleteBatchSection(BatchSection batchSection) {
         if (batchSections == null) {
             loadBatchSections();
         }
@@ -1,13 +1,30 @@
 package com.trackese.utils;
 
+import com.trackese.metrics.Metrics;
+import com.trackese.metrics.Tracing;
+import com.trackese.models.AttendanceChange;
 import com.trackese.models.Student;
 import com.trackese.models.BatchSection;
+import com.trackese.models.SectionEvent;
+import com.trackese.models.SectionSnapshot;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 /**
  * Utility class for handling CSV operations.
@@ -15,6 +32,13 @@ import java.util.*;
 public class CSVHandler {
     private static final String CSV_DIRECTORY = "attendance_data";
     private static final String DATE_FORMAT = "yyyy-MM-dd";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int WRITE_CHUNK_SIZE = 256 * 1024;
+    private static final int RENAME_ATTEMPTS = 10;
+    private static final long RENAME_RETRY_MILLIS = 20;
+    private static final List<AttendanceListener> listeners = new CopyOnWriteArrayList<>();
+    private static final List<SectionEventListener> sectionListeners = new CopyOnWriteArrayList<>();
 
     // Ensure the directory exists
     static {
@@ -23,92 +47,458 @@ public class CSVHandler {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        recoverInterruptedWrites();
     }
 
     /**
-     * Save students to a CSV file.
+     * Register a listener for attendance changes.
+     *
+     * @param listener The listener
+     */
+    public static void addAttendanceListener(AttendanceListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener for attendance changes.
+     *
+     * @param listener The listener
+     */
+    public static void removeAttendanceListener(AttendanceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notify listeners that an attendance cell has been saved.
+     *
+     * @param batchSection The batch and section
+     * @param studentId    The student ID
+     * @param date         The date
+     * @param isPresent    The new value, or null if the mark was cleared
+     */
+    public static void fireAttendanceChanged(BatchSection batchSection, String studentId, String date, Boolean isPresent) {
+        for (AttendanceListener listener : listeners) {
+            listener.attendanceChanged(batchSection, studentId, date, isPresent);
+        }
+    }
+
+    /**
+     * Register a listener for the roster, date and cell changes of each save.
+     *
+     * @param listener The listener
+     */
+    public static void addSectionEventListener(SectionEventListener listener) {
+        sectionListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener for section changes.
+     *
+     * @param listener The listener
+     */
+    public static void removeSectionEventListener(SectionEventListener listener) {
+        sectionListeners.remove(listener);
+    }
+
+    /**
+     * Notify listeners of the changes of one save. Call after releasing the section's lock.
+     */
+    private static void fireSectionChanged(List<SectionEvent> events) {
+        for (SectionEvent event : events) {
+            if (event.getType() == SectionEvent.Type.CELL_MARKED) {
+                fireAttendanceChanged(event.getBatchSection(), event.getStudentId(), event.getDate(), event.getIsPresent());
+            }
+        }
+        if (!events.isEmpty()) {
+            for (SectionEventListener listener : sectionListeners) {
+                listener.sectionChanged(events);
+            }
+        }
+    }
+
+    /**
+     * Get the CSV file that stores a batch section.
+     *
+     * @param batchSection The batch and section
+     * @return The CSV file
+     */
+    public static File getCSVFile(BatchSection batchSection) {
+        return new File(CSV_DIRECTORY + File.separator + batchSection.getFileName());
+    }
+
+    /**
+     * Save students to a CSV file and refresh its summary sidecar.
+     * The file is written to a temporary file in large chunks, forced to disk and
+     * renamed into place, so readers in this and other processes never see a partly
+     * written file and a crash mid-write leaves the previous version intact.
      *
      * @param batchSection The batch and section
      * @param students     List of students
      * @param dates        List of dates for attendance
+     * @throws UncheckedIOException If the file cannot be written; the previous version is kept
      */
     public static void saveStudentsToCSV(BatchSection batchSection, List<Student> students, List<String> dates) {
-        String filePath = CSV_DIRECTORY + File.separator + batchSection.getFileName();
+        List<SectionEvent> events = new ArrayList<>();
+        saveSnapshot(batchSection, SectionSnapshot.of(students, dates, 0),
+                Collections.<AttendanceChange>emptyList(), events);
+        fireSectionChanged(events);
+    }
+
+    /**
+     * Save a section snapshot and publish it as the section's current snapshot.
+     * The changed cells are journaled after the new file is on disk but before it
+     * replaces the section's file, so a saved change always has its journal entry and
+     * the journal holds the changes to a cell in the order they were saved. If they
+     * cannot be journaled the section's file is left as it was and the save fails.
+     *
+     * @param batchSection The batch and section
+     * @param snapshot     The snapshot to save
+     * @param changes      The cells that differ from the current snapshot
+     * @param events       Receives the roster, date and cell changes against the previous snapshot
+     * @throws UncheckedIOException If the snapshot cannot be saved; the previous file is kept
+     */
+    private static void saveSnapshot(BatchSection batchSection, SectionSnapshot snapshot,
+                                     List<AttendanceChange> changes, List<SectionEvent> events) {
+        long start = System.nanoTime();
+        Tracing.Span span = Tracing.beginSectionIO("csv.save", batchSection);
+        File file = getCSVFile(batchSection);
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
+        SectionLocks.lockWrite(batchSection);
+        try {
+            SectionSnapshot previous = SectionStore.get(batchSection);
+            File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+            long version = writeTempFile(tempFile, snapshot);
+            try {
+                if (!changes.isEmpty()) {
+                    ChangeJournal.record(batchSection, changes);
+                }
+            } catch (IOException e) {
+                tempFile.delete();
+                throw e;
+            }
+            try {
+                replaceFile(tempFile, file);
+            } catch (IOException e) {
+                tempFile.delete();
+                unrecordChanges(batchSection, previous, changes);
+                throw e;
+            }
+            syncDirectory(file.getParentFile());
+            
+            SectionSnapshot saved = snapshot.withVersion(version);
+            SectionStore.publish(batchSection, saved);
+            SectionSummary.write(batchSection, saved);
+            addStructureEvents(batchSection, previous, saved, events);
+            for (AttendanceChange change : changes) {
+                events.add(SectionEvent.cellMarked(batchSection, change.getStudentId(), change.getDate(),
+                        change.getIsPresent(), previous.getVersion(), version));
+            }
+            Metrics.record("csv.save", batchSection, start, file.length(), snapshot.getStudentCount());
+            span.finish(file.length(), snapshot.getStudentCount());
+        } catch (IOException e) {
+            e.printStackTrace();
+            Metrics.recordError("csv.save", batchSection);
+            span.finish(0, 0);
+            SectionSummary.delete(batchSection);
+            SectionStore.invalidate(batchSection);
+            throw new UncheckedIOException("Could not save " + file, e);
+        } finally {
+            SectionLocks.unlockWrite(batchSection);
+        }
+    }
+
+    /**
+     * Write a snapshot to a temporary file in chunks and force it to disk, ready to be
+     * renamed over the section's file. Call while holding the section's write lock.
+     *
+     * @return The checksum of the written content, which is the snapshot's version
+     */
+    private static long writeTempFile(File tempFile, SectionSnapshot snapshot) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
             // Write header row with dates
-            StringBuilder header = new StringBuilder("Student ID");
-            for (String date : dates) {
-                header.append(",").append(date);
+            StringBuilder chunk = new StringBuilder(WRITE_CHUNK_SIZE + 1024);
+            chunk.append("Student ID");
+            for (int d = 0; d < snapshot.getDateCount(); d++) {
+                chunk.append(",").append(snapshot.getDate(d));
             }
-            writer.println(header.toString());
+            chunk.append(LINE_SEPARATOR);
 
             // Write student data
-            for (Student student : students) {
-                StringBuilder line = new StringBuilder(student.getId());
-                for (String date : dates) {
-                    Boolean isPresent = student.getAttendanceForDate(date);
-                    String attendanceValue = (isPresent == null) ? "" : (isPresent ? "Present" : "Absent");
-                    line.append(",").append(attendanceValue);
+            for (int i = 0; i < snapshot.getStudentCount(); i++) {
+                chunk.append(snapshot.getStudentId(i));
+                for (int d = 0; d < snapshot.getDateCount(); d++) {
+                    byte status = snapshot.getStatus(i, d);
+                    String attendanceValue = status == SectionSnapshot.UNMARKED ? ""
+                            : (status == SectionSnapshot.PRESENT ? "Present" : "Absent");
+                    chunk.append(",").append(attendanceValue);
+                }
+                chunk.append(LINE_SEPARATOR);
+                
+                if (chunk.length() >= WRITE_CHUNK_SIZE) {
+                    writeChunk(channel, chunk, checksum);
                 }
-                writer.println(line.toString());
             }
+            writeChunk(channel, chunk, checksum);
+            
+            // The data must be on disk before the rename makes it the section's file
+            channel.force(true);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Journal the previous values of cells whose save was journaled but could not replace
+     * the section's file, so delta exports end up with the values the file still holds.
+     */
+    private static void unrecordChanges(BatchSection batchSection, SectionSnapshot previous,
+                                        List<AttendanceChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<AttendanceChange> reverted = new ArrayList<>(changes.size());
+        for (AttendanceChange change : changes) {
+            reverted.add(new AttendanceChange(change.getStudentId(), change.getDate(),
+                    previous.getAttendance(change.getStudentId(), change.getDate()), change.getIsPresent()));
+        }
+        try {
+            ChangeJournal.record(batchSection, reverted);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Describe how a save changed the roster and dates of a section.
+     * Removed dates cannot be expressed as single events and count as a roster change.
+     */
+    private static void addStructureEvents(BatchSection batchSection, SectionSnapshot previous,
+                                           SectionSnapshot saved, List<SectionEvent> events) {
+        boolean datesRemoved = false;
+        for (int d = 0; d < previous.getDateCount() && !datesRemoved; d++) {
+            datesRemoved = !saved.hasDate(previous.getDate(d));
+        }
+        if (datesRemoved || !previous.hasSameRoster(saved)) {
+            events.add(SectionEvent.rosterChanged(batchSection, previous.getVersion(), saved.getVersion()));
+            return;
+        }
+        for (int d = 0; d < saved.getDateCount(); d++) {
+            if (!previous.hasDate(saved.getDate(d))) {
+                events.add(SectionEvent.dateAdded(batchSection, saved.getDate(d), previous.getVersion(),
+                        saved.getVersion()));
+            }
+        }
+    }
+
+    private static void writeChunk(FileChannel channel, StringBuilder chunk, CRC32 checksum) throws IOException {
+        byte[] bytes = chunk.toString().getBytes(Charset.defaultCharset());
+        checksum.update(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        chunk.setLength(0);
+    }
+
+    /**
+     * Force a directory entry change such as a rename to disk, where the platform allows it.
+     */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on Windows, where the rename is already durable
+        }
+    }
+
+    /**
+     * Clean up after saves that were interrupted by a crash or power cut.
+     * A leftover temporary file next to an intact CSV file is an unfinished write
+     * and is deleted; one without a CSV file is the only copy and is restored.
+     */
+    private static void recoverInterruptedWrites() {
+        File[] tempFiles = new File(CSV_DIRECTORY).listFiles((dir, name) -> name.endsWith(".csv" + TEMP_EXTENSION));
+        if (tempFiles == null) {
+            return;
+        }
+        
+        for (File tempFile : tempFiles) {
+            String path = tempFile.getPath();
+            File file = new File(path.substring(0, path.length() - TEMP_EXTENSION.length()));
+            // Skip files that a writer in another process is still working on
+            try (FileChannel lockChannel = FileChannel.open(SectionLocks.getLockFile(file).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = lockChannel.tryLock()) {
+                if (lock == null || !tempFile.exists()) {
+                    continue;
+                }
+                if (file.exists()) {
+                    System.err.println("Discarding unfinished write " + tempFile);
+                    Files.delete(tempFile.toPath());
+                } else {
+                    System.err.println("Restoring " + file + " from " + tempFile);
+                    replaceFile(tempFile, file);
+                }
+            } catch (IOException | OverlappingFileLockException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Atomically replace a file, retrying briefly while a reader on Windows still has it open.
+     */
+    private static void replaceFile(File source, File target) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Files.move(source.toPath(), target.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            } catch (AccessDeniedException e) {
+                if (attempt == RENAME_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(RENAME_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Callback for rows streamed from a section's CSV file.
+     */
+    public interface RowHandler {
+        /**
+         * Handle one student row.
+         *
+         * @param dates The dates from the header row
+         * @param data  The row fields; data[0] is the student ID and data[i] belongs to dates.get(i - 1)
+         * @throws IOException If the row cannot be handled
+         */
+        void handleRow(List<String> dates, String[] data) throws IOException;
+    }
+
+    /**
+     * Stream the student rows of a section's CSV file one line at a time,
+     * without building the whole student list in memory.
+     *
+     * @param batchSection The batch and section
+     * @param handler      Called for each student row
+     * @return The dates from the header row
+     * @throws IOException If the file cannot be read or the handler fails
+     */
+    public static List<String> streamRows(BatchSection batchSection, RowHandler handler) throws IOException {
+        return streamRows(batchSection, handler, null);
+    }
+
+    private static List<String> streamRows(BatchSection batchSection, RowHandler handler, CRC32 checksum)
+            throws IOException {
+        long start = System.nanoTime();
+        List<String> dates = new ArrayList<>();
+        File file = getCSVFile(batchSection);
+        if (!file.exists()) {
+            return dates;
+        }
+
+        int rows = 0;
+        Tracing.Span span = Tracing.beginSectionIO("csv.read", batchSection);
+        InputStream in = new FileInputStream(file);
+        if (checksum != null) {
+            in = new CheckedInputStream(in, checksum);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line = reader.readLine();
+            if (line != null) {
+                // Parse header row to get dates
+                String[] headers = line.split(",");
+                for (int i = 1; i < headers.length; i++) { // Skip the first column (Student ID)
+                    dates.add(headers[i]);
+                }
+            }
+
+            // Read student data
+            while ((line = reader.readLine()) != null) {
+                String[] data = line.split(",");
+                if (data.length > 0) {
+                    handler.handleRow(dates, data);
+                    rows++;
+                }
+            }
+        } catch (IOException e) {
+            Metrics.recordError("csv.read", batchSection);
+            span.finish(0, rows);
+            throw e;
+        }
+        Metrics.record("csv.read", batchSection, start, file.length(), rows);
+        span.finish(file.length(), rows);
+        return dates;
+    }
+
     /**
      * Load students from a CSV file.
+     * The "version" entry is a stamp of the loaded content; pass it to
+     * {@link #saveEdits(BatchSection, long, List)} to detect concurrent edits.
      *
      * @param batchSection The batch and section
-     * @return Map containing students and dates
+     * @return Map containing students, dates and version
      */
     public static Map<String, Object> loadStudentsFromCSV(BatchSection batchSection) {
-        String filePath = CSV_DIRECTORY + File.separator + batchSection.getFileName();
         List<Student> students = new ArrayList<>();
+        CRC32 checksum = new CRC32();
+        List<String> dates = readStudents(batchSection, students, checksum);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("students", students);
+        result.put("dates", dates);
+        result.put("version", checksum.getValue());
+        return result;
+    }
+
+    /**
+     * Load a section's CSV file as a snapshot whose version is a stamp of the loaded content.
+     *
+     * @param batchSection The batch and section
+     * @return The snapshot
+     */
+    static SectionSnapshot loadSnapshot(BatchSection batchSection) {
+        List<Student> students = new ArrayList<>();
+        CRC32 checksum = new CRC32();
+        List<String> dates = readStudents(batchSection, students, checksum);
+        return SectionSnapshot.of(students, dates, checksum.getValue());
+    }
+
+    private static List<String> readStudents(BatchSection batchSection, List<Student> students, CRC32 checksum) {
+        long start = System.nanoTime();
         List<String> dates = new ArrayList<>();
         
         try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                return Map.of("students", students, "dates", dates);
-            }
-
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line = reader.readLine();
-                if (line != null) {
-                    // Parse header row to get dates
-                    String[] headers = line.split(",");
-                    for (int i = 1; i < headers.length; i++) { // Skip the first column (Student ID)
-                        dates.add(headers[i]);
+            dates = streamRows(batchSection, (rowDates, data) -> {
+                Student student = new Student(data[0]);
+                
+                // Parse attendance data
+                for (int i = 1; i < data.length && i - 1 < rowDates.size(); i++) {
+                    String date = rowDates.get(i - 1);
+                    if (!data[i].isEmpty()) {
+                        boolean isPresent = "Present".equalsIgnoreCase(data[i]);
+                        student.addAttendanceRecord(date, isPresent);
                     }
                 }
-
-                // Read student data
-                while ((line = reader.readLine()) != null) {
-                    String[] data = line.split(",");
-                    if (data.length > 0) {
-                        Student student = new Student(data[0]);
-                        
-                        // Parse attendance data
-                        for (int i = 1; i < data.length && i - 1 < dates.size(); i++) {
-                            String date = dates.get(i - 1);
-                            if (!data[i].isEmpty()) {
-                                boolean isPresent = "Present".equalsIgnoreCase(data[i]);
-                                student.addAttendanceRecord(date, isPresent);
-                            }
-                        }
-                        
-                        students.add(student);
-                    }
-                }
-            }
+                
+                students.add(student);
+            }, checksum);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        
-        return Map.of("students", students, "dates", dates);
+        Metrics.record("csv.load", batchSection, start, 0, students.size());
+        return dates;
     }
 
     /**
@@ -118,38 +508,143 @@ public class CSVHandler {
      * @param date         The date for attendance
      * @param studentId    The student ID
      * @param isPresent    Whether the student is present
+     * @throws UncheckedIOException If the file cannot be written; nothing is saved or notified
      */
     public static void updateAttendance(BatchSection batchSection, String date, String studentId, boolean isPresent) {
-        Map<String, Object> data = loadStudentsFromCSV(batchSection);
-        List<Student> students = (List<Student>) data.get("students");
-        List<String> dates = (List<String>) data.get("dates");
-
-        // Add date if it doesn't exist
-        if (!dates.contains(date)) {
-            dates.add(date);
-            // Sort dates chronologically
-            Collections.sort(dates);
+        long start = System.nanoTime();
+        List<SectionEvent> events = new ArrayList<>();
+        SectionLocks.lockWrite(batchSection);
+        try {
+            // Add the student if it doesn't exist yet
+            SectionSnapshot snapshot = SectionStore.get(batchSection).withStudents(Collections.singletonList(studentId));
+            saveSnapshot(batchSection, snapshot.withMarks(
+                    Collections.singletonMap(date, Collections.singletonMap(studentId, isPresent))),
+                    Collections.singletonList(new AttendanceChange(studentId, date, isPresent)), events);
+        } finally {
+            SectionLocks.unlockWrite(batchSection);
         }
+        fireSectionChanged(events);
+        Metrics.record("csv.updateAttendance", batchSection, start, 0, 1);
+    }
+
+    /**
+     * Mark a set of students for one date with a single write.
+     *
+     * @param batchSection The batch and section
+     * @param date         The date in yyyy-MM-dd format
+     * @param marks        Student ID to present/absent
+     * @return Number of cells that changed
+     * @throws IllegalArgumentException If the date is invalid or a student is not in the section; nothing is written
+     * @throws UncheckedIOException     If the file cannot be written; nothing is saved or notified
+     */
+    public static int markAttendance(BatchSection batchSection, String date, Map<String, Boolean> marks) {
+        return markAttendance(batchSection, Collections.singletonMap(date, marks));
+    }
+
+    /**
+     * Mark students on one or more dates with a single write.
+     * All marks are validated first, so either every mark is saved or none is.
+     *
+     * @param batchSection The batch and section
+     * @param marksByDate  Date in yyyy-MM-dd format to student ID to present/absent
+     * @return Number of cells that changed
+     * @throws IllegalArgumentException If a date is invalid or a student is not in the section; nothing is written
+     * @throws UncheckedIOException     If the file cannot be written; nothing is saved or notified
+     */
+    public static int markAttendance(BatchSection batchSection, Map<String, Map<String, Boolean>> marksByDate) {
+        long start = System.nanoTime();
+        List<AttendanceChange> changes = new ArrayList<>();
+        List<SectionEvent> events = new ArrayList<>();
+        SectionLocks.lockWrite(batchSection);
+        try {
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+            dateFormat.setLenient(false);
+            for (Map.Entry<String, Map<String, Boolean>> dateMarks : marksByDate.entrySet()) {
+                String date = dateMarks.getKey();
+                try {
+                    if (date == null || !dateFormat.format(dateFormat.parse(date)).equals(date)) {
+                        throw new IllegalArgumentException("Invalid date: " + date);
+                    }
+                } catch (ParseException e) {
+                    throw new IllegalArgumentException("Invalid date: " + date);
+                }
+                for (Map.Entry<String, Boolean> mark : dateMarks.getValue().entrySet()) {
+                    if (!snapshot.hasStudent(mark.getKey())) {
+                        throw new IllegalArgumentException("Unknown student ID: " + mark.getKey());
+                    }
+                    if (mark.getValue() == null) {
+                        throw new IllegalArgumentException("Missing status for student ID: " + mark.getKey());
+                    }
+                    if (!mark.getValue().equals(snapshot.getAttendance(mark.getKey(), date))) {
+                        changes.add(new AttendanceChange(mark.getKey(), date, mark.getValue()));
+                    }
+                }
+            }
 
-        // Find student or create if not exists
-        Student targetStudent = null;
-        for (Student student : students) {
-            if (student.getId().equals(studentId)) {
-                targetStudent = student;
-                break;
+            if (!changes.isEmpty()) {
+                saveSnapshot(batchSection, snapshot.withMarks(marksByDate), changes, events);
             }
+        } finally {
+            SectionLocks.unlockWrite(batchSection);
         }
+        fireSectionChanged(events);
+        Metrics.record("csv.markAttendance", batchSection, start, 0, changes.size());
+        return changes.size();
+    }
 
-        if (targetStudent == null) {
-            targetStudent = new Student(studentId);
-            students.add(targetStudent);
-        }
+    /**
+     * Save edits made against an earlier load of a section, merging them with
+     * whatever other users or processes saved since. An edit is applied if the
+     * cell still holds the value it was made against; otherwise someone else changed
+     * the same cell and the edit is returned as a conflict instead of overwriting it.
+     *
+     * @param batchSection The batch and section
+     * @param baseVersion  The "version" from the load the edits were made on
+     * @param edits        The edits, each with its previous value
+     * @return The edits that conflicted and were not saved
+     * @throws UncheckedIOException If the file cannot be written; none of the edits are saved
+     */
+    public static List<AttendanceChange> saveEdits(BatchSection batchSection, long baseVersion,
+                                                   List<AttendanceChange> edits) {
+        long start = System.nanoTime();
+        List<AttendanceChange> conflicts = new ArrayList<>();
+        List<AttendanceChange> applied = new ArrayList<>();
+        List<SectionEvent> events = new ArrayList<>();
+        SectionLocks.lockWrite(batchSection);
+        try {
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+            boolean changedSinceLoad = snapshot.getVersion() != baseVersion;
+            Map<String, Map<String, Boolean>> marksByDate = new LinkedHashMap<>();
 
-        // Update attendance
-        targetStudent.addAttendanceRecord(date, isPresent);
+            for (AttendanceChange edit : edits) {
+                if (!snapshot.hasStudent(edit.getStudentId()) || edit.getIsPresent() == null) {
+                    conflicts.add(edit);
+                    continue;
+                }
+                Boolean currentValue = snapshot.getAttendance(edit.getStudentId(), edit.getDate());
+                if (edit.getIsPresent().equals(currentValue)) {
+                    continue; // Someone else made the same edit
+                }
+                if (changedSinceLoad && !Objects.equals(currentValue, edit.getPreviousValue())) {
+                    conflicts.add(edit);
+                    continue;
+                }
+                marksByDate.computeIfAbsent(edit.getDate(), date -> new LinkedHashMap<>())
+                        .put(edit.getStudentId(), edit.getIsPresent());
+                applied.add(edit);
+            }
 
-        // Save updated data
-        saveStudentsToCSV(batchSection, students, dates);
+            if (!applied.isEmpty()) {
+                saveSnapshot(batchSection, snapshot.withMarks(marksByDate), applied, events);
+            }
+        } finally {
+            SectionLocks.unlockWrite(batchSection);
+        }
+        fireSectionChanged(events);
+        Metrics.record("csv.saveEdits", batchSection, start, 0, applied.size());
+        return conflicts;
     }
 
     /**
@@ -168,34 +663,33 @@ public class CSVHandler {
      * @param batchSection The batch and section
      * @param startId      Starting student ID
      * @param endId        Ending student ID
+     * @throws UncheckedIOException If the file cannot be written; no students are added
      */
     public static void addStudentBatch(BatchSection batchSection, String startId, String endId) {
+        long startNanos = System.nanoTime();
+        List<SectionEvent> events = new ArrayList<>();
+        SectionLocks.lockWrite(batchSection);
         try {
             int start = Integer.parseInt(startId);
             int end = Integer.parseInt(endId);
             
-            Map<String, Object> data = loadStudentsFromCSV(batchSection);
-            List<Student> students = (List<Student>) data.get("students");
-            List<String> dates = (List<String>) data.get("dates");
-            
-            // Create set of existing IDs for fast lookup
-            Set<String> existingIds = new HashSet<>();
-            for (Student student : students) {
-                existingIds.add(student.getId());
-            }
-            
-            // Add new students
+            // Add new students; existing IDs are skipped
+            List<String> newIds = new ArrayList<>();
             for (int i = start; i <= end; i++) {
-                String id = String.valueOf(i);
-                if (!existingIds.contains(id)) {
-                    students.add(new Student(id));
-                }
+                newIds.add(String.valueOf(i));
             }
             
-            // Save updated data
-            saveStudentsToCSV(batchSection, students, dates);
+            SectionSnapshot snapshot = SectionStore.get(batchSection);
+            SectionSnapshot updated = snapshot.withStudents(newIds);
+            if (updated != snapshot || !getCSVFile(batchSection).exists()) {
+                saveSnapshot(batchSection, updated, Collections.<AttendanceChange>emptyList(), events);
+            }
         } catch (NumberFormatException e) {
             e.printStackTrace();
+        } finally {
+            SectionLocks.unlockWrite(batchSection);
         }
+        fireSectionChanged(events);
+        Metrics.record("csv.addStudentBatch", batchSection, startNanos, 0, 0);
     }
-} 
\ No newline at end of file
+}
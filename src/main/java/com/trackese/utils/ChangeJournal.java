@@ -0,0 +1,352 @@
+package com.trackese.utils;
+
+import com.trackese.metrics.Metrics;
+import com.trackese.models.AttendanceChange;
+import com.trackese.models.BatchSection;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Append-only change journal for attendance marks and history edits.
+ * Every change gets a monotonically increasing sequence number. The journal is
+ * split into segment files named after their first sequence number, with a new
+ * segment each day, so a delta export since a watermark only reads
+ * the segments that hold newer changes.
+ */
+public class ChangeJournal {
+    private static final String JOURNAL_DIRECTORY = "attendance_data" + File.separator + "journal";
+    private static final String SEGMENT_EXTENSION = ".log";
+    private static final String WATERMARK_EXTENSION = ".watermark";
+    private static final String HEADER = "Sequence,Timestamp,Batch,Section,Student ID,Date,Status";
+    private static final String STATE_FILE = "journal.state";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int TAIL_BLOCK_SIZE = 4096;
+
+    private static FileChannel stateChannel;
+    private static String segmentName;
+    private static FileChannel segmentChannel;
+
+    /**
+     * Record the changed attendance cells of one save, with consecutive sequence numbers.
+     * Call while holding the section's write lock and before the saved file replaces the
+     * section's file: the entries are forced to disk first, so a crash can leave an entry
+     * for a save that never completed, but never a saved change without its entry.
+     * Processes sharing the attendance_data directory take turns through a lock on
+     * the journal state file, which holds the last sequence number and the current
+     * segment, so sequence numbers stay unique and ordered across processes.
+     *
+     * @param batchSection The batch and section
+     * @param changes      The changed cells; a null value clears the mark
+     * @return The sequence number of the last change
+     * @throws IOException If the changes could not be recorded; nothing is left in the journal
+     */
+    public static synchronized long record(BatchSection batchSection, List<AttendanceChange> changes) throws IOException {
+        long start = System.nanoTime();
+        try {
+            FileChannel channel = getStateChannel();
+            FileLock lock = channel.lock();
+            try {
+                String[] state = readState(channel);
+                long sequence = Long.parseLong(state[0]);
+
+                // A new segment each day; otherwise append to the segment other processes use too
+                String today = LocalDate.now().toString();
+                String currentSegment = today.equals(state[2]) ? state[1] : String.format("%020d", sequence + 1) + SEGMENT_EXTENSION;
+                if (segmentChannel == null || !currentSegment.equals(segmentName)) {
+                    openSegment(currentSegment);
+                }
+
+                long timestamp = System.currentTimeMillis();
+                StringBuilder lines = new StringBuilder();
+                for (AttendanceChange change : changes) {
+                    Boolean isPresent = change.getIsPresent();
+                    String status = isPresent == null ? "" : (isPresent ? "Present" : "Absent");
+                    lines.append(++sequence).append(',').append(timestamp).append(',')
+                            .append(batchSection.getBatchName()).append(',').append(batchSection.getSection())
+                            .append(',').append(change.getStudentId()).append(',').append(change.getDate())
+                            .append(',').append(status).append(LINE_SEPARATOR);
+                }
+                append(lines.toString().getBytes());
+
+                writeState(channel, sequence + "," + currentSegment + "," + today);
+                Metrics.record("journal.record", batchSection, start, 0, changes.size());
+                return sequence;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            Metrics.recordError("journal.record", batchSection);
+            throw e;
+        }
+    }
+
+    /**
+     * Append complete lines to the current segment and force them to disk.
+     * A partial line left by a crash is cut off first, and a failed append is
+     * truncated again, so every record starts on a clean line.
+     */
+    private static void append(byte[] lines) throws IOException {
+        long end = endOfLastRecord(segmentChannel);
+        try {
+            segmentChannel.truncate(end);
+            ByteBuffer buffer = ByteBuffer.wrap(lines);
+            long position = end;
+            while (buffer.hasRemaining()) {
+                position += segmentChannel.write(buffer, position);
+            }
+            segmentChannel.force(false);
+        } catch (IOException e) {
+            try {
+                segmentChannel.truncate(end);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError); // The partial line is cut off by the next append
+            }
+            segmentChannel.close();
+            segmentChannel = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Find the end of the last complete line of a segment.
+     */
+    private static long endOfLastRecord(FileChannel channel) throws IOException {
+        long end = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(TAIL_BLOCK_SIZE);
+        while (end > 0) {
+            long blockStart = Math.max(0, end - TAIL_BLOCK_SIZE);
+            block.clear();
+            block.limit((int) (end - blockStart));
+            while (block.hasRemaining()) {
+                if (channel.read(block, blockStart + block.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            end = blockStart;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the sequence number of the latest recorded change.
+     *
+     * @return The sequence number, or 0 if nothing has been recorded
+     */
+    public static synchronized long getLastSequence() {
+        try {
+            FileChannel channel = getStateChannel();
+            FileLock lock = channel.lock();
+            try {
+                return Long.parseLong(readState(channel)[0]);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Write the changes recorded after a watermark as CSV.
+     *
+     * @param watermark    Last sequence number already delivered
+     * @param batchSection Only export changes of this section, or null for all sections
+     * @param out          Writer for the CSV output
+     * @return The highest sequence number read, or the watermark if there were no new changes
+     * @throws IOException If the journal cannot be read or the output written
+     */
+    public static long exportSince(long watermark, BatchSection batchSection, Writer out) throws IOException {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println(HEADER);
+        long highest = watermark;
+
+        for (File segment : segmentsAfter(watermark)) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(segment))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] data = line.split(",", -1);
+                    if (data.length < 7) {
+                        continue; // Partially written last line
+                    }
+                    long sequence = Long.parseLong(data[0]);
+                    if (sequence <= watermark) {
+                        continue;
+                    }
+                    highest = Math.max(highest, sequence);
+                    if (batchSection == null || (batchSection.getBatchName().equals(data[2])
+                            && batchSection.getSection().equals(data[3]))) {
+                        writer.println(line);
+                    }
+                }
+            }
+        }
+
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Could not write delta export");
+        }
+        return highest;
+    }
+
+    /**
+     * Export the changes a consumer has not seen yet and advance its stored watermark.
+     *
+     * @param consumer     Name of the downstream consumer
+     * @param batchSection Only export changes of this section, or null for all sections
+     * @param outputFile   File for the CSV output
+     * @return Number of sequence numbers covered by this export
+     * @throws IOException If the export fails; the watermark is left unchanged
+     */
+    public static long exportChanges(String consumer, BatchSection batchSection, File outputFile) throws IOException {
+        File watermarkFile = getWatermarkFile(consumer, batchSection);
+        long watermark = 0;
+        if (watermarkFile.exists()) {
+            watermark = Long.parseLong(new String(Files.readAllBytes(watermarkFile.toPath())).trim());
+        }
+
+        long highest;
+        try (Writer out = new BufferedWriter(new FileWriter(outputFile))) {
+            highest = exportSince(watermark, batchSection, out);
+        }
+
+        Files.createDirectories(Paths.get(JOURNAL_DIRECTORY));
+        Files.write(watermarkFile.toPath(), Long.toString(highest).getBytes());
+        return highest - watermark;
+    }
+
+    /**
+     * Command line entry point for nightly delta exports.
+     * Usage: ChangeJournal &lt;consumer&gt; &lt;output file&gt; [&lt;batch&gt; &lt;section&gt;]
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 4) {
+            System.err.println("Usage: ChangeJournal <consumer> <output file> [<batch> <section>]");
+            System.exit(1);
+        }
+
+        BatchSection batchSection = args.length == 4 ? new BatchSection(args[2], args[3]) : null;
+        try {
+            long count = exportChanges(args[0], batchSection, new File(args[1]));
+            System.out.println("Exported changes covering " + count + " sequence numbers to " + args[1]);
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static File getWatermarkFile(String consumer, BatchSection batchSection) {
+        String name = consumer.replaceAll("[^A-Za-z0-9_-]", "_");
+        if (batchSection != null) {
+            name += "_" + batchSection.getFileName().replace(".csv", "");
+        }
+        return new File(JOURNAL_DIRECTORY + File.separator + name + WATERMARK_EXTENSION);
+    }
+
+    /**
+     * Get all segment files of the journal, oldest first.
+     *
+     * @return The segment files
+     */
+    public static List<File> getSegments() {
+        return segmentsAfter(0);
+    }
+
+    /**
+     * Get the segment files that may hold sequence numbers above a watermark.
+     */
+    private static List<File> segmentsAfter(long watermark) {
+        File[] files = new File(JOURNAL_DIRECTORY).listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName)); // Names are zero-padded start sequences
+
+        int first = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (segmentStart(files[i]) <= watermark + 1) {
+                first = i;
+            }
+        }
+        return Arrays.asList(files).subList(first, files.length);
+    }
+
+    private static long segmentStart(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    private static void openSegment(String name) throws IOException {
+        if (segmentChannel != null) {
+            segmentChannel.close();
+        }
+        segmentChannel = FileChannel.open(Paths.get(JOURNAL_DIRECTORY, name),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentName = name;
+    }
+
+    private static FileChannel getStateChannel() throws IOException {
+        if (stateChannel == null || !stateChannel.isOpen()) {
+            Files.createDirectories(Paths.get(JOURNAL_DIRECTORY));
+            stateChannel = FileChannel.open(Paths.get(JOURNAL_DIRECTORY, STATE_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return stateChannel;
+    }
+
+    /**
+     * Read the journal state: last sequence, current segment and its day.
+     * A missing state file is rebuilt from the segments.
+     */
+    private static String[] readState(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.read(buffer, 0);
+        String[] state = new String(buffer.array()).trim().split(",");
+        if (state.length == 3) {
+            return state;
+        }
+        return new String[]{Long.toString(readLastSequence()), "", ""};
+    }
+
+    private static void writeState(FileChannel channel, String state) throws IOException {
+        byte[] bytes = state.getBytes();
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(bytes), 0);
+        channel.force(false);
+    }
+
+    private static long readLastSequence() throws IOException {
+        List<File> segments = segmentsAfter(Long.MAX_VALUE - 1);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        File last = segments.get(segments.size() - 1);
+        long sequence = segmentStart(last) - 1;
+        try (BufferedReader reader = new BufferedReader(new FileReader(last))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] data = line.split(",", -1);
+                if (data.length >= 7) {
+                    sequence = Math.max(sequence, Long.parseLong(data[0]));
+                }
+            }
+        }
+        return sequence;
+    }
+}
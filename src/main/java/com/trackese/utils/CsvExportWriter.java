@@ -0,0 +1,40 @@
+package com.trackese.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Export writer for comma-separated values.
+ */
+public class CsvExportWriter implements ExportWriter {
+    private final Writer writer;
+
+    public CsvExportWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("Section,Student ID,Date,Status\n");
+    }
+
+    @Override
+    public void writeRow(String section, String studentId, String date, String status) throws IOException {
+        writer.write(escape(section));
+        writer.write(',');
+        writer.write(escape(studentId));
+        writer.write(',');
+        writer.write(date);
+        writer.write(',');
+        writer.write(status);
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
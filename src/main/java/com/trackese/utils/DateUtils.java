@@ -1,18 +1,19 @@
 package com.trackese.utils;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
 /**
  * Utility class for date operations.
+ * The formatters are immutable and shared, so the methods are safe to call from any thread.
  */
 public class DateUtils {
-    private static final String DATE_FORMAT = "yyyy-MM-dd";
-    private static final SimpleDateFormat SDF = new SimpleDateFormat(DATE_FORMAT);
+    private static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    private static final DateTimeFormatter MONTH_DISPLAY_FORMAT = DateTimeFormatter.ofPattern("MMM yyyy");
 
     /**
      * Get the current date as a string.
@@ -20,7 +21,7 @@ public class DateUtils {
      * @return Current date string
      */
     public static String getCurrentDateString() {
-        return SDF.format(new Date());
+        return LocalDate.now().toString();
     }
 
     /**
@@ -29,20 +30,11 @@ public class DateUtils {
      * @return List of date strings for the current month
      */
     public static List<String> getCurrentMonthDates() {
-        List<String> dates = new ArrayList<>();
-        Calendar calendar = Calendar.getInstance();
-        
-        // Set to the first day of the current month
-        calendar.set(Calendar.DAY_OF_MONTH, 1);
-        
-        // Get the last day of the month
-        int lastDay = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
-        
-        for (int day = 1; day <= lastDay; day++) {
-            calendar.set(Calendar.DAY_OF_MONTH, day);
-            dates.add(SDF.format(calendar.getTime()));
+        YearMonth month = YearMonth.now();
+        List<String> dates = new ArrayList<>(month.lengthOfMonth());
+        for (int day = 1; day <= month.lengthOfMonth(); day++) {
+            dates.add(month.atDay(day).toString());
         }
-        
         return dates;
     }
 
@@ -57,21 +49,31 @@ public class DateUtils {
         List<String> dates = new ArrayList<>();
         
         try {
-            Date date = SDF.parse(dateStr);
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(date);
-            
-            for (int i = 0; i < n; i++) {
-                calendar.add(Calendar.DAY_OF_MONTH, -1);
-                dates.add(SDF.format(calendar.getTime()));
+            LocalDate date = LocalDate.parse(dateStr);
+            for (int i = 1; i <= n; i++) {
+                dates.add(date.minusDays(i).toString());
             }
-        } catch (ParseException e) {
+        } catch (DateTimeParseException e) {
             e.printStackTrace();
         }
         
         return dates;
     }
 
+    /**
+     * Convert a display date (e.g. "Jan 05, 2024") back to the storage format.
+     *
+     * @param displayDate Date string in MMM dd, yyyy format
+     * @return Date string in yyyy-MM-dd format, or null if it cannot be parsed
+     */
+    public static String parseDisplayDate(String displayDate) {
+        try {
+            return LocalDate.parse(displayDate, DISPLAY_FORMAT).toString();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
     /**
      * Format a date string to a more readable format.
      *
@@ -80,12 +82,25 @@ public class DateUtils {
      */
     public static String formatDateForDisplay(String dateStr) {
         try {
-            Date date = SDF.parse(dateStr);
-            SimpleDateFormat displayFormat = new SimpleDateFormat("MMM dd, yyyy");
-            return displayFormat.format(date);
-        } catch (ParseException e) {
+            return LocalDate.parse(dateStr).format(DISPLAY_FORMAT);
+        } catch (DateTimeParseException e) {
+            e.printStackTrace();
+            return dateStr;
+        }
+    }
+
+    /**
+     * Format the month of a date, e.g. "Jan 2024".
+     *
+     * @param dateStr Date string in yyyy-MM-dd format
+     * @return Formatted month string
+     */
+    public static String formatMonthForDisplay(String dateStr) {
+        try {
+            return LocalDate.parse(dateStr).format(MONTH_DISPLAY_FORMAT);
+        } catch (DateTimeParseException e) {
             e.printStackTrace();
             return dateStr;
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.trackese.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writer for one export format. Rows arrive one at a time in long format
+ * (one row per marked cell), so no writer ever needs the whole data set.
+ */
+public interface ExportWriter extends Closeable {
+    /**
+     * Write one attendance row.
+     *
+     * @param section   The batch section name
+     * @param studentId The student ID
+     * @param date      The date in yyyy-MM-dd format
+     * @param status    "Present" or "Absent"
+     * @throws IOException If the row cannot be written
+     */
+    void writeRow(String section, String studentId, String date, String status) throws IOException;
+
+    /**
+     * Finish the output and close the underlying stream.
+     *
+     * @throws IOException If the output cannot be completed
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,105 @@
+package com.trackese.utils;
+
+import com.trackese.models.Footprint;
+
+import java.util.Arrays;
+
+/**
+ * Binary indexed (Fenwick) tree over integer counts.
+ * Point updates and prefix sums both run in O(log n).
+ */
+public class FenwickTree {
+    private int[] tree; // 1-based
+    private int size;
+
+    public FenwickTree(int size) {
+        this.size = size;
+        this.tree = new int[size + 1];
+    }
+
+    /**
+     * Build a tree from plain values in O(n).
+     *
+     * @param values Values indexed from 0
+     * @return The tree
+     */
+    public static FenwickTree fromValues(int[] values) {
+        FenwickTree fenwickTree = new FenwickTree(values.length);
+        for (int i = 1; i <= values.length; i++) {
+            fenwickTree.tree[i] += values[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= values.length) {
+                fenwickTree.tree[parent] += fenwickTree.tree[i];
+            }
+        }
+        return fenwickTree;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a delta to the value at a position.
+     *
+     * @param index Position from 0
+     * @param delta Amount to add
+     */
+    public void add(int index, int delta) {
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Sum of values in positions [0, index].
+     *
+     * @param index Position from 0, or -1 for an empty prefix
+     * @return The prefix sum
+     */
+    public int prefixSum(int index) {
+        int sum = 0;
+        for (int i = Math.min(index + 1, size); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of values in positions [from, to], both inclusive.
+     *
+     * @param from First position
+     * @param to   Last position
+     * @return The range sum, or 0 for an empty range
+     */
+    public int rangeSum(int from, int to) {
+        if (from > to) {
+            return 0;
+        }
+        return prefixSum(to) - prefixSum(from - 1);
+    }
+
+    /**
+     * Estimate the heap used by the tree, including its spare capacity.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateBytes() {
+        return Footprint.object(Footprint.REFERENCE + 4) + Footprint.intArray(tree.length);
+    }
+
+    /**
+     * Append a value after the last position in O(log n).
+     *
+     * @param value Value of the new position
+     */
+    public void append(int value) {
+        if (size + 1 >= tree.length) {
+            tree = Arrays.copyOf(tree, Math.max(tree.length * 2, 4));
+        }
+        int i = size + 1;
+        // The new node covers (i - lowbit(i), i]; everything before i is already summed
+        tree[i] = value + prefixSum(size - 1) - prefixSum(i - (i & -i) - 1);
+        size = i;
+    }
+}
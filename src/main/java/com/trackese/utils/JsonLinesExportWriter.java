@@ -0,0 +1,49 @@
+package com.trackese.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Export writer for JSON Lines, one JSON object per row.
+ */
+public class JsonLinesExportWriter implements ExportWriter {
+    private final Writer writer;
+
+    public JsonLinesExportWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeRow(String section, String studentId, String date, String status) throws IOException {
+        writer.write("{\"section\":\"");
+        writer.write(escape(section));
+        writer.write("\",\"studentId\":\"");
+        writer.write(escape(studentId));
+        writer.write("\",\"date\":\"");
+        writer.write(date);
+        writer.write("\",\"status\":\"");
+        writer.write(status);
+        writer.write("\"}\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(value.substring(0, i));
+                }
+                escaped.append(c == '"' || c == '\\' ? "\\" + c : String.format("\\u%04x", (int) c));
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+}
@@ -0,0 +1,348 @@
+package com.trackese.utils;
+
+import com.trackese.models.BatchSection;
+import com.trackese.models.Footprint;
+import com.trackese.models.SectionSnapshot;
+import com.trackese.models.Student;
+
+import java.util.*;
+
+/**
+ * Per-date presence sets for a batch section, stored as bitmaps over student positions.
+ * Cross-date questions such as "absent on both of these dates" become bitmap
+ * AND/OR/ANDNOT operations instead of nested loops over attendance records.
+ * Bitmaps are built once from a snapshot and never changed, so cached instances
+ * can be shared between threads.
+ */
+public class PresenceBitmaps {
+    /**
+     * How the selected dates are combined.
+     */
+    public enum Match {
+        PRESENT_ON_ALL("Present on all dates"),
+        ABSENT_ON_ALL("Absent on all dates"),
+        PRESENT_ON_ANY("Present on any date"),
+        ABSENT_ON_ANY("Absent on any date");
+
+        private final String label;
+
+        Match(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Cached bitmaps, reused while the section's snapshot is unchanged and kept within the memory budget
+    private static final Map<BatchSection, PresenceBitmaps> cache = new HashMap<>();
+
+    static {
+        SectionStore.registerDerivedCache(new SectionStore.DerivedCache() {
+            @Override
+            public String getName() {
+                return "Presence Bitmaps";
+            }
+
+            @Override
+            public long getRetainedBytes(BatchSection batchSection) {
+                synchronized (cache) {
+                    PresenceBitmaps bitmaps = cache.get(batchSection);
+                    return bitmaps == null ? 0 : bitmaps.estimateBytes();
+                }
+            }
+
+            @Override
+            public long evict(BatchSection batchSection) {
+                synchronized (cache) {
+                    PresenceBitmaps bitmaps = cache.remove(batchSection);
+                    return bitmaps == null ? 0 : bitmaps.estimateBytes();
+                }
+            }
+        });
+    }
+
+    private final List<String> studentIds = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<String, BitSet> presentByDate = new TreeMap<>();
+    private final Map<String, BitSet> absentByDate = new TreeMap<>();
+    private long version; // Version of the snapshot the bitmaps were built from
+
+    private PresenceBitmaps() {
+    }
+
+    /**
+     * Build bitmaps for the students and dates of a section.
+     *
+     * @param students List of students
+     * @param dates    List of dates
+     * @return The bitmaps
+     */
+    public static PresenceBitmaps build(List<Student> students, List<String> dates) {
+        PresenceBitmaps bitmaps = new PresenceBitmaps();
+        for (String date : dates) {
+            bitmaps.presentByDate.put(date, new BitSet(students.size()));
+            bitmaps.absentByDate.put(date, new BitSet(students.size()));
+        }
+
+        for (Student student : students) {
+            int position = bitmaps.addStudent(student.getId());
+            for (Map.Entry<String, Boolean> record : student.getAttendanceRecords().entrySet()) {
+                bitmaps.set(position, record.getKey(), record.getValue());
+            }
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Build bitmaps straight from a section snapshot's status codes.
+     *
+     * @param snapshot The snapshot
+     * @return The bitmaps
+     */
+    public static PresenceBitmaps build(SectionSnapshot snapshot) {
+        PresenceBitmaps bitmaps = new PresenceBitmaps();
+        for (String studentId : snapshot.getStudentIds()) {
+            bitmaps.addStudent(studentId);
+        }
+        for (int d = 0; d < snapshot.getDateCount(); d++) {
+            BitSet present = new BitSet(snapshot.getStudentCount());
+            BitSet absent = new BitSet(snapshot.getStudentCount());
+            for (int i = 0; i < snapshot.getStudentCount(); i++) {
+                byte status = snapshot.getStatus(i, d);
+                if (status == SectionSnapshot.PRESENT) {
+                    present.set(i);
+                } else if (status == SectionSnapshot.ABSENT) {
+                    absent.set(i);
+                }
+            }
+            bitmaps.presentByDate.put(snapshot.getDate(d), present);
+            bitmaps.absentByDate.put(snapshot.getDate(d), absent);
+        }
+        bitmaps.version = snapshot.getVersion();
+        return bitmaps;
+    }
+
+    /**
+     * Get the bitmaps of a section, rebuilding them only if its snapshot changed.
+     *
+     * @param batchSection The batch and section
+     * @return The bitmaps
+     */
+    public static PresenceBitmaps forSection(BatchSection batchSection) {
+        // Read the snapshot outside the cache lock, which the memory budget takes too
+        SectionSnapshot snapshot = SectionStore.get(batchSection);
+        synchronized (cache) {
+            PresenceBitmaps bitmaps = cache.get(batchSection);
+            if (bitmaps != null && bitmaps.version == snapshot.getVersion()) {
+                return bitmaps;
+            }
+        }
+
+        PresenceBitmaps bitmaps = build(snapshot);
+        synchronized (cache) {
+            cache.put(batchSection, bitmaps);
+        }
+        SectionStore.derivedCacheChanged(batchSection);
+        return bitmaps;
+    }
+
+    /**
+     * Run the same query over several sections.
+     *
+     * @param batchSections The batch sections
+     * @param match         How the dates are combined
+     * @param dates         The dates
+     * @return Matching student IDs per section, in the given section order
+     */
+    public static Map<BatchSection, List<String>> query(List<BatchSection> batchSections, Match match,
+                                                        Collection<String> dates) {
+        Map<BatchSection, List<String>> results = new LinkedHashMap<>();
+        for (BatchSection batchSection : batchSections) {
+            results.put(batchSection, forSection(batchSection).query(match, dates));
+        }
+        return results;
+    }
+
+    /**
+     * Find the students matching a combination of dates.
+     *
+     * @param match How the dates are combined
+     * @param dates The dates
+     * @return Matching student IDs in roster order
+     */
+    public List<String> query(Match match, Collection<String> dates) {
+        switch (match) {
+            case PRESENT_ON_ALL:
+                return toStudentIds(presentOnAll(dates));
+            case ABSENT_ON_ALL:
+                return toStudentIds(absentOnAll(dates));
+            case PRESENT_ON_ANY:
+                return toStudentIds(presentOnAny(dates));
+            default:
+                return toStudentIds(absentOnAny(dates));
+        }
+    }
+
+    /**
+     * Students present on every one of the dates.
+     *
+     * @param dates The dates
+     * @return New bitmap of student positions
+     */
+    public BitSet presentOnAll(Collection<String> dates) {
+        return intersect(presentByDate, dates);
+    }
+
+    /**
+     * Students absent on every one of the dates.
+     *
+     * @param dates The dates
+     * @return New bitmap of student positions
+     */
+    public BitSet absentOnAll(Collection<String> dates) {
+        return intersect(absentByDate, dates);
+    }
+
+    /**
+     * Students present on at least one of the dates.
+     *
+     * @param dates The dates
+     * @return New bitmap of student positions
+     */
+    public BitSet presentOnAny(Collection<String> dates) {
+        return union(presentByDate, dates);
+    }
+
+    /**
+     * Students absent on at least one of the dates.
+     *
+     * @param dates The dates
+     * @return New bitmap of student positions
+     */
+    public BitSet absentOnAny(Collection<String> dates) {
+        return union(absentByDate, dates);
+    }
+
+    /**
+     * Students present on a date.
+     *
+     * @param date The date
+     * @return New bitmap of student positions
+     */
+    public BitSet getPresent(String date) {
+        BitSet bits = presentByDate.get(date);
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+
+    /**
+     * Students absent on a date.
+     *
+     * @param date The date
+     * @return New bitmap of student positions
+     */
+    public BitSet getAbsent(String date) {
+        BitSet bits = absentByDate.get(date);
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+
+    /**
+     * Students with no mark on a date.
+     *
+     * @param date The date
+     * @return New bitmap of student positions
+     */
+    public BitSet getUnmarked(String date) {
+        BitSet bits = new BitSet(studentIds.size());
+        bits.set(0, studentIds.size());
+        bits.andNot(getPresent(date));
+        bits.andNot(getAbsent(date));
+        return bits;
+    }
+
+    /**
+     * Convert a bitmap of student positions to student IDs.
+     *
+     * @param bits Bitmap of student positions
+     * @return Student IDs in roster order
+     */
+    public List<String> toStudentIds(BitSet bits) {
+        List<String> ids = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0 && i < studentIds.size(); i = bits.nextSetBit(i + 1)) {
+            ids.add(studentIds.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Estimate the heap used by the roster index and the bitmaps.
+     * Student IDs and dates are the snapshot's strings and are not counted.
+     *
+     * @return Estimated size in bytes
+     */
+    public long estimateBytes() {
+        long bytes = Footprint.object(4 * Footprint.REFERENCE + 8) + Footprint.arrayList(studentIds.size())
+                + Footprint.hashMap(positions.size()) + Footprint.boxedIndexes(positions.size())
+                + Footprint.treeMap(presentByDate.size()) + Footprint.treeMap(absentByDate.size());
+        for (BitSet bits : presentByDate.values()) {
+            bytes += Footprint.bitSet(bits);
+        }
+        for (BitSet bits : absentByDate.values()) {
+            bytes += Footprint.bitSet(bits);
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the dates that have bitmaps, in chronological order.
+     *
+     * @return Set of dates
+     */
+    public Set<String> getDates() {
+        return Collections.unmodifiableSet(presentByDate.keySet());
+    }
+
+    private int addStudent(String studentId) {
+        int position = studentIds.size();
+        studentIds.add(studentId);
+        positions.put(studentId, position);
+        return position;
+    }
+
+    private void set(int position, String date, Boolean isPresent) {
+        if (isPresent == null) {
+            return;
+        }
+        Map<String, BitSet> target = isPresent ? presentByDate : absentByDate;
+        target.computeIfAbsent(date, d -> new BitSet()).set(position);
+    }
+
+    private static BitSet intersect(Map<String, BitSet> byDate, Collection<String> dates) {
+        BitSet result = null;
+        for (String date : dates) {
+            BitSet bits = byDate.get(date);
+            if (bits == null) {
+                return new BitSet(); // Nobody can match a date with no records
+            }
+            if (result == null) {
+                result = (BitSet) bits.clone();
+            } else {
+                result.and(bits);
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+
+    private static BitSet union(Map<String, BitSet> byDate, Collection<String> dates) {
+        BitSet result = new BitSet();
+        for (String date : dates) {
+            BitSet bits = byDate.get(date);
+            if (bits != null) {
+                result.or(bits);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+package com.trackese.utils;
+
+import com.trackese.models.SectionEvent;
+
+import java.util.List;
+
+/**
+ * Listener notified of the changes made by each save of a section.
+ */
+public interface SectionEventListener {
+    /**
+     * Called after a save, outside the section's lock.
+     *
+     * @param events The changes of one save: roster and date events first, then marked cells
+     */
+    void sectionChanged(List<SectionEvent> events);
+}
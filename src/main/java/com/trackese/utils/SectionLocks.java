@@ -0,0 +1,145 @@
+package com.trackese.utils;
+
+import com.trackese.models.BatchSection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locks that serialise read-modify-write cycles on a section's CSV file, both
+ * between threads and between processes sharing the attendance_data directory.
+ * <p>
+ * In-process, sections hash onto a fixed set of striped read/write locks. A writer
+ * additionally holds an exclusive {@link FileChannel#lock()} on the section's lock
+ * file, so writers in other processes wait for it. Readers of the CSV file take no
+ * lock at all: files are replaced by atomic rename, so a reader always sees a
+ * complete file even while another process is writing.
+ */
+public class SectionLocks {
+    private static final int STRIPES = 64;
+    private static final String LOCK_EXTENSION = ".lock";
+
+    private static final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    private static final Map<BatchSection, FileHold> fileHolds = new ConcurrentHashMap<>();
+    private static volatile boolean fileLockWarningShown = false;
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Cross-process lock held by the thread that owns a section's stripe write lock.
+     */
+    private static class FileHold {
+        private final RandomAccessFile file;
+        private final FileLock lock;
+        private int count = 1;
+
+        FileHold(RandomAccessFile file, FileLock lock) {
+            this.file = file;
+            this.lock = lock;
+        }
+    }
+
+    /**
+     * Lock a section for writing, waiting for writers in this and other processes.
+     * Reentrant; every call must be paired with {@link #unlockWrite(BatchSection)}.
+     *
+     * @param batchSection The batch and section
+     */
+    public static void lockWrite(BatchSection batchSection) {
+        stripeFor(batchSection).writeLock().lock();
+
+        // The stripe write lock makes this thread the only one touching the section's hold
+        FileHold hold = fileHolds.get(batchSection);
+        if (hold != null) {
+            hold.count++;
+            return;
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(getLockFile(CSVHandler.getCSVFile(batchSection)), "rw");
+            fileHolds.put(batchSection, new FileHold(file, file.getChannel().lock()));
+        } catch (IOException e) {
+            // Some network shares do not support locks; fall back to in-process locking
+            if (!fileLockWarningShown) {
+                fileLockWarningShown = true;
+                e.printStackTrace();
+            }
+            closeQuietly(file);
+            fileHolds.put(batchSection, new FileHold(null, null));
+        }
+    }
+
+    /**
+     * Release a write lock taken with {@link #lockWrite(BatchSection)}.
+     *
+     * @param batchSection The batch and section
+     */
+    public static void unlockWrite(BatchSection batchSection) {
+        ReentrantReadWriteLock stripe = stripeFor(batchSection);
+        if (!stripe.isWriteLockedByCurrentThread()) {
+            throw new IllegalMonitorStateException("Section is not locked by this thread: " + batchSection);
+        }
+
+        FileHold hold = fileHolds.get(batchSection);
+        if (hold != null && --hold.count == 0) {
+            fileHolds.remove(batchSection);
+            try {
+                if (hold.lock != null) {
+                    hold.lock.release();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            closeQuietly(hold.file);
+        }
+        stripe.writeLock().unlock();
+    }
+
+    /**
+     * Get the in-process read lock of a section, for readers that need the CSV file
+     * and its sidecar files to come from the same write. Does not wait for other processes.
+     *
+     * @param batchSection The batch and section
+     * @return The read lock, shared with the sections on the same stripe
+     */
+    public static Lock readLock(BatchSection batchSection) {
+        return stripeFor(batchSection).readLock();
+    }
+
+    private static ReentrantReadWriteLock stripeFor(BatchSection batchSection) {
+        return stripes[(batchSection.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Get the file that writers of a CSV file lock across processes.
+     *
+     * @param csvFile The section's CSV file
+     * @return The lock file
+     */
+    static File getLockFile(File csvFile) {
+        String csvPath = csvFile.getPath();
+        return new File(csvPath.substring(0, csvPath.length() - ".csv".length()) + LOCK_EXTENSION);
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.trackese.utils;
+
+import com.trackese.models.BatchSection;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates department-wide attendance reports across all batch sections.
+ * Sections are summarised as independent fork-join tasks and the partial
+ * results merged, so the work spreads across all available cores.
+ */
+public class SectionReportGenerator {
+    private static final String REPORT_DIRECTORY = "reports";
+    private static final int WORST_STUDENT_COUNT = 10;
+
+    /**
+     * Attendance totals for one student.
+     */
+    public static class StudentTotal {
+        private final BatchSection batchSection;
+        private final String studentId;
+        private final int present;
+        private final int marked;
+
+        public StudentTotal(BatchSection batchSection, String studentId, int present, int marked) {
+            this.batchSection = batchSection;
+            this.studentId = studentId;
+            this.present = present;
+            this.marked = marked;
+        }
+
+        public BatchSection getBatchSection() {
+            return batchSection;
+        }
+
+        public String getStudentId() {
+            return studentId;
+        }
+
+        public int getPresent() {
+            return present;
+        }
+
+        public int getMarked() {
+            return marked;
+        }
+
+        public double getPercentage() {
+            return marked == 0 ? 0 : present * 100.0 / marked;
+        }
+    }
+
+    /**
+     * Attendance totals for one section.
+     */
+    public static class SectionTotal {
+        private final BatchSection batchSection;
+        private final int studentCount;
+        private final int dateCount;
+        private final int present;
+        private final int marked;
+
+        public SectionTotal(BatchSection batchSection, int studentCount, int dateCount, int present, int marked) {
+            this.batchSection = batchSection;
+            this.studentCount = studentCount;
+            this.dateCount = dateCount;
+            this.present = present;
+            this.marked = marked;
+        }
+
+        public BatchSection getBatchSection() {
+            return batchSection;
+        }
+
+        public int getStudentCount() {
+            return studentCount;
+        }
+
+        public int getDateCount() {
+            return dateCount;
+        }
+
+        public int getPresent() {
+            return present;
+        }
+
+        public int getMarked() {
+            return marked;
+        }
+
+        public double getAverage() {
+            return marked == 0 ? 0 : present * 100.0 / marked;
+        }
+    }
+
+    /**
+     * Merged report over any number of sections.
+     */
+    public static class DepartmentReport {
+        private final List<SectionTotal> sections = new ArrayList<>();
+        private final Map<String, int[]> dateTotals = new TreeMap<>(); // Date -> {present, absent}
+        private final List<StudentTotal> worstStudents = new ArrayList<>();
+
+        public List<SectionTotal> getSections() {
+            return sections;
+        }
+
+        public Map<String, int[]> getDateTotals() {
+            return dateTotals;
+        }
+
+        public List<StudentTotal> getWorstStudents() {
+            return worstStudents;
+        }
+
+        void addWorstStudents(Collection<StudentTotal> candidates) {
+            worstStudents.addAll(candidates);
+            worstStudents.sort(Comparator.comparingDouble(StudentTotal::getPercentage)
+                    .thenComparing(StudentTotal::getStudentId));
+            if (worstStudents.size() > WORST_STUDENT_COUNT) {
+                worstStudents.subList(WORST_STUDENT_COUNT, worstStudents.size()).clear();
+            }
+        }
+
+        DepartmentReport merge(DepartmentReport other) {
+            sections.addAll(other.sections);
+            for (Map.Entry<String, int[]> entry : other.dateTotals.entrySet()) {
+                int[] totals = dateTotals.computeIfAbsent(entry.getKey(), d -> new int[2]);
+                totals[0] += entry.getValue()[0];
+                totals[1] += entry.getValue()[1];
+            }
+            addWorstStudents(other.worstStudents);
+            return this;
+        }
+    }
+
+    /**
+     * Fork-join task that splits the section list until one section remains.
+     */
+    private static class ReportTask extends RecursiveTask<DepartmentReport> {
+        private final List<BatchSection> batchSections;
+
+        ReportTask(List<BatchSection> batchSections) {
+            this.batchSections = batchSections;
+        }
+
+        @Override
+        protected DepartmentReport compute() {
+            if (batchSections.size() == 1) {
+                return summariseSection(batchSections.get(0));
+            }
+            if (batchSections.isEmpty()) {
+                return new DepartmentReport();
+            }
+
+            int middle = batchSections.size() / 2;
+            ReportTask left = new ReportTask(batchSections.subList(0, middle));
+            ReportTask right = new ReportTask(batchSections.subList(middle, batchSections.size()));
+            left.fork();
+            DepartmentReport rightReport = right.compute();
+            return left.join().merge(rightReport);
+        }
+    }
+
+    /**
+     * Compute the department report for the given sections in parallel.
+     *
+     * @param batchSections The batch sections
+     * @return The merged report, with sections in the given order
+     */
+    public static DepartmentReport generateReport(List<BatchSection> batchSections) {
+        return ForkJoinPool.commonPool().invoke(new ReportTask(new ArrayList<>(batchSections)));
+    }
+
+    /**
+     * Compute the report for all batch sections and write it to a CSV file.
+     *
+     * @return The written report file, or null if writing failed
+     */
+    public static File writeDepartmentReport() {
+        DepartmentReport report = generateReport(BatchSectionManager.getAllBatchSections());
+        File file = new File(REPORT_DIRECTORY + File.separator
+                + "department_report_" + DateUtils.getCurrentDateString() + ".csv");
+
+        try {
+            Files.createDirectories(Paths.get(REPORT_DIRECTORY));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("Section Averages");
+            writer.println("Section,Students,Dates,Present,Marked,Average %");
+            for (SectionTotal section : report.getSections()) {
+                writer.println(section.getBatchSection().getFullName() + "," + section.getStudentCount() + ","
+                        + section.getDateCount() + "," + section.getPresent() + "," + section.getMarked() + ","
+                        + String.format(Locale.ROOT, "%.1f", section.getAverage()));
+            }
+
+            writer.println();
+            writer.println("Date Totals");
+            writer.println("Date,Present,Absent");
+            for (Map.Entry<String, int[]> entry : report.getDateTotals().entrySet()) {
+                writer.println(entry.getKey() + "," + entry.getValue()[0] + "," + entry.getValue()[1]);
+            }
+
+            writer.println();
+            writer.println("Worst Attending Students");
+            writer.println("Section,Student ID,Present,Marked,Attendance %");
+            for (StudentTotal student : report.getWorstStudents()) {
+                writer.println(student.getBatchSection().getFullName() + "," + student.getStudentId() + ","
+                        + student.getPresent() + "," + student.getMarked() + ","
+                        + String.format(Locale.ROOT, "%.1f", student.getPercentage()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return file;
+    }
+
+    private static DepartmentReport summariseSection(BatchSection batchSection) {
+        // Totals come from the summary sidecar, so the full CSV is not parsed
+        SectionSummary summary = SectionSummary.load(batchSection);
+
+        DepartmentReport report = new DepartmentReport();
+        for (Map.Entry<String, int[]> entry : summary.getDateTotals().entrySet()) {
+            report.dateTotals.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        List<StudentTotal> studentTotals = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : summary.getStudentTotals().entrySet()) {
+            int[] totals = entry.getValue();
+            if (totals[1] > 0) {
+                studentTotals.add(new StudentTotal(batchSection, entry.getKey(), totals[0], totals[1]));
+            }
+        }
+
+        report.sections.add(new SectionTotal(batchSection, summary.getStudentCount(), summary.getDateCount(),
+                summary.getTotalPresent(), summary.getTotalMarked()));
+        report.addWorstStudents(studentTotals);
+        return report;
+    }
+}
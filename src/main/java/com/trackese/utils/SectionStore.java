@@ -0,0 +1,351 @@
+package com.trackese.utils;
+
+import com.trackese.metrics.Metrics;
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionMemoryUsage;
+import com.trackese.models.SectionSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Current attendance snapshot of each section.
+ * Readers get the latest {@link SectionSnapshot} without taking any lock; writers
+ * publish a new snapshot after saving. A snapshot is checked against the CSV file's
+ * identity, size and modification time, so a save by another process is picked up
+ * on the next read.
+ * <p>
+ * Cached snapshots are kept within a memory budget, by default a quarter of the
+ * maximum heap or -Dtrackese.memory.budgetMB. When the estimated size of all
+ * snapshots exceeds it, the least recently used sections are dropped; they are
+ * loaded from disk again the next time they are read. Caches of structures built
+ * from the snapshots register as {@link DerivedCache}s; their entries count against
+ * the same budget and are dropped together with their section.
+ */
+public class SectionStore {
+    /**
+     * A per-section cache of structures built from the snapshots, such as an index.
+     * Its users read the snapshot through {@link SectionStore#get(BatchSection)}
+     * first, which marks the section as used.
+     */
+    public interface DerivedCache {
+        /**
+         * Get the name shown in the memory diagnostics.
+         *
+         * @return The name
+         */
+        String getName();
+
+        /**
+         * Estimate the heap retained for a section.
+         *
+         * @param batchSection The batch and section
+         * @return Estimated size in bytes, 0 if nothing is cached for it
+         */
+        long getRetainedBytes(BatchSection batchSection);
+
+        /**
+         * Drop a section's entry unless it is in use and cannot be rebuilt later.
+         *
+         * @param batchSection The batch and section
+         * @return Estimated bytes freed
+         */
+        long evict(BatchSection batchSection);
+    }
+
+    /**
+     * A published snapshot and the file it was saved to or loaded from.
+     */
+    private static class Entry {
+        private final SectionSnapshot snapshot;
+        private final FileStamp stamp;
+        private final long bytes;
+
+        Entry(SectionSnapshot snapshot, FileStamp stamp) {
+            this.snapshot = snapshot;
+            this.stamp = stamp;
+            this.bytes = snapshot.estimateBytes();
+        }
+    }
+
+    /**
+     * The cached entry of one section and when it was last read.
+     */
+    private static class Slot extends AtomicReference<Entry> {
+        private volatile long lastUsed;
+    }
+
+    /**
+     * Identity of a file version. Every save renames a new file into place, so the
+     * file key changes with each write where the platform provides one.
+     */
+    private static class FileStamp {
+        private final Object fileKey;
+        private final long length;
+        private final long modified;
+
+        FileStamp(Object fileKey, long length, long modified) {
+            this.fileKey = fileKey;
+            this.length = length;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) obj;
+            return Objects.equals(fileKey, other.fileKey) && length == other.length && modified == other.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileKey, length, modified);
+        }
+    }
+
+    private static final Map<BatchSection, Slot> entries = new ConcurrentHashMap<>();
+    private static final List<DerivedCache> derivedCaches = new CopyOnWriteArrayList<>();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static volatile long budgetBytes = defaultBudget();
+
+    /**
+     * Get the current snapshot of a section, loading it if it is not cached or the
+     * file has changed on disk.
+     *
+     * @param batchSection The batch and section
+     * @return The snapshot; never changes after it is returned
+     */
+    public static SectionSnapshot get(BatchSection batchSection) {
+        Slot slot = entries.computeIfAbsent(batchSection, bs -> new Slot());
+        slot.lastUsed = System.currentTimeMillis();
+        Entry entry = slot.get();
+        FileStamp stamp = readStamp(CSVHandler.getCSVFile(batchSection));
+        if (entry != null && entry.stamp.equals(stamp)) {
+            Metrics.recordCache("section.snapshot", batchSection, true);
+            return entry.snapshot;
+        }
+        if (stamp == null) {
+            return SectionSnapshot.empty();
+        }
+        Metrics.recordCache("section.snapshot", batchSection, false);
+
+        SectionSnapshot snapshot = CSVHandler.loadSnapshot(batchSection);
+        // Keep a snapshot published meanwhile by a writer in this process
+        slot.compareAndSet(entry, new Entry(snapshot, stamp));
+        enforceBudget(batchSection);
+        return snapshot;
+    }
+
+    /**
+     * Publish the snapshot a writer has just saved. Call while holding the section's write lock.
+     *
+     * @param batchSection The batch and section
+     * @param snapshot     The saved snapshot
+     */
+    public static void publish(BatchSection batchSection, SectionSnapshot snapshot) {
+        FileStamp stamp = readStamp(CSVHandler.getCSVFile(batchSection));
+        Slot slot = entries.computeIfAbsent(batchSection, bs -> new Slot());
+        slot.lastUsed = System.currentTimeMillis();
+        slot.set(stamp == null ? null : new Entry(snapshot, stamp));
+        enforceBudget(batchSection);
+    }
+
+    /**
+     * Forget the cached snapshot of a section, e.g. after a failed save.
+     *
+     * @param batchSection The batch and section
+     */
+    public static void invalidate(BatchSection batchSection) {
+        Slot slot = entries.get(batchSection);
+        if (slot != null) {
+            slot.set(null);
+        }
+    }
+
+    /**
+     * Forget the cached snapshots of all sections, and the derived entries not in use.
+     */
+    public static void clear() {
+        for (Map.Entry<BatchSection, Slot> mapEntry : entries.entrySet()) {
+            mapEntry.getValue().set(null);
+            for (DerivedCache cache : derivedCaches) {
+                cache.evict(mapEntry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Count a derived cache against the memory budget. Call once, when the cache is created.
+     *
+     * @param cache The cache
+     */
+    public static void registerDerivedCache(DerivedCache cache) {
+        derivedCaches.add(cache);
+    }
+
+    /**
+     * Get the names of the registered derived caches, in registration order.
+     *
+     * @return The names
+     */
+    public static List<String> getDerivedCacheNames() {
+        List<String> names = new ArrayList<>();
+        for (DerivedCache cache : derivedCaches) {
+            names.add(cache.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Evict sections if a derived cache has grown past the budget.
+     *
+     * @param batchSection The section whose entry was just built; it is never dropped
+     */
+    public static void derivedCacheChanged(BatchSection batchSection) {
+        enforceBudget(batchSection);
+    }
+
+    /**
+     * Get the estimated heap use of each cached section, most recently used first.
+     *
+     * @return The sections with a cached snapshot or derived entries
+     */
+    public static List<SectionMemoryUsage> getMemoryUsage() {
+        List<SectionMemoryUsage> usage = new ArrayList<>();
+        for (Map.Entry<BatchSection, Slot> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue().get();
+            Map<String, Long> derivedBytes = new LinkedHashMap<>();
+            long derivedTotal = 0;
+            for (DerivedCache cache : derivedCaches) {
+                long bytes = cache.getRetainedBytes(mapEntry.getKey());
+                derivedBytes.put(cache.getName(), bytes);
+                derivedTotal += bytes;
+            }
+            if (entry != null || derivedTotal > 0) {
+                usage.add(new SectionMemoryUsage(mapEntry.getKey(),
+                        entry == null ? 0 : entry.snapshot.getStudentCount(),
+                        entry == null ? 0 : entry.snapshot.getDateCount(),
+                        entry == null ? 0 : entry.bytes, derivedBytes, mapEntry.getValue().lastUsed));
+            }
+        }
+        usage.sort((a, b) -> Long.compare(b.getLastUsedMillis(), a.getLastUsedMillis()));
+        return usage;
+    }
+
+    /**
+     * Get the estimated heap use of all cached sections, including derived caches.
+     *
+     * @return Estimated size in bytes
+     */
+    public static long getRetainedBytes() {
+        long total = 0;
+        for (Map.Entry<BatchSection, Slot> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue().get();
+            if (entry != null) {
+                total += entry.bytes;
+            }
+            total += getDerivedBytes(mapEntry.getKey());
+        }
+        return total;
+    }
+
+    private static long getDerivedBytes(BatchSection batchSection) {
+        long total = 0;
+        for (DerivedCache cache : derivedCaches) {
+            total += cache.getRetainedBytes(batchSection);
+        }
+        return total;
+    }
+
+    public static long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Change the memory budget and evict sections at once if it is exceeded.
+     *
+     * @param budgetBytes The budget in bytes
+     */
+    public static void setBudgetBytes(long budgetBytes) {
+        SectionStore.budgetBytes = budgetBytes;
+        enforceBudget(null);
+    }
+
+    /**
+     * Get the number of sections dropped to stay within the budget.
+     *
+     * @return The eviction count since start
+     */
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private static long defaultBudget() {
+        Long budgetMB = Long.getLong("trackese.memory.budgetMB");
+        if (budgetMB != null) {
+            return budgetMB * 1024 * 1024;
+        }
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        return maxHeap == Long.MAX_VALUE ? 64L * 1024 * 1024 : maxHeap / 4;
+    }
+
+    /**
+     * Drop the least recently used sections, with their derived entries, until
+     * everything cached fits the budget.
+     *
+     * @param keep Section that was just used and is never dropped, or null
+     */
+    private static synchronized void enforceBudget(BatchSection keep) {
+        long total = getRetainedBytes();
+        if (total <= budgetBytes) {
+            return;
+        }
+
+        List<Map.Entry<BatchSection, Slot>> coldestFirst = new ArrayList<>(entries.entrySet());
+        coldestFirst.sort(Comparator.comparingLong(mapEntry -> mapEntry.getValue().lastUsed));
+        for (Map.Entry<BatchSection, Slot> mapEntry : coldestFirst) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            if (mapEntry.getKey().equals(keep)) {
+                continue;
+            }
+            long freed = 0;
+            Entry entry = mapEntry.getValue().get();
+            // Leave a snapshot that a writer replaced meanwhile to the next pass
+            if (entry != null && mapEntry.getValue().compareAndSet(entry, null)) {
+                freed += entry.bytes;
+            }
+            for (DerivedCache cache : derivedCaches) {
+                freed += cache.evict(mapEntry.getKey());
+            }
+            if (freed > 0) {
+                total -= freed;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static FileStamp readStamp(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new FileStamp(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return null; // No file yet
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.trackese.utils;
+
+import com.trackese.metrics.Metrics;
+import com.trackese.models.BatchSection;
+import com.trackese.models.SectionSnapshot;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Materialized per-section totals kept in a small sidecar file next to the CSV.
+ * The sidecar holds per-student and per-date counts plus a CRC32 checksum of the
+ * CSV it was built from, so summary views never have to parse the full file.
+ * It is rewritten on every save and rebuilt only when the checksum no longer matches.
+ * Like the CSV, it is written to a temporary file and renamed into place, so readers
+ * never see a partly written sidecar.
+ */
+public class SectionSummary {
+    private static final String SUMMARY_EXTENSION = ".summary";
+
+    private long checksum;
+    private long sourceLength;
+    private long sourceModified;
+    private final Map<String, int[]> studentTotals = new LinkedHashMap<>(); // ID -> {present, marked}
+    private final Map<String, int[]> dateTotals = new TreeMap<>(); // Date -> {present, absent}
+
+    private SectionSummary() {
+    }
+
+    /**
+     * Get the summary of a section from its sidecar, rebuilding the sidecar
+     * only if it is missing or its checksum does not match the CSV file.
+     *
+     * @param batchSection The batch and section
+     * @return The summary
+     */
+    public static SectionSummary load(BatchSection batchSection) {
+        // Keep in-process writers from replacing the CSV between the checks below
+        SectionLocks.readLock(batchSection).lock();
+        try {
+            return loadLocked(batchSection);
+        } finally {
+            SectionLocks.readLock(batchSection).unlock();
+        }
+    }
+
+    private static SectionSummary loadLocked(BatchSection batchSection) {
+        File csvFile = CSVHandler.getCSVFile(batchSection);
+        File summaryFile = getSummaryFile(batchSection);
+        if (!csvFile.exists()) {
+            return new SectionSummary();
+        }
+
+        SectionSummary summary = summaryFile.exists() ? readSummary(summaryFile) : null;
+        if (summary != null && summary.sourceLength == csvFile.length()
+                && summary.sourceModified == csvFile.lastModified()) {
+            Metrics.recordCache("section.summary", batchSection, true);
+            return summary;
+        }
+
+        // File stamp changed: only the checksum decides whether the totals are stale
+        long checksum = computeChecksum(csvFile);
+        if (summary != null && summary.checksum == checksum) {
+            summary.sourceLength = csvFile.length();
+            summary.sourceModified = csvFile.lastModified();
+            summary.writeSummary(summaryFile);
+            Metrics.recordCache("section.summary", batchSection, true);
+            return summary;
+        }
+        Metrics.recordCache("section.summary", batchSection, false);
+
+        SectionSnapshot snapshot = SectionStore.get(batchSection);
+        summary = build(snapshot);
+        summary.checksum = snapshot.getVersion();
+        summary.sourceLength = csvFile.length();
+        summary.sourceModified = csvFile.lastModified();
+        summary.writeSummary(summaryFile);
+        return summary;
+    }
+
+    /**
+     * Write the sidecar of a section after its CSV file has been saved.
+     *
+     * @param batchSection The batch and section
+     * @param snapshot     The saved snapshot; its version is the CRC32 checksum of the CSV file
+     */
+    public static void write(BatchSection batchSection, SectionSnapshot snapshot) {
+        File csvFile = CSVHandler.getCSVFile(batchSection);
+        SectionSummary summary = build(snapshot);
+        summary.checksum = snapshot.getVersion();
+        summary.sourceLength = csvFile.length();
+        summary.sourceModified = csvFile.lastModified();
+        summary.writeSummary(getSummaryFile(batchSection));
+    }
+
+    /**
+     * Delete the sidecar of a section.
+     *
+     * @param batchSection The batch and section
+     */
+    public static void delete(BatchSection batchSection) {
+        getSummaryFile(batchSection).delete();
+    }
+
+    public int getStudentCount() {
+        return studentTotals.size();
+    }
+
+    public int getDateCount() {
+        return dateTotals.size();
+    }
+
+    /**
+     * Get the per-student totals.
+     *
+     * @return Map of student ID to {present, marked}, in roster order
+     */
+    public Map<String, int[]> getStudentTotals() {
+        return Collections.unmodifiableMap(studentTotals);
+    }
+
+    /**
+     * Get the per-date totals.
+     *
+     * @return Map of date to {present, absent}, in chronological order
+     */
+    public Map<String, int[]> getDateTotals() {
+        return Collections.unmodifiableMap(dateTotals);
+    }
+
+    public int getTotalPresent() {
+        int total = 0;
+        for (int[] totals : studentTotals.values()) {
+            total += totals[0];
+        }
+        return total;
+    }
+
+    public int getTotalMarked() {
+        int total = 0;
+        for (int[] totals : studentTotals.values()) {
+            total += totals[1];
+        }
+        return total;
+    }
+
+    private static SectionSummary build(SectionSnapshot snapshot) {
+        SectionSummary summary = new SectionSummary();
+        int[][] dateCounts = new int[snapshot.getDateCount()][];
+        for (int d = 0; d < dateCounts.length; d++) {
+            dateCounts[d] = new int[2];
+            summary.dateTotals.put(snapshot.getDate(d), dateCounts[d]);
+        }
+
+        for (int i = 0; i < snapshot.getStudentCount(); i++) {
+            int[] totals = new int[2];
+            for (int d = 0; d < dateCounts.length; d++) {
+                byte status = snapshot.getStatus(i, d);
+                if (status != SectionSnapshot.UNMARKED) {
+                    totals[1]++;
+                    if (status == SectionSnapshot.PRESENT) {
+                        totals[0]++;
+                        dateCounts[d][0]++;
+                    } else {
+                        dateCounts[d][1]++;
+                    }
+                }
+            }
+            summary.studentTotals.put(snapshot.getStudentId(i), totals);
+        }
+        return summary;
+    }
+
+    private static File getSummaryFile(BatchSection batchSection) {
+        String csvPath = CSVHandler.getCSVFile(batchSection).getPath();
+        return new File(csvPath.substring(0, csvPath.length() - ".csv".length()) + SUMMARY_EXTENSION);
+    }
+
+    private static long computeChecksum(File file) {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), crc)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // Reading updates the checksum
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return crc.getValue();
+    }
+
+    private static SectionSummary readSummary(File file) {
+        SectionSummary summary = new SectionSummary();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            summary.checksum = Long.parseLong(reader.readLine().split("=")[1]);
+            summary.sourceLength = Long.parseLong(reader.readLine().split("=")[1]);
+            summary.sourceModified = Long.parseLong(reader.readLine().split("=")[1]);
+
+            Map<String, int[]> target = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if ("[students]".equals(line)) {
+                    target = summary.studentTotals;
+                } else if ("[dates]".equals(line)) {
+                    target = summary.dateTotals;
+                } else if (target != null && !line.isEmpty()) {
+                    String[] data = line.split(",");
+                    target.put(data[0], new int[]{Integer.parseInt(data[1]), Integer.parseInt(data[2])});
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A damaged sidecar is simply rebuilt
+            return null;
+        }
+        return summary;
+    }
+
+    private void writeSummary(File file) {
+        File tempFile = null;
+        try {
+            // A unique name, as readers holding only the read lock may rewrite the same sidecar
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            writeSummaryTo(tempFile);
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The old sidecar, or none, stays; it is rebuilt when found stale
+            e.printStackTrace();
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private void writeSummaryTo(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            writer.println("checksum=" + checksum);
+            writer.println("length=" + sourceLength);
+            writer.println("modified=" + sourceModified);
+            writer.println("[students]");
+            for (Map.Entry<String, int[]> entry : studentTotals.entrySet()) {
+                writer.println(entry.getKey() + "," + entry.getValue()[0] + "," + entry.getValue()[1]);
+            }
+            writer.println("[dates]");
+            for (Map.Entry<String, int[]> entry : dateTotals.entrySet()) {
+                writer.println(entry.getKey() + "," + entry.getValue()[0] + "," + entry.getValue()[1]);
+            }
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+}